@@ -37,6 +37,9 @@ import org.obinject.meta.Uuid;
  * }
  * </pre></blockquote>
  *
+ * The header page is not chained to other pages, so its previous page Id
+ * holds the format of the workspace file (see {@link #readFormat()}).
+ *
  * @author Enzo Seraphim <seraphim@unifei.edu.br>
  * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
  * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
@@ -49,6 +52,19 @@ public class HeaderNode extends AbstractNode
      */
     public static final int nodeType = 1000;
 
+    /**
+     * Format of a workspace file whose pages are stored as they are. Files
+     * written before the format was recorded hold it too.
+     */
+    public static final long plainFormat = 0;
+
+    /**
+     * Format of a workspace file whose pages are each followed by a CRC32C
+     * trailer. The value is far from any small number, so that a damaged
+     * header is not taken for another format.
+     */
+    public static final long checksummedFormat = 0x43524333324350L;
+
     /**
      *
      * @param node
@@ -257,4 +273,23 @@ public class HeaderNode extends AbstractNode
 	int pos = AbstractNode.sizeOfHeader();
 	this.writeInteger(pos, size);
     }
+
+    /**
+     *
+     * @return {@link #plainFormat} or {@link #checksummedFormat}, or any
+     * other value if the header is damaged.
+     */
+    public long readFormat()
+    {
+	return this.readPreviousPageId();
+    }
+
+    /**
+     *
+     * @param format {@link #plainFormat} or {@link #checksummedFormat}.
+     */
+    public void writeFormat(long format)
+    {
+	this.writePreviousPageId(format);
+    }
 }
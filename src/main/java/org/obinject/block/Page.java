@@ -396,12 +396,7 @@ public abstract class Page {
     }
 
     protected char readCharacter(int pos) {
-        char value = 0;
-        value <<= bitsPerByte;
-        value += array[pos] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 1] & byteMask;
-        return value;
+        return PageCodec.getCharacter(array, pos);
     }
 
     /**
@@ -428,16 +423,7 @@ public abstract class Page {
      * @return
      */
     protected int readInteger(int pos) {
-        int value = 0;
-        value <<= bitsPerByte;
-        value += array[pos] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 1] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 2] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 3] & byteMask;
-        return value;
+        return PageCodec.getInteger(array, pos);
     }
 
     /**
@@ -446,24 +432,7 @@ public abstract class Page {
      * @return
      */
     protected long readLong(int pos) {
-        long value = 0;
-        value <<= bitsPerByte;
-        value += array[pos] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 1] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 2] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 3] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 4] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 5] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 6] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 7] & byteMask;
-        return value;
+        return PageCodec.getLong(array, pos);
     }
 
     /**
@@ -472,12 +441,7 @@ public abstract class Page {
      * @return
      */
     protected short readShort(int pos) {
-        short value = 0;
-        value <<= bitsPerByte;
-        value += array[pos] & byteMask;
-        value <<= bitsPerByte;
-        value += array[pos + 1] & byteMask;
-        return value;
+        return PageCodec.getShort(array, pos);
     }
 
     /**
@@ -522,10 +486,7 @@ public abstract class Page {
     }
 
     protected void writeCharacter(int pos, char value) {
-        array[pos + sizeOfCharacter - 1] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfCharacter - 2] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
+        PageCodec.putCharacter(array, pos, value);
         writeModified(true);
     }
 
@@ -553,14 +514,7 @@ public abstract class Page {
      * @param value
      */
     protected void writeInteger(int pos, int value) {
-        array[pos + sizeOfInteger - 1] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfInteger - 2] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfInteger - 3] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfInteger - 4] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
+        PageCodec.putInteger(array, pos, value);
         writeModified(true);
     }
 
@@ -570,22 +524,7 @@ public abstract class Page {
      * @param value
      */
     protected void writeLong(int pos, long value) {
-        array[pos + sizeOfLong - 1] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfLong - 2] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfLong - 3] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfLong - 4] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfLong - 5] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfLong - 6] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfLong - 7] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfLong - 8] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
+        PageCodec.putLong(array, pos, value);
         writeModified(true);
     }
 
@@ -595,10 +534,7 @@ public abstract class Page {
      * @param value
      */
     protected void writeShort(int pos, int value) {
-        array[pos + sizeOfShort - 1] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
-        array[pos + sizeOfShort - 2] = (byte) (value & byteMask);
-        value >>= bitsPerByte;
+        PageCodec.putShort(array, pos, (short) value);
         writeModified(true);
     }
 
@@ -614,23 +550,17 @@ public abstract class Page {
 
     protected void writeString(int pos, byte[] value) {
         if (value != null) {
-            for (int i = 0; i < value.length; i++) {
-                array[pos + i] = value[i];
-            }
+            System.arraycopy(value, 0, array, pos, value.length);
         }
     }
 
     protected void moveLeft(int dest, int source, int length) {
-        for (int i = 0; i < length; i++) {
-            array[dest + i] = array[source + i];
-        }
+        System.arraycopy(array, source, array, dest, length);
         writeModified(true);
     }
 
     protected void moveRight(int dest, int source, int length) {
-        for (int i = 0; i < length; i++) {
-            array[dest + length - i - 1] = array[source + length - i - 1];
-        }
+        System.arraycopy(array, source, array, dest, length);
         writeModified(true);
     }
 
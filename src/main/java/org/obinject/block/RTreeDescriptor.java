@@ -25,14 +25,14 @@ package org.obinject.block;
  * {@code
  * Design:
  *
- * +-------------------+-------------+--------------------------------+
- * |modi|node|prev|next| root | tree |                                |
- * |fied|type|page|page| page |height|                                |
- * |    |    | Id | Id |  Id  |      |<----------free space---------->|
- * |bool|    |    |    |      |      |                                |
- * |-------------------+-------------|                                |
- * |      header       |  features   |                                |
- * +-------------------+-------------+--------------------------------+
+ * +-------------------+--------------------+-------------------------+
+ * |modi|node|prev|next| root | tree |format|                         |
+ * |fied|type|page|page| page |height|ver-  |                         |
+ * |    |    | Id | Id |  Id  |      |sion  |<-------free space------>|
+ * |bool|    |    |    |      |      |      |                         |
+ * |-------------------+--------------------|                         |
+ * |      header       |      features      |                         |
+ * +-------------------+--------------------+-------------------------+
  * }
  * </pre></blockquote>
  *
@@ -48,6 +48,18 @@ public class RTreeDescriptor extends DescriptorNode
      */
     public static final int nodeType = 1005;
 
+    /**
+     * Format of the nodes of the tree: the keys are stored as they are.
+     */
+    public static final int exactFormat = 0;
+
+    /**
+     * Format of the nodes of the tree: the keys of the indexes are quantized
+     * over the bounding box of the index (see {@link RTreeIndex#quantizedNodeType}).
+     * The keys of the leaves are stored as they are.
+     */
+    public static final int quantizedFormat = 1;
+
     /**
      *
      * @param node
@@ -126,4 +138,24 @@ public class RTreeDescriptor extends DescriptorNode
     {
 	this.writeTreeHeight(this.readTreeHeight() + 1);
     }
+
+    /**
+     *
+     * @return {@link #exactFormat} or {@link #quantizedFormat}.
+     */
+    public int readFormatVersion()
+    {
+	int pos = AbstractNode.sizeOfHeader() + Node.sizeOfLong + Node.sizeOfInteger;
+	return this.readInteger(pos);
+    }
+
+    /**
+     *
+     * @param version {@link #exactFormat} or {@link #quantizedFormat}.
+     */
+    public void writeFormatVersion(int version)
+    {
+	int pos = AbstractNode.sizeOfHeader() + Node.sizeOfLong + Node.sizeOfInteger;
+	this.writeInteger(pos, version);
+    }
 }
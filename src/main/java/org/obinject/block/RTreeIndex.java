@@ -51,7 +51,13 @@ public class RTreeIndex<K extends Rectangle<K> & Entity<? super K>> extends RTre
 {
 
     public static final int nodeType = 9;
+    /**
+     * Type of the indexes whose keys are quantized over a reference box (see
+     * {@link RTreeNode#isQuantized()}).
+     */
+    public static final int quantizedNodeType = 10;
     private static long numMbrs = 0;
+    private final boolean quantized;
 
     /**
      *
@@ -59,9 +65,27 @@ public class RTreeIndex<K extends Rectangle<K> & Entity<? super K>> extends RTre
      * @param keyClass
      */
     public RTreeIndex(Node node, Class<K> keyClass)
+    {
+	this(node, keyClass, false);
+    }
+
+    /**
+     *
+     * @param node
+     * @param keyClass
+     * @param quantized Whether the keys are quantized, if the node is new.
+     * The type of a node that already exists is kept.
+     */
+    public RTreeIndex(Node node, Class<K> keyClass, boolean quantized)
     {
 	super(node, keyClass);
+	int type = node.readNodeType();
+	this.quantized = (type == 0) ? quantized : type == RTreeIndex.quantizedNodeType;
         initialize(node);
+	if (type == 0 && quantized)
+	{
+	    this.clear();
+	}
     }
 
     /**
@@ -75,15 +99,14 @@ public class RTreeIndex<K extends Rectangle<K> & Entity<? super K>> extends RTre
 	int total = this.readNumberOfKeys();
 	int size = key.sizeOfKey();
 
-	if (size + this.sizeOfEntry() > this.freeSpace(size)) // It there is not space.
+	if (this.sizeOfStoredKey(size) + this.sizeOfEntry() > this.freeSpace(size)) // It there is not space.
 	{
 	    return false;
 	}
 	else
 	{
 	    numMbrs++;
-	    int off = this.getOffset(total, size);
-	    key.pushKey(this.getArray(), off); // Adding			
+	    this.writeKey(total, key); // Adding
 	    this.writeSubPageId(total, subPageId);
 	    this.incrementNumberOfKeys();
 
@@ -103,7 +126,7 @@ public class RTreeIndex<K extends Rectangle<K> & Entity<? super K>> extends RTre
     {
 	int size = key1.sizeOfKey();
 
-	if (size + size + 2 * this.sizeOfEntry() > this.freeSpace(size))
+	if (2 * this.sizeOfStoredKey(size) + 2 * this.sizeOfEntry() > this.freeSpace(size))
 	{
 	    return false;
 	}
@@ -123,7 +146,7 @@ public class RTreeIndex<K extends Rectangle<K> & Entity<? super K>> extends RTre
     @Override
     protected int getNodeType()
     {
-	return nodeType;
+	return this.quantized ? quantizedNodeType : nodeType;
     }
 
     /**
@@ -171,7 +194,7 @@ public class RTreeIndex<K extends Rectangle<K> & Entity<? super K>> extends RTre
 	if (minEnlargement != 0)
 	{
 	    // Writes enlargement
-	    newMbr.pushKey(this.getArray(), this.getOffset(idx, newMbr.sizeOfKey()));
+	    this.writeKey(idx, newMbr);
 	}
 
 	return idx;
@@ -203,7 +226,8 @@ public class RTreeIndex<K extends Rectangle<K> & Entity<? super K>> extends RTre
      */
     public static boolean matchNodeType(Node node)
     {
-	return node.readNodeType() == RTreeIndex.nodeType;
+	int type = node.readNodeType();
+	return type == RTreeIndex.nodeType || type == RTreeIndex.quantizedNodeType;
     }
 
     /**
@@ -224,8 +248,7 @@ public class RTreeIndex<K extends Rectangle<K> & Entity<? super K>> extends RTre
      */
     public void replace(int idx, K key)
     {
-	int off = this.getOffset(idx, key.sizeOfKey());
-	key.pushKey(this.getArray(), off);
+	this.writeKey(idx, key);
     }
 
     /**
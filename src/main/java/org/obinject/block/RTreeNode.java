@@ -48,6 +48,14 @@ import org.obinject.meta.Rectangle;
 public class RTreeNode<K extends Rectangle<K> & Entity<? super K>> extends KeyNode<K>
 {
 
+    /**
+     * Last cell of the grid of a quantized node (see {@link #isQuantized()}):
+     * each bound of a key is stored as an unsigned 16-bit cell.
+     */
+    public static final int maxCell = 0xFFFF;
+
+    private int dims = 0;
+
     /**
      *
      * @param node
@@ -76,13 +84,272 @@ public class RTreeNode<K extends Rectangle<K> & Entity<? super K>> extends KeyNo
                 key = this.newGenericType();
             }
 	    //pull the key of the page
-	    key.pullKey(this.getArray(), this.getOffset(idx, key.sizeOfKey()));
+	    if (this.isQuantized())
+	    {
+		this.decodeKey(idx, key);
+	    }
+	    else
+	    {
+		key.pullKey(this.getArray(), this.getOffset(idx, key.sizeOfKey()));
+	    }
 	    return key;
 	}//endif
 
 	return null;
     }
 
+    /**
+     * Reads a key into an existing instance, which works as a reusable
+     * cursor: no key is instantiated by reflection. Only the coordinates are
+     * read; the Uuid of the cursor is kept.
+     *
+     * @param idx
+     * @param cursor The instance that receives the key, or null to build a
+     * new one as {@link #buildKey(int)} does.
+     * @return The cursor, or the new key.
+     */
+    public K readKey(int idx, K cursor)
+    {
+	if (cursor == null)
+	{
+	    return this.buildKey(idx);
+	}
+	if (this.isQuantized())
+	{
+	    this.decodeKey(idx, cursor);
+	}
+	else
+	{
+	    cursor.pullKey(this.getArray(), this.getOffset(idx, cursor.sizeOfKey()));
+	}
+	return cursor;
+    }
+
+    /**
+     * Reads the origin of a key straight from the page.
+     *
+     * @param idx
+     * @param axis
+     * @param cursor Any key of the tree, used only to read the layout (see
+     * {@link Rectangle#pullOrigin(byte[], int, int)}).
+     * @return
+     */
+    public double readOrigin(int idx, int axis, K cursor)
+    {
+	if (this.isQuantized())
+	{
+	    return this.valueOfCell(this.readCharacter(this.cellPosition(idx, axis)), axis);
+	}
+	return cursor.pullOrigin(this.getArray(), this.getOffset(idx, cursor.sizeOfKey()), axis);
+    }
+
+    /**
+     * Reads the extension of a key straight from the page.
+     *
+     * @param idx
+     * @param axis
+     * @param cursor Any key of the tree, used only to read the layout (see
+     * {@link Rectangle#pullExtension(byte[], int, int)}).
+     * @return
+     */
+    public double readExtension(int idx, int axis, K cursor)
+    {
+	if (this.isQuantized())
+	{
+	    double lower = this.valueOfCell(this.readCharacter(this.cellPosition(idx, axis)), axis);
+	    double upper = this.valueOfCell(this.readCharacter(this.cellPosition(idx, this.dims() + axis)), axis);
+	    return RTreeNode.extension(lower, upper);
+	}
+	return cursor.pullExtension(this.getArray(), this.getOffset(idx, cursor.sizeOfKey()), axis);
+    }
+
+    /**
+     * Writes a key at a position. In a quantized node the reference box is
+     * first enlarged to hold the key (see {@link #enlargeReference}).
+     *
+     * @param idx
+     * @param key
+     */
+    protected final void writeKey(int idx, K key)
+    {
+	if (!this.isQuantized())
+	{
+	    key.pushKey(this.getArray(), this.getOffset(idx, key.sizeOfKey()));
+	    return;
+	}
+	this.enlargeReference(key);
+	for (int axis = 0; axis < this.dims(); axis++)
+	{
+	    double origin = key.getOrigin(axis);
+	    this.writeCells(idx, axis, origin, origin + key.getExtension(axis));
+	}
+    }
+
+    /**
+     * Tells whether the keys of the node are quantized, as the nodes of type
+     * {@link RTreeIndex#quantizedNodeType}. The features of such a node hold
+     * a reference box, which covers all its keys, and each key is stored as
+     * the cells of a grid of {@link #maxCell} cells per axis over the
+     * reference box. The cells are rounded outward, so a decoded key always
+     * covers the key that was written.
+     *
+     * @return
+     */
+    public final boolean isQuantized()
+    {
+	return this.readNodeType() == RTreeIndex.quantizedNodeType;
+    }
+
+    /**
+     * Enlarges the reference box of a quantized node to cover a key. If the
+     * box grows, the stored keys are decoded and quantized again over the new
+     * box. Nodes that are not quantized are not changed.
+     * <p>
+     * Adding the bounding box of a group of keys before the keys themselves
+     * avoids quantizing the keys again at each enlargement.
+     *
+     * @param key
+     */
+    public final void enlargeReference(K key)
+    {
+	if (!this.isQuantized())
+	{
+	    return;
+	}
+	int dims = this.dims();
+	boolean empty = this.readDouble(this.referencePosition(0)) > this.readDouble(this.referencePosition(dims));
+	boolean inside = !empty;
+	for (int axis = 0; axis < dims && inside; axis++)
+	{
+	    double origin = key.getOrigin(axis);
+	    inside = origin >= this.readDouble(this.referencePosition(axis))
+		    && origin + key.getExtension(axis) <= this.readDouble(this.referencePosition(dims + axis));
+	}
+	if (inside)
+	{
+	    return;
+	}
+
+	// Decoding the stored keys over the old box
+	int total = this.readNumberOfKeys();
+	double[][] lower = new double[dims][total];
+	double[][] upper = new double[dims][total];
+	for (int axis = 0; axis < dims; axis++)
+	{
+	    for (int i = 0; i < total; i++)
+	    {
+		lower[axis][i] = this.valueOfCell(this.readCharacter(this.cellPosition(i, axis)), axis);
+		upper[axis][i] = this.valueOfCell(this.readCharacter(this.cellPosition(i, dims + axis)), axis);
+	    }
+	}
+
+	for (int axis = 0; axis < dims; axis++)
+	{
+	    double origin = key.getOrigin(axis);
+	    double end = origin + key.getExtension(axis);
+	    if (!empty)
+	    {
+		origin = Math.min(origin, this.readDouble(this.referencePosition(axis)));
+		end = Math.max(end, this.readDouble(this.referencePosition(dims + axis)));
+	    }
+	    this.writeDouble(this.referencePosition(axis), origin);
+	    this.writeDouble(this.referencePosition(dims + axis), end);
+	    for (int i = 0; i < total; i++)
+	    {
+		this.writeCells(i, axis, lower[axis][i], upper[axis][i]);
+	    }
+	}
+    }
+
+    private void decodeKey(int idx, K key)
+    {
+	for (int axis = 0; axis < this.dims(); axis++)
+	{
+	    double lower = this.valueOfCell(this.readCharacter(this.cellPosition(idx, axis)), axis);
+	    double upper = this.valueOfCell(this.readCharacter(this.cellPosition(idx, this.dims() + axis)), axis);
+	    key.setOrigin(axis, lower);
+	    key.setExtension(axis, RTreeNode.extension(lower, upper));
+	}
+    }
+
+    private void writeCells(int idx, int axis, double lower, double upper)
+    {
+	this.writeCharacter(this.cellPosition(idx, axis), (char) this.cellOf(lower, axis, false));
+	this.writeCharacter(this.cellPosition(idx, this.dims() + axis), (char) this.cellOf(upper, axis, true));
+    }
+
+    /**
+     * @return The value of a cell on an axis of the reference box.
+     */
+    private double valueOfCell(int cell, int axis)
+    {
+	double lower = this.readDouble(this.referencePosition(axis));
+	double upper = this.readDouble(this.referencePosition(this.dims() + axis));
+	return (cell == RTreeNode.maxCell) ? upper : lower + cell * ((upper - lower) / RTreeNode.maxCell);
+    }
+
+    /**
+     * @param value A value inside the reference box.
+     * @param roundUp Whether the cell is rounded up (upper bound of a key) or
+     * down (lower bound).
+     * @return The cell of the value, rounded outward.
+     */
+    private int cellOf(double value, int axis, boolean roundUp)
+    {
+	double lower = this.readDouble(this.referencePosition(axis));
+	double upper = this.readDouble(this.referencePosition(this.dims() + axis));
+	if (upper <= lower)
+	{
+	    return roundUp ? RTreeNode.maxCell : 0;
+	}
+	double cell = (value - lower) / ((upper - lower) / RTreeNode.maxCell);
+	int rounded = (int) Math.max(0, Math.min(RTreeNode.maxCell, roundUp ? Math.ceil(cell) : Math.floor(cell)));
+	// Floating point errors must not move the bound inward
+	if (roundUp)
+	{
+	    while (rounded < RTreeNode.maxCell && this.valueOfCell(rounded, axis) < value)
+	    {
+		rounded++;
+	    }
+	}
+	else
+	{
+	    while (rounded > 0 && this.valueOfCell(rounded, axis) > value)
+	    {
+		rounded--;
+	    }
+	}
+	return rounded;
+    }
+
+    /**
+     * @return An extension such that lower + extension is not below upper.
+     */
+    private static double extension(double lower, double upper)
+    {
+	double extension = upper - lower;
+	return (lower + extension < upper) ? Math.nextUp(extension) : extension;
+    }
+
+    private int referencePosition(int bound)
+    {
+	return RTreeNode.sizeOfHeader() + RTreeNode.sizeOfInteger + bound * RTreeNode.sizeOfDouble;
+    }
+
+    private int cellPosition(int idx, int bound)
+    {
+	return this.getOffset(idx, 0) + bound * RTreeNode.sizeOfCharacter;
+    }
+
+    private int dims()
+    {
+	if (this.dims == 0)
+	{
+	    this.dims = this.newGenericType().numberOfDimensions();
+	}
+	return this.dims;
+    }
+
     /**
      *
      */
@@ -91,6 +358,37 @@ public class RTreeNode<K extends Rectangle<K> & Entity<? super K>> extends KeyNo
     {
 	// Zering number of keys.
 	this.writeInteger(RTreeNode.sizeOfHeader(), 0);
+	if (this.isQuantized())
+	{
+	    // Empty reference box
+	    for (int axis = 0; axis < this.dims(); axis++)
+	    {
+		this.writeDouble(this.referencePosition(axis), Double.POSITIVE_INFINITY);
+		this.writeDouble(this.referencePosition(this.dims() + axis), Double.NEGATIVE_INFINITY);
+	    }
+	}
+    }
+
+    /**
+     * Removes the key and the entry at the position. The last key and entry
+     * are moved to their place, so the order of the keys is not kept.
+     *
+     * @param idx
+     */
+    public final void removeKey(int idx)
+    {
+	int last = this.readNumberOfKeys() - 1;
+	if (idx != last)
+	{
+	    int sizeOfKey = this.sizeOfStoredKey(this.buildKey(idx).sizeOfKey());
+	    int sizeOfEntry = this.sizeOfEntry();
+	    int pos = RTreeNode.sizeOfHeader() + this.sizeOfFeatures();
+	    byte[] array = this.getArray();
+	    System.arraycopy(array, pos + last * sizeOfEntry, array, pos + idx * sizeOfEntry, sizeOfEntry);
+	    System.arraycopy(array, this.getOffset(last, sizeOfKey), array, this.getOffset(idx, sizeOfKey), sizeOfKey);
+	}
+	// Also sets the node as modified.
+	this.decrementNumberOfKeys();
     }
 
     /**
@@ -130,7 +428,30 @@ public class RTreeNode<K extends Rectangle<K> & Entity<? super K>> extends KeyNo
      */
     protected final int getOffset(int idx, int sizeOfKey)
     {
-	return this.sizeOfArray() - ((idx + 1) * sizeOfKey);
+	return this.sizeOfArray() - ((idx + 1) * this.sizeOfStoredKey(sizeOfKey));
+    }
+
+    /**
+     *
+     * @param sizeOfKey
+     * @return The number of keys of this size that fit in the node, the
+     * same found by adding keys until the node is full.
+     */
+    public final int capacity(int sizeOfKey)
+    {
+	return (this.sizeOfArray() - RTreeNode.sizeOfHeader() - this.sizeOfFeatures())
+		/ (this.sizeOfStoredKey(sizeOfKey) + this.sizeOfEntry());
+    }
+
+    /**
+     *
+     * @param sizeOfKey
+     * @return The size of a key in the page: the size of the key itself, or
+     * the size of its cells in a quantized node.
+     */
+    protected final int sizeOfStoredKey(int sizeOfKey)
+    {
+	return this.isQuantized() ? 2 * this.dims() * RTreeNode.sizeOfCharacter : sizeOfKey;
     }
 
     /**
@@ -190,7 +511,9 @@ public class RTreeNode<K extends Rectangle<K> & Entity<? super K>> extends KeyNo
      */
     protected final int sizeOfFeatures()
     {
-	return RTreeNode.sizeOfInteger; // number of keys
+	return this.isQuantized()
+		? RTreeNode.sizeOfInteger + 2 * this.dims() * RTreeNode.sizeOfDouble // number of keys, reference box
+		: RTreeNode.sizeOfInteger; // number of keys
     }
 
     @Override
@@ -43,6 +43,11 @@ public abstract class AbstractWorkspace implements Workspace {
      * The size of blocks.
      */
     protected int sizeArray;
+    /**
+     * The page cache shared by the sessions, or {@code null} if each session
+     * keeps its own pages.
+     */
+    private BufferPool bufferPool;
 
     /**
      * Constructs a new {@code Workspace}. This constructor is used to
@@ -106,11 +111,18 @@ public abstract class AbstractWorkspace implements Workspace {
         header.writeSizeOfArray(sizeArray);
         header.writeLastPageId(0);
         header.writeLastSessionId(0);
-        header.writePreviousPageId(0);
+        header.writeFormat(this.formatOfWorkspace());
         header.writeNextPageId(0);
         this.flushPage(header);
     }
 
+    /**
+     * @return The format recorded in the header of a new {@code Workspace}.
+     */
+    protected long formatOfWorkspace() {
+        return HeaderNode.plainFormat;
+    }
+
     /**
      * Deletes a page from the {@code Workspace}.
      *
@@ -126,7 +138,7 @@ public abstract class AbstractWorkspace implements Workspace {
      * @param classID
      * @return
      */
-    public long findUniqueDescriptor(Uuid classID) {
+    public synchronized long findUniqueDescriptor(Uuid classID) {
         HeaderNode header = new HeaderNode(this.loadPage(pageIdDescriptor));
         int idx = header.indexOfDescriptorClassID(classID);
         if (idx == -1) {
@@ -156,6 +168,27 @@ public abstract class AbstractWorkspace implements Workspace {
         }
     }// flushPage
 
+    /**
+     *
+     * @return
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Makes the sessions opened from now on share a bounded page cache.
+     *
+     * @param budget The size of the cache in bytes, or a non-positive value
+     * to go back to one private cache per session.
+     */
+    public synchronized void setBufferPool(long budget) {
+        if (bufferPool != null) {
+            bufferPool.flush();
+        }
+        bufferPool = (budget > 0) ? new BufferPool(this, budget) : null;
+    }
+
     /**
      *
      * @return
@@ -168,7 +201,7 @@ public abstract class AbstractWorkspace implements Workspace {
      *
      * @return
      */
-    public long incrementPageId() {
+    public synchronized long incrementPageId() {
         //ajusting LastPageId
         HeaderNode header = new HeaderNode(this.loadPage(pageIdDescriptor));
         long pageId = newPageId(header);
@@ -180,7 +213,7 @@ public abstract class AbstractWorkspace implements Workspace {
      *
      * @return
      */
-    public long incrementSessionId() {
+    public synchronized long incrementSessionId() {
         HeaderNode header = new HeaderNode(this.loadPage(pageIdDescriptor));
         long inc = header.readLastSessionId() + 1;
         header.writeLastSessionId(inc);
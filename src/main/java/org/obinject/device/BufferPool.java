@@ -0,0 +1,373 @@
+/*
+Copyright (C) 2013     Enzo Seraphim
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+or visit <http://www.gnu.org/licenses/>
+*/
+
+package org.obinject.device;
+
+import java.util.Arrays;
+import org.obinject.block.Node;
+
+/**
+ * Bounded page cache shared by all sessions of a {@code Workspace}.
+ * <p>
+ * The pool holds at most {@code budget / sizeOfArray} frames. A session pins
+ * a page while it uses it and unpins it when done; only unpinned frames are
+ * chosen for eviction, following the CLOCK (second chance) policy. Dirty
+ * pages, tracked by {@link Node#readModified()}, are written back when they
+ * are evicted or flushed. If every frame is pinned the pool overcommits
+ * rather than failing, and gives the extra frames back as soon as they are
+ * unpinned.
+ * <p>
+ * The pool is guarded by its monitor, so one pool can serve concurrent
+ * sessions, but no disk access is made while holding it. A missing page is
+ * read after its frame is reserved, and the sessions asking for the same
+ * page meanwhile wait until it is loaded. A dirty page is written back
+ * after its frame is marked as being written, so it is neither evicted nor
+ * written by another session meanwhile; the page may still be pinned.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ */
+public class BufferPool {
+
+    private AbstractWorkspace workspace;
+    private int maxFrames;
+    private LongIntMap index;
+    private long[] pageIds;
+    private Node[] nodes;
+    private int[] pinCount;
+    private boolean[] referenced;
+    private boolean[] loading;
+    private boolean[] writing;
+    private int frames = 0;
+    private int[] freeFrames;
+    private int freeSize = 0;
+    private int hand = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     *
+     * @param workspace The {@code Workspace} that reads and writes the pages.
+     * @param budget The size of the pool in bytes.
+     */
+    public BufferPool(AbstractWorkspace workspace, long budget) {
+        this.workspace = workspace;
+        this.maxFrames = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, budget / workspace.sizeOfArray()));
+        int initial = Math.min(this.maxFrames, 64);
+        this.index = new LongIntMap(initial);
+        this.pageIds = new long[initial];
+        this.nodes = new Node[initial];
+        this.pinCount = new int[initial];
+        this.referenced = new boolean[initial];
+        this.loading = new boolean[initial];
+        this.writing = new boolean[initial];
+        this.freeFrames = new int[initial];
+    }
+
+    /**
+     * Returns the page, reading it from the {@code Workspace} if it is not
+     * in the pool, and increments its pin count.
+     *
+     * @param id The ID of the page.
+     * @return The pinned page.
+     */
+    public Node pin(long id) {
+        int f;
+        boolean interrupted = false;
+        try {
+            int written = -1;
+            while (true) {
+                Node dirty = null;
+                synchronized (this) {
+                    int frame = index.get(id);
+                    if (frame != LongIntMap.EMPTY && loading[frame]) {
+                        interrupted |= await();
+                        continue;
+                    }
+                    if (frame != LongIntMap.EMPTY) {
+                        hits++;
+                        pinCount[frame]++;
+                        referenced[frame] = true;
+                        return nodes[frame];
+                    }
+                    if (written != -1 && isEvictable(written) && !nodes[written].readModified()) {
+                        // the victim written back is still unused
+                        f = written;
+                        drop(f);
+                    } else if (freeSize > 0) {
+                        f = freeFrames[--freeSize];
+                    } else if (frames < maxFrames) {
+                        f = newFrame();
+                    } else {
+                        f = victim();
+                        if (f == -1) {
+                            // every frame is pinned or being written: overcommit
+                            f = newFrame();
+                        } else if (nodes[f].readModified()) {
+                            writing[f] = true;
+                            dirty = nodes[f];
+                        } else {
+                            drop(f);
+                        }
+                    }
+                    if (dirty == null) {
+                        misses++;
+                        pageIds[f] = id;
+                        nodes[f] = null;
+                        pinCount[f] = 1;
+                        referenced[f] = true;
+                        loading[f] = true;
+                        index.put(id, f);
+                        break;
+                    }
+                }
+                //writing the victim back without holding the pool, then trying again
+                writeBack(f, dirty);
+                written = f;
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        //reading without holding the pool
+        Node node = null;
+        try {
+            node = workspace.loadPage(id);
+        } finally {
+            synchronized (this) {
+                loading[f] = false;
+                if (node != null) {
+                    nodes[f] = node;
+                } else {
+                    // the page could not be read: give the frame back
+                    index.remove(id);
+                    pinCount[f] = 0;
+                    freeFrames[freeSize++] = f;
+                }
+                notifyAll();
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Waits until a page being read or written by another session is done.
+     *
+     * @return {@code true} if the thread was interrupted while waiting.
+     */
+    private boolean await() {
+        try {
+            wait();
+            return false;
+        } catch (InterruptedException ex) {
+            return true;
+        }
+    }
+
+    /**
+     * Writes a page back without holding the pool. The caller marks the
+     * frame as being written; the mark is cleared here.
+     *
+     * @param frame The frame of the page.
+     * @param node The page.
+     */
+    private void writeBack(int frame, Node node) {
+        try {
+            workspace.flushPage(node);
+        } finally {
+            synchronized (this) {
+                writing[frame] = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Decrements the pin count of a page.
+     *
+     * @param id The ID of the page.
+     * @param flush If {@code true}, a dirty page is written back at once.
+     */
+    public void unpin(long id, boolean flush) {
+        int frame;
+        Node dirty = null;
+        boolean interrupted = false;
+        try {
+            synchronized (this) {
+                frame = index.get(id);
+                if (frame == LongIntMap.EMPTY || pinCount[frame] == 0) {
+                    throw new IllegalStateException("Page " + id + " is not pinned.");
+                }
+                if (flush) {
+                    while (writing[frame]) {
+                        interrupted |= await();
+                    }
+                    if (nodes[frame].readModified()) {
+                        writing[frame] = true;
+                        dirty = nodes[frame];
+                    }
+                }
+                if (dirty == null) {
+                    release(frame);
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        //the page stays pinned while it is written
+        writeBack(frame, dirty);
+        synchronized (this) {
+            release(frame);
+        }
+    }
+
+    private void release(int frame) {
+        pinCount[frame]--;
+        if (pinCount[frame] == 0 && index.size() > maxFrames
+                && !writing[frame] && !nodes[frame].readModified()) {
+            // give back an overcommitted frame; a dirty one waits for the clock
+            drop(frame);
+            freeFrames[freeSize++] = frame;
+        }
+    }
+
+    /**
+     * Writes back every dirty page in the pool.
+     */
+    public void flush() {
+        boolean interrupted = false;
+        try {
+            for (int f = 0;; f++) {
+                Node dirty;
+                synchronized (this) {
+                    if (f >= frames) {
+                        return;
+                    }
+                    while (writing[f]) {
+                        interrupted |= await();
+                    }
+                    if (nodes[f] == null || !nodes[f].readModified()) {
+                        continue;
+                    }
+                    writing[f] = true;
+                    dirty = nodes[f];
+                }
+                writeBack(f, dirty);
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private int newFrame() {
+        if (frames == nodes.length) {
+            int length = 2 * frames;
+            pageIds = Arrays.copyOf(pageIds, length);
+            nodes = Arrays.copyOf(nodes, length);
+            pinCount = Arrays.copyOf(pinCount, length);
+            referenced = Arrays.copyOf(referenced, length);
+            loading = Arrays.copyOf(loading, length);
+            writing = Arrays.copyOf(writing, length);
+            freeFrames = Arrays.copyOf(freeFrames, length);
+        }
+        return frames++;
+    }
+
+    private boolean isEvictable(int frame) {
+        return nodes[frame] != null && pinCount[frame] == 0 && !writing[frame];
+    }
+
+    /**
+     * Chooses an unpinned frame by the CLOCK policy. The page in the frame
+     * may still be dirty.
+     *
+     * @return The frame, or -1 if every frame is pinned or being written.
+     */
+    private int victim() {
+        for (int i = 0; i < 2 * frames; i++) {
+            int f = hand;
+            hand = (hand + 1) % frames;
+            if (isEvictable(f)) {
+                if (referenced[f]) {
+                    referenced[f] = false;
+                } else {
+                    return f;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes a clean page from its frame.
+     */
+    private void drop(int frame) {
+        index.remove(pageIds[frame]);
+        nodes[frame] = null;
+        evictions++;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public long getBudget() {
+        return (long) maxFrames * workspace.sizeOfArray();
+    }
+
+    /**
+     *
+     * @return
+     */
+    public synchronized int getResidentPages() {
+        return index.size();
+    }
+
+    /**
+     *
+     * @return
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+}
@@ -19,15 +19,24 @@ or visit <http://www.gnu.org/licenses/>
 
 package org.obinject.device;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.obinject.block.HeaderNode;
 import org.obinject.block.Node;
 
 /**
+ * Workspace kept in a file. Each page is followed in the file by a CRC32C
+ * trailer of its bytes, so a corrupted or torn page is detected when it is
+ * loaded (see {@link PageChecksum}).
+ * <p>
+ * Files written without trailers are still readable: the header records the
+ * format of the file, and the pages of a {@link HeaderNode#plainFormat} file
+ * are not verified.
  *
  * @author Enzo Seraphim <seraphim@unifei.edu.br>
  * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
@@ -36,8 +45,9 @@ import org.obinject.block.Node;
 public class File extends AbstractWorkspace {
 
     private java.io.File objectFile;
-    private FileInputStream fileInput;
-    private RandomAccessFile fileOutput;
+    private FileChannel channel;
+    private boolean checksummed = true;
+    private final PageChecksum checksums = new PageChecksum(this.getName());
 
     /**
      *
@@ -71,44 +81,88 @@ public class File extends AbstractWorkspace {
     }
 
     /**
+     * Writes the page at its position in the file, followed by its checksum.
+     * Positional writes do not touch the channel position, so no lock is
+     * needed.
      *
      * @param node
-     * @return
+     * @return false if the page could not be written.
      */
     @Override
     public final boolean writePage(Node node) {
-        long pos = node.getPageId() * this.sizeOfArray();
+        byte[] array = node.getArray();
+        long pos = node.getPageId() * this.sizeOfSlot();
         try {
-            //writing
-            fileOutput.seek(pos);
-            fileOutput.write(node.getArray());
+            this.write(ByteBuffer.wrap(array), pos);
+            if (checksummed) {
+                this.write(ByteBuffer.allocate(PageChecksum.sizeOfTrailer).putInt(0, PageChecksum.checksum(array)), pos + array.length);
+                checksums.written(node.getPageId());
+            }
             return true;
         } catch (IOException ex) {
             Logger.getLogger(File.class.getName()).log(Level.SEVERE, null, ex);
         }
-        return true;
+        return false;
     }
 
     /**
+     * Reads the page at its position in the file. Concurrent readers only
+     * share the set of verified pages, and short reads are retried. A page
+     * past the end of the file has never been written and is left zeroed.
      *
      * @param id
      * @return
+     * @throws UncheckedIOException if the page cannot be read, or if its
+     * checksum does not match its trailer.
      */
     @Override
     public Node loadPage(long id) {
         byte[] array = new byte[this.sizeOfArray()];
-        long pos = id * this.sizeOfArray();
+        long pos = id * this.sizeOfSlot();
         //page is not memory
         try {
-            fileInput.getChannel().position(pos);
-            fileInput.read(array);
+            int read = this.read(ByteBuffer.wrap(array), pos);
+            if (checksummed && read > 0 && checksums.isPending(id)) {
+                ByteBuffer trailer = ByteBuffer.allocate(PageChecksum.sizeOfTrailer);
+                if (read < array.length || this.read(trailer, pos + array.length) < PageChecksum.sizeOfTrailer) {
+                    throw checksums.corrupted(id);
+                }
+                checksums.verify(id, array, trailer.getInt(0));
+            }
         } catch (IOException ex) {
-            Logger.getLogger(File.class.getName()).log(Level.SEVERE, null, ex);
+            throw new UncheckedIOException(ex);
         }//endtry
         //create page
         return new Node(id, array);
     }
 
+    private int sizeOfSlot() {
+        return checksummed ? this.sizeOfArray() + PageChecksum.sizeOfTrailer : this.sizeOfArray();
+    }
+
+    private void write(ByteBuffer buffer, long pos) throws IOException {
+        while (buffer.hasRemaining()) {
+            pos += channel.write(buffer, pos);
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or the end of the file is reached.
+     *
+     * @return the number of bytes read.
+     */
+    private int read(ByteBuffer buffer, long pos) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, pos + total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
     /**
      *
      * @return
@@ -126,15 +180,30 @@ public class File extends AbstractWorkspace {
     protected void loadWorkspace() {
         objectFile = new java.io.File(this.getName());
         try {
-            fileOutput = new RandomAccessFile(objectFile, "rw");
-            fileInput = new FileInputStream(objectFile);
-            HeaderNode header = new HeaderNode(this.loadPage(0));
-            sizeArray = header.readSizeOfArray();
+            channel = new RandomAccessFile(objectFile, "rw").getChannel();
+            //the header is read as a plain page first: it holds the size and the format of the pages
+            checksummed = false;
+            Node page = this.loadPage(0);
+            checksummed = checksums.readFormat(page);
+            sizeArray = new HeaderNode(page).readSizeOfArray();
+            if (checksummed) {
+                //verifying the header
+                this.loadPage(0);
+            }
         } catch (IOException ioe) {
             Logger.getLogger(File.class.getName()).log(Level.SEVERE, null, ioe);
         }
     }
 
+    /**
+     *
+     * @return
+     */
+    @Override
+    protected long formatOfWorkspace() {
+        return HeaderNode.checksummedFormat;
+    }
+
     /**
      *
      */
@@ -142,8 +211,7 @@ public class File extends AbstractWorkspace {
     protected void createWorkspace() {
         objectFile = new java.io.File(this.getName());
         try {
-            fileOutput = new RandomAccessFile(objectFile, "rw");
-            fileInput = new FileInputStream(objectFile);
+            channel = new RandomAccessFile(objectFile, "rw").getChannel();
         } catch (IOException ioe) {
             Logger.getLogger(File.class.getName()).log(Level.SEVERE, null, ioe);
         }
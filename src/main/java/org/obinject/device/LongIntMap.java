@@ -0,0 +1,155 @@
+/*
+Copyright (C) 2013     Enzo Seraphim
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+or visit <http://www.gnu.org/licenses/>
+*/
+
+package org.obinject.device;
+
+import java.util.Arrays;
+
+/**
+ * Hash table from {@code long} keys to non-negative {@code int} values, with
+ * open addressing (linear probing) and backward-shift deletion. The page
+ * caches use it to find the frame of a page without boxing the page Id. The
+ * table doubles when it gets half full.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ */
+public final class LongIntMap {
+
+    /**
+     * Value returned for a missing key.
+     */
+    public static final int EMPTY = -1;
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size = 0;
+
+    /**
+     *
+     * @param maxKeys The expected number of keys stored at the same time.
+     */
+    public LongIntMap(int maxKeys) {
+        // load factor of at most 0.5
+        int length = Integer.highestOneBit(Math.max(2 * maxKeys, 2) - 1) << 1;
+        this.keys = new long[length];
+        this.values = new int[length];
+        this.mask = length - 1;
+        Arrays.fill(this.values, EMPTY);
+    }
+
+    private int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & this.mask;
+    }
+
+    // slot holding the key, or the empty slot where it would be inserted
+    private int slot(long key) {
+        int pos = hash(key);
+        while (this.values[pos] != EMPTY && this.keys[pos] != key) {
+            pos = (pos + 1) & this.mask;
+        }
+        return pos;
+    }
+
+    /**
+     *
+     * @param key
+     * @return The value of the key, or {@link #EMPTY}.
+     */
+    public int get(long key) {
+        return this.values[slot(key)];
+    }
+
+    /**
+     *
+     * @param key
+     * @param value A non-negative value.
+     */
+    public void put(long key, int value) {
+        int pos = slot(key);
+        if (this.values[pos] == EMPTY) {
+            if (2 * (this.size + 1) > this.values.length) {
+                this.grow();
+                pos = slot(key);
+            }
+            this.size++;
+        }
+        this.keys[pos] = key;
+        this.values[pos] = value;
+    }
+
+    private void grow() {
+        long[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        this.keys = new long[2 * oldKeys.length];
+        this.values = new int[2 * oldValues.length];
+        this.mask = this.values.length - 1;
+        Arrays.fill(this.values, EMPTY);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != EMPTY) {
+                int pos = slot(oldKeys[i]);
+                this.keys[pos] = oldKeys[i];
+                this.values[pos] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     *
+     * @param key
+     */
+    public void remove(long key) {
+        int pos = slot(key);
+        if (this.values[pos] == EMPTY) {
+            return;
+        }
+        this.size--;
+        this.values[pos] = EMPTY;
+        int current = (pos + 1) & this.mask;
+        while (this.values[current] != EMPTY) {
+            int home = hash(this.keys[current]);
+            // the key may take the freed slot if it lies between its home and the current slot
+            if (((current - home) & this.mask) >= ((current - pos) & this.mask)) {
+                this.keys[pos] = this.keys[current];
+                this.values[pos] = this.values[current];
+                this.values[current] = EMPTY;
+                pos = current;
+            }
+            current = (current + 1) & this.mask;
+        }
+    }
+
+    /**
+     *
+     * @return The number of keys.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     *
+     */
+    public void clear() {
+        Arrays.fill(this.values, EMPTY);
+        this.size = 0;
+    }
+}
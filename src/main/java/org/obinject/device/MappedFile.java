@@ -0,0 +1,261 @@
+/*
+Copyright (C) 2013     Enzo Seraphim
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+or visit <http://www.gnu.org/licenses/>
+*/
+
+package org.obinject.device;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.obinject.block.HeaderNode;
+import org.obinject.block.Node;
+
+/**
+ * {@code Workspace} that maps its file into memory in segments of whole
+ * pages, so reading a page costs one copy from the OS page cache into the
+ * {@code Node} array, with no seek or read system call. Writes go straight
+ * into the mapping and reach the disk when the OS writes the dirty pages
+ * back, or on {@link #force()}.
+ * <p>
+ * A segment is mapped on demand and only up to the end of the file, so
+ * opening and reading a file never resizes it. A write past the mapped part
+ * of a segment doubles the mapping, which grows the file.
+ * <p>
+ * The pages are kept in the same format as in {@link File}, so both read the
+ * files of each other: in a {@link HeaderNode#checksummedFormat} file each page
+ * is followed by its CRC32C trailer, verified the first time the page is read.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ */
+public class MappedFile extends AbstractWorkspace implements Closeable {
+
+    /**
+     * Approximate size of each mapped segment (64 MiB).
+     */
+    private static final int sizeOfSegment = 64 * 1024 * 1024;
+    private java.io.File objectFile;
+    private RandomAccessFile randomFile;
+    private FileChannel channel;
+    private int pagesPerSegment;
+    private boolean checksummed = true;
+    private final PageChecksum checksums = new PageChecksum(this.getName());
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    /**
+     *
+     * @param fileName
+     */
+    public MappedFile(String fileName) {
+        super(fileName);
+        this.initialize();
+    }
+
+    /**
+     *
+     * @param fileName
+     * @param sizeArray
+     */
+    public MappedFile(String fileName, int sizeArray) {
+        super(fileName, sizeArray);
+        this.initialize();
+    }
+
+    @Override
+    public boolean discardPage(Node node) {
+        return true;
+    }
+
+    @Override
+    public boolean deletePage(long id) {
+        return false;
+    }
+
+    /**
+     * Returns the segment holding a page, mapping it again if its mapping
+     * does not cover the page yet.
+     *
+     * @param id The ID of the page.
+     * @param write If {@code true}, the mapping grows past the end of the
+     * file; otherwise {@code null} is returned for a page past the end.
+     */
+    private MappedByteBuffer segment(long id, boolean write) throws IOException {
+        int idx = (int) (id / pagesPerSegment);
+        int end = offset(id) + this.sizeOfSlot();
+        MappedByteBuffer[] mapped = segments;
+        if (idx < mapped.length && mapped[idx] != null && mapped[idx].capacity() >= end) {
+            return mapped[idx];
+        }
+        synchronized (this) {
+            mapped = segments;
+            int length = (idx < mapped.length && mapped[idx] != null) ? mapped[idx].capacity() : 0;
+            if (length >= end) {
+                return mapped[idx];
+            }
+            long sizeOfMapping = (long) pagesPerSegment * this.sizeOfSlot();
+            long start = idx * sizeOfMapping;
+            long available = channel.size() - start;
+            if (write) {
+                length = (int) Math.min(sizeOfMapping, Math.max(Math.max(end, available), 2L * length));
+            } else if (available >= end) {
+                length = (int) Math.min(sizeOfMapping, available);
+            } else {
+                return null;
+            }
+            MappedByteBuffer[] grown = Arrays.copyOf(mapped, Math.max(mapped.length, idx + 1));
+            grown[idx] = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+            segments = grown;
+            return grown[idx];
+        }
+    }
+
+    private int offset(long id) {
+        return (int) (id % pagesPerSegment) * this.sizeOfSlot();
+    }
+
+    private int sizeOfSlot() {
+        return checksummed ? this.sizeOfArray() + PageChecksum.sizeOfTrailer : this.sizeOfArray();
+    }
+
+    @Override
+    public boolean writePage(Node node) {
+        try {
+            ByteBuffer view = segment(node.getPageId(), true).duplicate();
+            view.position(offset(node.getPageId()));
+            view.put(node.getArray());
+            if (checksummed) {
+                view.putInt(PageChecksum.checksum(node.getArray()));
+                checksums.written(node.getPageId());
+            }
+            return true;
+        } catch (IOException ex) {
+            Logger.getLogger(MappedFile.class.getName()).log(Level.SEVERE, null, ex);
+            return false;
+        }
+    }
+
+    /**
+     * Copies the page from its segment. A page past the end of the file has
+     * never been written and is left zeroed.
+     *
+     * @param id
+     * @return
+     * @throws UncheckedIOException if the page cannot be read, or if its
+     * checksum does not match its trailer.
+     */
+    @Override
+    public Node loadPage(long id) {
+        byte[] array = new byte[this.sizeOfArray()];
+        try {
+            MappedByteBuffer segment = segment(id, false);
+            if (segment != null) {
+                ByteBuffer view = segment.duplicate();
+                view.position(offset(id));
+                view.get(array);
+                if (checksummed && checksums.isPending(id)) {
+                    checksums.verify(id, array, view.getInt());
+                }
+            } else if (checksummed && channel.size() > id * this.sizeOfSlot()) {
+                //only a part of the page was written
+                throw checksums.corrupted(id);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new Node(id, array);
+    }
+
+    /**
+     * Forces the changes made to the mapped segments to be written to disk.
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    /**
+     * Forces the changes to disk and closes the file. The segments stay
+     * mapped until they are collected.
+     */
+    @Override
+    public synchronized void close() {
+        this.force();
+        segments = new MappedByteBuffer[0];
+        try {
+            randomFile.close();
+        } catch (IOException ex) {
+            Logger.getLogger(MappedFile.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    @Override
+    protected boolean existWorkspace() {
+        objectFile = new java.io.File(this.getName());
+        return objectFile.exists();
+    }
+
+    @Override
+    protected void loadWorkspace() {
+        objectFile = new java.io.File(this.getName());
+        try {
+            randomFile = new RandomAccessFile(objectFile, "rw");
+            channel = randomFile.getChannel();
+            // the size and the format of the pages are read before mapping, from the header
+            byte[] array = new byte[this.sizeOfArray()];
+            channel.read(ByteBuffer.wrap(array), 0);
+            Node page = new Node(0, array);
+            checksummed = checksums.readFormat(page);
+            sizeArray = new HeaderNode(page).readSizeOfArray();
+            pagesPerSegment = Math.max(1, sizeOfSegment / this.sizeOfSlot());
+            if (checksummed) {
+                //verifying the header
+                this.loadPage(0);
+            }
+        } catch (IOException ioe) {
+            Logger.getLogger(MappedFile.class.getName()).log(Level.SEVERE, null, ioe);
+        }
+    }
+
+    @Override
+    protected long formatOfWorkspace() {
+        return HeaderNode.checksummedFormat;
+    }
+
+    @Override
+    protected void createWorkspace() {
+        objectFile = new java.io.File(this.getName());
+        try {
+            randomFile = new RandomAccessFile(objectFile, "rw");
+            channel = randomFile.getChannel();
+            pagesPerSegment = Math.max(1, sizeOfSegment / this.sizeOfSlot());
+        } catch (IOException ioe) {
+            Logger.getLogger(MappedFile.class.getName()).log(Level.SEVERE, null, ioe);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+Copyright (C) 2013     Enzo Seraphim
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+or visit <http://www.gnu.org/licenses/>
+*/
+
+package org.obinject.device;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.CRC32C;
+import org.obinject.block.HeaderNode;
+import org.obinject.block.Node;
+
+/**
+ * CRC32C trailers of the pages of a workspace file in the
+ * {@link HeaderNode#checksummedFormat}. A page is verified only the first
+ * time it is read in the process; the pages written by the process are
+ * taken as verified. The verified pages are kept in a bitset indexed by
+ * page Id, so checking a page neither allocates nor locks.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ */
+final class PageChecksum {
+
+    /**
+     * Size of the trailer that follows each page in the file.
+     */
+    static final int sizeOfTrailer = 4;
+    private final String name;
+    private volatile AtomicLongArray verifiedPages = new AtomicLongArray(16);
+
+    /**
+     *
+     * @param name The name of the workspace, for the error messages.
+     */
+    PageChecksum(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Reads the format recorded in the header page. The format is at the
+     * same position in both formats, before the size of the pages is known.
+     *
+     * @param page The header page, read as a plain page.
+     * @return {@code true} if the pages are followed by trailers.
+     * @throws UncheckedIOException if the header is damaged.
+     */
+    boolean readFormat(Node page) {
+        if (page.readNodeType() != HeaderNode.nodeType) {
+            throw this.damaged();
+        }
+        HeaderNode header = new HeaderNode(page);
+        long format = header.readFormat();
+        if (header.readSizeOfArray() <= 0
+                || (format != HeaderNode.plainFormat && format != HeaderNode.checksummedFormat)) {
+            throw this.damaged();
+        }
+        return format == HeaderNode.checksummedFormat;
+    }
+
+    private UncheckedIOException damaged() {
+        return new UncheckedIOException(new IOException("Damaged header in " + name));
+    }
+
+    /**
+     *
+     * @param array
+     * @return The CRC32C of the page.
+     */
+    static int checksum(byte[] array) {
+        CRC32C crc = new CRC32C();
+        crc.update(array, 0, array.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     *
+     * @param id
+     * @return {@code true} if the page was not verified or written yet.
+     */
+    boolean isPending(long id) {
+        AtomicLongArray words = verifiedPages;
+        int word = (int) (id >>> 6);
+        return word >= words.length() || (words.get(word) & (1L << id)) == 0;
+    }
+
+    /**
+     * Takes a page written by the process as verified.
+     *
+     * @param id
+     */
+    void written(long id) {
+        this.mark(id);
+    }
+
+    /**
+     * Compares the page with its trailer. A slot all zeroed, page and
+     * trailer, was never written: the file grows with zeros when a later
+     * page is written first, or when a mapping is grown.
+     *
+     * @param id
+     * @param array The page read.
+     * @param trailer The trailer read.
+     * @throws UncheckedIOException if they do not match.
+     */
+    void verify(long id, byte[] array, int trailer) {
+        if (trailer == 0 && isZeroed(array)) {
+            return;
+        }
+        if (trailer != checksum(array)) {
+            throw this.corrupted(id);
+        }
+        this.mark(id);
+    }
+
+    private static boolean isZeroed(byte[] array) {
+        for (byte b : array) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void mark(long id) {
+        int word = (int) (id >>> 6);
+        AtomicLongArray words = verifiedPages;
+        if (word >= words.length()) {
+            words = this.grow(word);
+        }
+        words.accumulateAndGet(word, 1L << id, (bits, bit) -> bits | bit);
+        if (words != verifiedPages) {
+            // the bitset grew meanwhile and may have missed the bit; a bit
+            // still lost in the race only makes the page be verified again
+            this.mark(id);
+        }
+    }
+
+    private synchronized AtomicLongArray grow(int word) {
+        AtomicLongArray words = verifiedPages;
+        if (word < words.length()) {
+            return words;
+        }
+        AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, 2 * words.length()));
+        for (int i = 0; i < words.length(); i++) {
+            grown.set(i, words.get(i));
+        }
+        verifiedPages = grown;
+        return grown;
+    }
+
+    /**
+     *
+     * @param id
+     * @return The error of a page that is damaged or was written only in part.
+     */
+    UncheckedIOException corrupted(long id) {
+        return new UncheckedIOException(new IOException("Checksum mismatch in page " + id + " of " + name));
+    }
+}
@@ -36,6 +36,7 @@ public class Session
 
     private long sessionId;
     private AbstractWorkspace workspace;
+    private BufferPool bufferPool;
     private HashMap<Long, Node> nodesCache = new HashMap<>();
     private long blockAccess = 0;
     
@@ -46,6 +47,7 @@ public class Session
     protected Session(AbstractWorkspace workspace)
     {
 	this.workspace = workspace;
+	this.bufferPool = workspace.getBufferPool();
 	sessionId = workspace.incrementSessionId();
     }
 
@@ -57,7 +59,7 @@ public class Session
         Iterator<Map.Entry<Long, Node>> it = nodesCache.entrySet().iterator();
 	while (it.hasNext())
 	{
-	    workspace.flushPage(it.next().getValue());
+	    release(it.next().getValue());
 	}//endwhile
 	nodesCache.clear();
 //        workspace = null;
@@ -113,10 +115,39 @@ public class Session
 	Node nodeFind = nodesCache.get(id);
 	if (nodeFind == null)
 	{
-	    nodeFind = workspace.loadPage(id);
+	    nodeFind = (bufferPool != null) ? bufferPool.pin(id) : workspace.loadPage(id);
 	    nodesCache.put(id, nodeFind);
 	}
 	return nodeFind;
     }
 
+    /**
+     * Releases a page before the session is closed. Its changes are written
+     * back and, when the workspace has a {@link BufferPool}, the page is
+     * unpinned and may be evicted. The {@code Node} may still be read, but
+     * a later {@link #load(long)} may read it again from the workspace.
+     *
+     * @param id
+     */
+    public void unpin(long id)
+    {
+	Node node = nodesCache.remove(id);
+	if (node != null)
+	{
+	    release(node);
+	}
+    }
+
+    private void release(Node node)
+    {
+	if (bufferPool != null)
+	{
+	    bufferPool.unpin(node.getPageId(), true);
+	}
+	else
+	{
+	    workspace.flushPage(node);
+	}
+    }
+
 }
@@ -0,0 +1,75 @@
+package org.obinject.joinqueries;
+
+import org.obinject.block.Node;
+
+/*
+ * Classe base dos buffers: guarda a capacidade e contabiliza acertos,
+ * faltas e substituições. As subclasses implementam a busca (find) e a
+ * inserção (put) segundo a sua política.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public abstract class AbstractBufferPolicy implements BufferPolicy
+{
+    protected final int capacity;
+
+    // Métricas
+    protected long hits = 0;
+    protected long misses = 0;
+    protected long evictions = 0;
+
+    /*
+     * @param capacity Capacidade em páginas de disco do buffer.
+     */
+    public AbstractBufferPolicy(int capacity)
+    {
+        this.capacity = Math.max(capacity, 0);
+    }
+
+    /*
+     * Busca o nó no buffer, atualizando o estado da política em caso de acerto.
+     *
+     * @param key Chave da página de disco.
+     * @return O nó ou null.
+     */
+    protected abstract Node find(long key);
+
+    @Override
+    public final Node get(long key)
+    {
+        Node node = find(key);
+        if(node == null)
+            this.misses++;
+        else
+            this.hits++;
+        return node;
+    }
+
+    @Override
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    @Override
+    public long getHits()
+    {
+        return hits;
+    }
+
+    @Override
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    @Override
+    public long getEvictions()
+    {
+        return evictions;
+    }
+}
@@ -0,0 +1,73 @@
+package org.obinject.joinqueries;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.obinject.device.File;
+import org.obinject.meta.Entity;
+import org.obinject.meta.Rectangle;
+import org.obinject.sbbd2013.geonet.RectFloatLatLongCoordGeonet;
+import org.obinject.sbbd2013.geonet.RectLatLongCoordGeonet;
+import org.obinject.storage.RTree;
+
+public class AppBenchFloatKeys
+{
+    private static final int sizeOfNode = 16384;
+    private static final int numeroObjetos = 500000;
+
+    /*
+     * Gera retângulos aleatórios com os cantos em precisão simples, para que as duas
+     * famílias de chaves armazenem exatamente os mesmos MBRs.
+     */
+    private static <K extends Rectangle<K> & Entity<? super K>> ArrayList<K> gerar(long semente, Class<K> classe) throws ReflectiveOperationException
+    {
+        Random random = new Random(semente);
+        ArrayList<K> objetos = new ArrayList<>();
+        for(int i = 0; i < numeroObjetos; i++)
+        {
+            K key = classe.getDeclaredConstructor().newInstance();
+            for(int d = 0; d < 2; d++)
+            {
+                float inferior = random.nextFloat() * 1000;
+                float superior = inferior + random.nextFloat() * 0.5f;
+                key.setOrigin(d, inferior);
+                key.setExtension(d, (double) superior - inferior);
+            }
+            objetos.add(key);
+        }
+        return objetos;
+    }
+
+    private static File workspace(String nome)
+    {
+        java.io.File arquivo = new java.io.File(nome + "-" + sizeOfNode + ".dat");
+        if(arquivo.exists())
+            arquivo.delete();
+        return new File(arquivo.getPath(), sizeOfNode);
+    }
+
+    private static <K extends Rectangle<K> & Entity<? super K>> void medir(RTree<K> rtree1, RTree<K> rtree2, Class<K> classe) throws ReflectiveOperationException
+    {
+        rtree1.bulkLoad(gerar(1, classe).iterator());
+        rtree2.bulkLoad(gerar(2, classe).iterator());
+
+        K key = classe.getDeclaredConstructor().newInstance();
+        System.out.println(classe.getSimpleName() + ": " + key.sizeOfKey() + " bytes per key, heights: "
+                + rtree1.height() + " " + rtree2.height());
+
+        JoinQueries<K> joinQueries = new JoinQueries<>(rtree1, rtree2);
+        long[] pares = new long[1];
+        joinQueries.joinPlaneSweepFixacao((uuidRtree1, uuidRtree2) -> pares[0]++);
+        System.out.println("Pairs: " + pares[0]);
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException
+    {
+        medir(new RTree<RectLatLongCoordGeonet>(workspace("rtreeBenchDouble1")){},
+                new RTree<RectLatLongCoordGeonet>(workspace("rtreeBenchDouble2")){},
+                RectLatLongCoordGeonet.class);
+        medir(new RTree<RectFloatLatLongCoordGeonet>(workspace("rtreeBenchFloat1")){},
+                new RTree<RectFloatLatLongCoordGeonet>(workspace("rtreeBenchFloat2")){},
+                RectFloatLatLongCoordGeonet.class);
+    }
+}
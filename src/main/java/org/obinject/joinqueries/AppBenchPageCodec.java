@@ -0,0 +1,79 @@
+package org.obinject.joinqueries;
+
+import java.util.Random;
+
+import org.obinject.sbbd2013.geonet.RectLatLongCoordGeonet;
+
+public class AppBenchPageCodec
+{
+    private static final int sizeOfNode = 16384;
+    private static final int warmup = 20000;
+    private static final int iterations = 100000;
+
+    /*
+     * Decodificação original da página: cada double é remontado byte a byte (big-endian).
+     */
+    private static double lerDoubleByteAByte(byte[] array, int pos)
+    {
+        long value = 0;
+        for(int i = 0; i < 8; i++)
+        {
+            value <<= 8;
+            value += array[pos + i] & 0xff;
+        }
+        return Double.longBitsToDouble(value);
+    }
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(1);
+        RectLatLongCoordGeonet key = new RectLatLongCoordGeonet();
+        byte[] array = new byte[sizeOfNode];
+        int numeroChaves = (sizeOfNode - 1) / key.sizeOfKey();
+        for(int i = 0; i < numeroChaves; i++)
+        {
+            key.setOrigin(0, random.nextDouble() * 10);
+            key.setOrigin(1, random.nextDouble() * 10);
+            key.setExtension(0, random.nextDouble() * 0.5);
+            key.setExtension(1, random.nextDouble() * 0.5);
+            key.pushKey(array, 1 + i * key.sizeOfKey());
+        }
+        System.out.println("Keys per node: " + numeroChaves);
+
+        // Versão byte a byte, como era feita antes.
+        double soma = 0;
+        long timeStart = 0;
+        for(int i = 0; i < warmup + iterations; i++)
+        {
+            if(i == warmup)
+                timeStart = System.nanoTime();
+            for(int j = 0; j < numeroChaves; j++)
+            {
+                int pos = 1 + j * key.sizeOfKey();
+                key.setOrigin(0, lerDoubleByteAByte(array, pos));
+                key.setOrigin(1, lerDoubleByteAByte(array, pos + 8));
+                key.setExtension(0, lerDoubleByteAByte(array, pos + 16));
+                key.setExtension(1, lerDoubleByteAByte(array, pos + 24));
+                soma += key.getExtension(1);
+            }
+        }
+        double byteAByte = (System.nanoTime() - timeStart) / ((double) iterations * numeroChaves);
+        System.out.println("Byte by byte: " + byteAByte + " ns per key (checksum " + soma + ")");
+
+        // Versão com VarHandle (PageCodec), usada por pullKey.
+        soma = 0;
+        for(int i = 0; i < warmup + iterations; i++)
+        {
+            if(i == warmup)
+                timeStart = System.nanoTime();
+            for(int j = 0; j < numeroChaves; j++)
+            {
+                key.pullKey(array, 1 + j * key.sizeOfKey());
+                soma += key.getExtension(1);
+            }
+        }
+        double codec = (System.nanoTime() - timeStart) / ((double) iterations * numeroChaves);
+        System.out.println("Page codec: " + codec + " ns per key (checksum " + soma + ")");
+        System.out.println("Speedup: " + byteAByte / codec);
+    }
+}
@@ -0,0 +1,73 @@
+package org.obinject.joinqueries;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.obinject.block.Node;
+import org.obinject.block.RTreeLeaf;
+import org.obinject.meta.Uuid;
+import org.obinject.sbbd2013.geonet.RectLatLongCoordGeonet;
+import org.obinject.storage.EuclideanGeometry;
+
+public class AppBenchPlaneSweep
+{
+    private static final int sizeOfNode = 16384;
+    private static final int warmup = 20000;
+    private static final int iterations = 100000;
+
+    public static RTreeLeaf<RectLatLongCoordGeonet> criarFolha(Random random)
+    {
+        RTreeLeaf<RectLatLongCoordGeonet> leaf = new RTreeLeaf<>(new Node(1, new byte[sizeOfNode]), RectLatLongCoordGeonet.class);
+        RectLatLongCoordGeonet key = new RectLatLongCoordGeonet();
+        do
+        {
+            key.setOrigin(0, random.nextDouble() * 10);
+            key.setOrigin(1, random.nextDouble() * 10);
+            key.setExtension(0, random.nextDouble() * 0.5);
+            key.setExtension(1, random.nextDouble() * 0.5);
+        }
+        while(leaf.addKey(key, Uuid.generator()));
+        return leaf;
+    }
+
+    public static void main(String[] args)
+    {
+        Random random = new Random(1);
+        RTreeLeaf<RectLatLongCoordGeonet> leafRtree1 = criarFolha(random);
+        RTreeLeaf<RectLatLongCoordGeonet> leafRtree2 = criarFolha(random);
+        JoinQueryUtilities<RectLatLongCoordGeonet> joinUtilities = new JoinQueryUtilities<>(new EuclideanGeometry<>(RectLatLongCoordGeonet.class));
+        System.out.println("Entries per node: " + leafRtree1.readNumberOfKeys() + " / " + leafRtree2.readNumberOfKeys());
+
+        // Versão com listas de objetos: um retângulo, um Pair e uma Triple por entrada e por par.
+        long pares = 0;
+        long timeStart = 0;
+        for(int i = 0; i < warmup + iterations; i++)
+        {
+            if(i == warmup)
+                timeStart = System.nanoTime();
+            ArrayList<Pair<RectLatLongCoordGeonet, Integer>> entradasRtree1 = joinUtilities.restringirEspacoBusca(null, leafRtree1);
+            ArrayList<Pair<RectLatLongCoordGeonet, Integer>> entradasRtree2 = joinUtilities.restringirEspacoBusca(null, leafRtree2);
+            pares += joinUtilities.planeSweep(entradasRtree1, entradasRtree2, false).size();
+        }
+        double objetos = (System.nanoTime() - timeStart) / (double) iterations;
+        System.out.println("Object lists: " + objetos + " ns per node pair (" + pares / (warmup + iterations) + " pairs)");
+
+        // Versão com vetores primitivos reutilizados.
+        MbrArray mbrsRtree1 = new MbrArray();
+        MbrArray mbrsRtree2 = new MbrArray();
+        PairBuffer paresRetangulos = new PairBuffer();
+        pares = 0;
+        for(int i = 0; i < warmup + iterations; i++)
+        {
+            if(i == warmup)
+                timeStart = System.nanoTime();
+            joinUtilities.restringirEspacoBusca(null, leafRtree1, mbrsRtree1);
+            joinUtilities.restringirEspacoBusca(null, leafRtree2, mbrsRtree2);
+            joinUtilities.planeSweep(mbrsRtree1, mbrsRtree2, paresRetangulos, false);
+            pares += paresRetangulos.size();
+        }
+        double vetores = (System.nanoTime() - timeStart) / (double) iterations;
+        System.out.println("Primitive arrays: " + vetores + " ns per node pair (" + pares / (warmup + iterations) + " pairs)");
+        System.out.println("Speedup: " + objetos / vetores);
+    }
+}
@@ -0,0 +1,79 @@
+package org.obinject.joinqueries;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.obinject.device.File;
+import org.obinject.sbbd2013.geonet.RectLatLongCoordGeonet;
+import org.obinject.storage.RTree;
+
+public class AppBenchQuantizedNodes
+{
+    private static final int sizeOfNode = 2048;
+    private static final int numeroObjetos = 200000;
+    private static final int numeroJanelas = 10000;
+
+    /*
+     * Gera retângulos aleatórios, com a mesma semente para os dois formatos.
+     */
+    private static ArrayList<RectLatLongCoordGeonet> gerar(long semente)
+    {
+        Random random = new Random(semente);
+        ArrayList<RectLatLongCoordGeonet> objetos = new ArrayList<>();
+        for(int i = 0; i < numeroObjetos; i++)
+        {
+            RectLatLongCoordGeonet key = new RectLatLongCoordGeonet();
+            key.setOrigin(0, random.nextDouble() * 1000);
+            key.setOrigin(1, random.nextDouble() * 1000);
+            key.setExtension(0, random.nextDouble());
+            key.setExtension(1, random.nextDouble());
+            objetos.add(key);
+        }
+        return objetos;
+    }
+
+    private static RTree<RectLatLongCoordGeonet> carregar(ArrayList<RectLatLongCoordGeonet> objetos, String nome, boolean quantizada)
+    {
+        java.io.File arquivo = new java.io.File(nome + "-" + sizeOfNode + ".dat");
+        if(arquivo.exists())
+            arquivo.delete();
+
+        File workspace = new File(arquivo.getPath(), sizeOfNode);
+        RTree<RectLatLongCoordGeonet> rtree = new RTree<RectLatLongCoordGeonet>(workspace, RTree.InsertionMode.QUADRATIC, quantizada){};
+        rtree.bulkLoad(objetos.iterator());
+        return rtree;
+    }
+
+    public static void main(String[] args)
+    {
+        ArrayList<RectLatLongCoordGeonet> objetos1 = gerar(1);
+        ArrayList<RectLatLongCoordGeonet> objetos2 = gerar(2);
+
+        for(boolean quantizada : new boolean[] {false, true})
+        {
+            String formato = quantizada ? "quantized" : "exact";
+            RTree<RectLatLongCoordGeonet> rtree1 = carregar(objetos1, "rtreeBench1-" + formato, quantizada);
+            RTree<RectLatLongCoordGeonet> rtree2 = carregar(objetos2, "rtreeBench2-" + formato, quantizada);
+            System.out.println("Format: " + formato + ", heights: " + rtree1.height() + " " + rtree2.height());
+
+            JoinQueries<RectLatLongCoordGeonet> joinQueries = new JoinQueries<>(rtree1, rtree2);
+            long[] pares = new long[1];
+            joinQueries.joinPlaneSweepFixacao((uuidRtree1, uuidRtree2) -> pares[0]++);
+            System.out.println("Pairs: " + pares[0]);
+
+            // Consultas por janela: cada nível a menos na árvore poupa uma leitura por caminho.
+            Random random = new Random(3);
+            RectLatLongCoordGeonet janela = new RectLatLongCoordGeonet();
+            long[] resultados = new long[1];
+            for(int i = 0; i < numeroJanelas; i++)
+            {
+                janela.setOrigin(0, random.nextDouble() * 990);
+                janela.setOrigin(1, random.nextDouble() * 990);
+                janela.setExtension(0, 10);
+                janela.setExtension(1, 10);
+                rtree1.search(janela, uuid -> resultados[0]++);
+            }
+            System.out.println("Window results: " + resultados[0] + ", disk access per window: " + rtree1.getAverageForSearch().measuredDiskAccess());
+        }
+    }
+}
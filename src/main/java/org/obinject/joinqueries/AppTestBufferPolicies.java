@@ -0,0 +1,54 @@
+package org.obinject.joinqueries;
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.obinject.sbbd2013.geonet.RectLatLongCoordGeonet;
+import org.obinject.storage.RTree;
+
+public class AppTestBufferPolicies
+{
+    private static final String[] nomes = {"LRU", "LRU-2", "2Q", "CLOCK", "ARC"};
+
+    private static final List<IntFunction<BufferPolicy>> politicas = List.of(
+        LRUCache::new,
+        LRUKCache::new,
+        TwoQueueCache::new,
+        ClockCache::new,
+        ArcCache::new
+    );
+
+    public static void main(String[] args) throws Exception
+    {
+        RTree<RectLatLongCoordGeonet> rtree1 = AppTestJoin.lerArvore("rtreeGeonet1");
+        RTree<RectLatLongCoordGeonet> rtree2 = AppTestJoin.lerArvore("rtreeGeonet2");
+        JoinQueries<RectLatLongCoordGeonet> joinQuery = new JoinQueries<>(rtree1, rtree2);
+        JoinResultSink descarte = (uuidRtree1, uuidRtree2) -> { };
+
+        System.out.println("Size of buffer: " + JoinQueries.sizeOfBuffer + " disk pages.\n");
+        for(int i = 0; i < politicas.size(); i++)
+        {
+            BufferPolicy buffer;
+
+            System.out.println(nomes[i] + " - local plane-sweep order join: ");
+            buffer = politicas.get(i).apply(JoinQueries.sizeOfBuffer);
+            joinQuery.joinPlaneSweep(descarte, buffer);
+            System.out.println("Hits: " + buffer.getHits() + " Misses: " + buffer.getMisses() + " Evictions: " + buffer.getEvictions() + "\n");
+
+            System.out.println(nomes[i] + " - local plane-sweep order join with pinning: ");
+            buffer = politicas.get(i).apply(JoinQueries.sizeOfBuffer);
+            joinQuery.joinPlaneSweepFixacao(descarte, buffer);
+            System.out.println("Hits: " + buffer.getHits() + " Misses: " + buffer.getMisses() + " Evictions: " + buffer.getEvictions() + "\n");
+
+            System.out.println(nomes[i] + " - local z-order join: ");
+            buffer = politicas.get(i).apply(JoinQueries.sizeOfBuffer);
+            joinQuery.joinZorder(descarte, buffer);
+            System.out.println("Hits: " + buffer.getHits() + " Misses: " + buffer.getMisses() + " Evictions: " + buffer.getEvictions() + "\n");
+
+            System.out.println(nomes[i] + " - local Hilbert order join: ");
+            buffer = politicas.get(i).apply(JoinQueries.sizeOfBuffer);
+            joinQuery.joinHilbert(descarte, buffer);
+            System.out.println("Hits: " + buffer.getHits() + " Misses: " + buffer.getMisses() + " Evictions: " + buffer.getEvictions() + "\n");
+        }
+    }
+}
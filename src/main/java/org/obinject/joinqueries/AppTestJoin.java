@@ -4,8 +4,10 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.StringTokenizer;
 
 import org.obinject.device.File;
@@ -43,11 +45,16 @@ public class AppTestJoin
     }
     
     public static RTree<RectLatLongCoordGeonet> inserirGeoNetRtree(String nomeArquivo, String preixoArquivoArvore) throws FileNotFoundException, IOException
+    {
+        return inserirGeoNetRtree(nomeArquivo, preixoArquivoArvore, RTree.InsertionMode.QUADRATIC);
+    }
+    
+    public static RTree<RectLatLongCoordGeonet> inserirGeoNetRtree(String nomeArquivo, String preixoArquivoArvore, RTree.InsertionMode modo) throws FileNotFoundException, IOException
     {
         String file = AddFindGeonetRTree.class.getClassLoader().getResource(nomeArquivo).getFile();
         RectLatLongCoordGeonet metric = new RectLatLongCoordGeonet();
         File workspace = new File(preixoArquivoArvore + "-" + sizeOfNode + ".dat", sizeOfNode);
-        RTree<RectLatLongCoordGeonet> rtree1 = new RTree<RectLatLongCoordGeonet>(workspace){};
+        RTree<RectLatLongCoordGeonet> rtree1 = new RTree<RectLatLongCoordGeonet>(workspace, modo){};
         BufferedReader in = new BufferedReader(new FileReader(file));
         int count = 0;
         
@@ -70,6 +77,79 @@ public class AppTestJoin
         return rtree1;
     }
     
+    public static RTree<RectLatLongCoordGeonet> carregarGeoNetRtree(String nomeArquivo, String preixoArquivoArvore, boolean hilbert) throws FileNotFoundException, IOException
+    {
+        String file = AddFindGeonetRTree.class.getClassLoader().getResource(nomeArquivo).getFile();
+        File workspace = new File(preixoArquivoArvore + "-" + sizeOfNode + ".dat", sizeOfNode);
+        RTree<RectLatLongCoordGeonet> rtree1 = new RTree<RectLatLongCoordGeonet>(workspace){};
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        ArrayList<RectLatLongCoordGeonet> metrics = new ArrayList<>();
+
+        while(in.ready() == true)
+        {
+            StringTokenizer tok = new StringTokenizer(in.readLine(), " ");
+            RectLatLongCoordGeonet metric = new RectLatLongCoordGeonet();
+            metric.setOrigin(0, Double.parseDouble(tok.nextToken()));
+            metric.setOrigin(1, Double.parseDouble(tok.nextToken()));
+            metric.setExtension(0, Double.parseDouble(tok.nextToken()));
+            metric.setExtension(1, Double.parseDouble(tok.nextToken()));
+            metrics.add(metric);
+        }
+
+        in.close();
+        if(hilbert)
+            rtree1.bulkLoadHilbert(metrics.iterator());
+        else
+            rtree1.bulkLoad(metrics.iterator());
+        return rtree1;
+    }
+
+    public static Iterator<RectLatLongCoordGeonet> lerGeoNet(String nomeArquivo) throws FileNotFoundException
+    {
+        String file = AddFindGeonetRTree.class.getClassLoader().getResource(nomeArquivo).getFile();
+        BufferedReader in = new BufferedReader(new FileReader(file));
+
+        // Lê uma linha por vez, sem carregar o arquivo em memória
+        return new Iterator<RectLatLongCoordGeonet>()
+        {
+            private String linha = proximaLinha();
+
+            private String proximaLinha()
+            {
+                try
+                {
+                    String proxima = in.readLine();
+                    if(proxima == null)
+                        in.close();
+                    return proxima;
+                }
+                catch(IOException ex)
+                {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+
+            @Override
+            public boolean hasNext()
+            {
+                return linha != null;
+            }
+
+            @Override
+            public RectLatLongCoordGeonet next()
+            {
+                StringTokenizer tok = new StringTokenizer(linha, " ");
+                RectLatLongCoordGeonet metric = new RectLatLongCoordGeonet();
+                metric.setOrigin(0, Double.parseDouble(tok.nextToken()));
+                metric.setOrigin(1, Double.parseDouble(tok.nextToken()));
+                metric.setExtension(0, Double.parseDouble(tok.nextToken()));
+                metric.setExtension(1, Double.parseDouble(tok.nextToken()));
+                linha = proximaLinha();
+                return metric;
+            }
+        };
+    }
+
     public static boolean conferirInsercaoGeoNetRtree(String nomeArquivo, RTree<RectLatLongCoordGeonet> rtree) throws FileNotFoundException, IOException
     {
         String file = AddFindGeonetRTree.class.getClassLoader().getResource(nomeArquivo).getFile();
@@ -108,6 +188,10 @@ public class AppTestJoin
 //        System.out.println("\n\nInserting data into the second r-tree.");
 //        RTree<RectLatLongCoordGeonet> rtree2 = inserirGeoNetRtree(nomeArquivoDados2, "rtreeGeonet2");
 //        
+//        // Or build both r-trees with STR (or Hilbert) bulk loading
+//        RTree<RectLatLongCoordGeonet> rtree1 = carregarGeoNetRtree(nomeArquivoDados1, "rtreeGeonet1", false);
+//        RTree<RectLatLongCoordGeonet> rtree2 = carregarGeoNetRtree(nomeArquivoDados2, "rtreeGeonet2", false);
+//        
 //        // Check if all the data has been stored correctly. 34051
 //        System.out.println("\n\nChecking if all the data has been stored correctly.");
 //        if(conferirInsercaoGeoNetRtree(nomeArquivoDados1, rtree1))
@@ -123,7 +207,7 @@ public class AppTestJoin
         RTree<RectLatLongCoordGeonet> rtree1 = lerArvore("rtreeGeonet1");
         RTree<RectLatLongCoordGeonet> rtree2 = lerArvore("rtreeGeonet2");
         
-        // Print tree heights (they should be equal).
+        // Print tree heights (they may differ).
         System.out.println("\nRtree1 height: " + rtree1.height());
         System.out.println("Rtree2 height: " + rtree2.height() + "\n");
         
@@ -157,7 +241,53 @@ public class AppTestJoin
         System.out.println("Local z-order join: ");
         result = joinQuery.joinZorder();
         System.out.println("result.size(): " + result.size() + "\n");
-   
+        
+        // Test local Hilbert order join
+        System.out.println("Local Hilbert order join: ");
+        result = joinQuery.joinHilbert();
+        System.out.println("result.size(): " + result.size() + "\n");
+
+        // Test breadth-first join with Hilbert ordering of each level
+        System.out.println("Breadth-first join (BFRJ, Hilbert order): ");
+        result = joinQuery.joinBfrj(JoinQueries.OrdemPares.HILBERT);
+        System.out.println("result.size(): " + result.size() + "\n");
+
+        // Test distance join (pairs at most 0.01 apart)
+        System.out.println("Distance join (epsilon = 0.01): ");
+        result = joinQuery.joinDistancia(0.01);
+        System.out.println("result.size(): " + result.size() + "\n");
+
+        // Test self-join of rtree1 (each unordered pair of distinct objects once)
+        System.out.println("Self-join of rtree1: ");
+        result = new JoinQueries<>(rtree1).selfJoin();
+        System.out.println("result.size(): " + result.size() + "\n");
+
+        // Test k-nearest-neighbour join (5 neighbours in rtree2 for each object of rtree1)
+        KnnJoinQueries<RectLatLongCoordGeonet> knnJoinQuery = new KnnJoinQueries<>(rtree1, rtree2);
+        System.out.println("kNN join (k = 5): ");
+        result = knnJoinQuery.joinKnn(5);
+        System.out.println("result.size(): " + result.size() + "\n");
+
+        // Test PBSM join over the raw data files, without using the r-trees
+        // (needs the data files the r-trees were built from)
+//        PbsmJoin<RectLatLongCoordGeonet> pbsmJoin = new PbsmJoin<>(new EuclideanGeometry<>(RectLatLongCoordGeonet.class));
+//        System.out.println("PBSM join of the raw data files: ");
+//        result = pbsmJoin.joinPbsm(lerGeoNet("pontos_aleatorios1.txt"), lerGeoNet("pontos_aleatorios2.txt"));
+//        System.out.println("result.size(): " + result.size() + "\n");
+
+        // Test indexed nested-loop join of the first raw data file against rtree2
+//        System.out.println("Indexed nested-loop join of the first raw data file with rtree2: ");
+//        result = pbsmJoin.joinIndexado(lerGeoNet("pontos_aleatorios1.txt"), rtree2);
+//        System.out.println("result.size(): " + result.size() + "\n");
+
+        // Test parallel local plane-sweep order join with pinning
+        try(ParallelJoinQueries<RectLatLongCoordGeonet> parallelJoinQuery = new ParallelJoinQueries<>(rtree1, rtree2))
+        {
+            System.out.println("Parallel local plane-sweep order join with pinning: ");
+            result = parallelJoinQuery.joinPlaneSweepFixacao();
+            System.out.println("result.size(): " + result.size() + "\n");
+        }
+
         // System.out.println("20 primeiras linhas de result: ");
         // for(int i = 0; i < 20; i++)
         //     System.out.println(result.get(i).getFirst() + " " + result.get(i).getSecond());         
@@ -0,0 +1,36 @@
+package org.obinject.joinqueries;
+
+import org.obinject.sbbd2013.geonet.RectLatLongCoordGeonet;
+import org.obinject.storage.RTree;
+
+public class AppTestRStar
+{
+    public static void main(String[] args) throws Exception
+    {
+        String nomeArquivoDados1 = "geonet_pequeno.txt";
+        String nomeArquivoDados2 = "geonet_pequeno2.txt";
+        JoinResultSink descarte = (uuidRtree1, uuidRtree2) -> { };
+        
+        for(RTree.InsertionMode modo : RTree.InsertionMode.values())
+        {
+            java.io.File arquivo1 = new java.io.File("rtree" + modo + "1-16384.dat");
+            java.io.File arquivo2 = new java.io.File("rtree" + modo + "2-16384.dat");
+            arquivo1.delete();
+            arquivo2.delete();
+            
+            System.out.println("\n" + modo + " - inserting data into the r-trees.");
+            RTree<RectLatLongCoordGeonet> rtree1 = AppTestJoin.inserirGeoNetRtree(nomeArquivoDados1, "rtree" + modo + "1", modo);
+            RTree<RectLatLongCoordGeonet> rtree2 = AppTestJoin.inserirGeoNetRtree(nomeArquivoDados2, "rtree" + modo + "2", modo);
+            System.out.println("\nRtree1 height: " + rtree1.height() + " average disk access per add: " + rtree1.getAverageForAdd().measuredDiskAccess());
+            System.out.println("Rtree2 height: " + rtree2.height() + " average disk access per add: " + rtree2.getAverageForAdd().measuredDiskAccess() + "\n");
+            
+            JoinQueries<RectLatLongCoordGeonet> joinQuery = new JoinQueries<>(rtree1, rtree2);
+            System.out.println(modo + " - local plane-sweep order join with pinning: ");
+            joinQuery.joinPlaneSweepFixacao(descarte);
+            System.out.println();
+            
+            System.out.println(modo + " - local z-order join: ");
+            joinQuery.joinZorder(descarte);
+        }
+    }
+}
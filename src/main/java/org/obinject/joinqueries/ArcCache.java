@@ -0,0 +1,163 @@
+package org.obinject.joinqueries;
+
+import org.obinject.block.Node;
+import org.obinject.device.LongIntMap;
+
+/*
+ * Classe que implementa um buffer com a estratégia ARC, Adaptive Replacement Cache
+ * (Megiddo e Modha). As páginas residentes ficam em duas listas LRU: T1 (páginas
+ * acessadas uma vez) e T2 (páginas acessadas mais de uma vez). As chaves das páginas
+ * substituídas são lembradas em B1 e B2. Uma falta em B1 aumenta o tamanho alvo p de
+ * T1 e uma falta em B2 o diminui, adaptando o buffer entre recência e frequência.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class ArcCache extends AbstractBufferPolicy
+{
+    private static final int T1 = 0;
+    private static final int T2 = 1;
+    private static final int B1 = 2;
+    private static final int B2 = 3;
+
+    // Tamanho alvo de T1
+    private int p = 0;
+
+    // Entradas de T1, T2, B1 e B2 (no máximo 2 * capacity)
+    private long[] keys;
+    private Node[] values;
+    private LongIntMap map;
+    private EntryLists lists;
+    private int[] free;
+    private int freeSize = 0;
+
+    /*
+     * @param capacity Capacidade em páginas de disco do buffer.
+     */
+    public ArcCache(int capacity)
+    {
+        super(capacity);
+        int entries = 2 * this.capacity;
+        this.keys = new long[entries];
+        this.values = new Node[entries];
+        this.map = new LongIntMap(entries);
+        this.lists = new EntryLists(entries, 4);
+        this.free = new int[entries];
+        for(int i = entries - 1; i >= 0; i--)
+            this.free[this.freeSize++] = i;
+    }
+
+    @Override
+    protected Node find(long key)
+    {
+        int entry = this.map.get(key);
+        if(entry == LongIntMap.EMPTY)
+            return null;
+
+        int list = this.lists.listOf(entry);
+        if(list != T1 && list != T2)
+            return null;
+        this.lists.addFirst(T2, entry);
+        return this.values[entry];
+    }
+
+    @Override
+    public void put(long key, Node value)
+    {
+        if(this.capacity == 0)
+            return;
+
+        int entry = this.map.get(key);
+        int list = (entry == LongIntMap.EMPTY) ? EntryLists.NONE : this.lists.listOf(entry);
+        int t1 = this.lists.size(T1), t2 = this.lists.size(T2);
+        int b1 = this.lists.size(B1), b2 = this.lists.size(B2);
+
+        if(list == T1 || list == T2)
+        {
+            this.values[entry] = value;
+            this.lists.addFirst(T2, entry);
+            return;
+        }
+
+        if(list == B1)
+        {
+            // Falta em B1: favorece a recência
+            this.p = Math.min(this.capacity, this.p + Math.max(b2 / b1, 1));
+            replace(false);
+            this.values[entry] = value;
+            this.lists.addFirst(T2, entry);
+            return;
+        }
+
+        if(list == B2)
+        {
+            // Falta em B2: favorece a frequência
+            this.p = Math.max(0, this.p - Math.max(b1 / b2, 1));
+            replace(true);
+            this.values[entry] = value;
+            this.lists.addFirst(T2, entry);
+            return;
+        }
+
+        // Página nova
+        if(t1 + b1 == this.capacity)
+        {
+            if(t1 < this.capacity)
+            {
+                release(this.lists.last(B1));
+                replace(false);
+            }
+            else
+            {
+                release(this.lists.last(T1));
+                this.evictions++;
+            }
+        }
+        else if(t1 + t2 + b1 + b2 >= this.capacity)
+        {
+            if(t1 + t2 + b1 + b2 == 2 * this.capacity)
+                release(this.lists.last(B2));
+            replace(false);
+        }
+
+        entry = this.free[--this.freeSize];
+        this.keys[entry] = key;
+        this.values[entry] = value;
+        this.map.put(key, entry);
+        this.lists.addFirst(T1, entry);
+    }
+
+    // Substitui uma página residente, lembrando a sua chave em B1 ou B2
+    private void replace(boolean emB2)
+    {
+        int t1 = this.lists.size(T1);
+        if(t1 + this.lists.size(T2) < this.capacity)
+            return;
+
+        int victim;
+        if(t1 > 0 && (t1 > this.p || (emB2 && t1 == this.p)))
+        {
+            victim = this.lists.last(T1);
+            this.lists.addFirst(B1, victim);
+        }
+        else
+        {
+            victim = this.lists.last(T2);
+            this.lists.addFirst(B2, victim);
+        }
+        this.values[victim] = null;
+        this.evictions++;
+    }
+
+    // Remove uma entrada do diretório
+    private void release(int entry)
+    {
+        this.lists.remove(entry);
+        this.map.remove(this.keys[entry]);
+        this.values[entry] = null;
+        this.free[this.freeSize++] = entry;
+    }
+}
@@ -0,0 +1,54 @@
+package org.obinject.joinqueries;
+
+import org.obinject.block.Node;
+
+/*
+ * Interface dos buffers de páginas de disco utilizados pelas junções. Cada
+ * implementação define uma política de substituição (LRU, LRU-K, 2Q, CLOCK,
+ * ARC), escolhida a cada chamada de junção. A chave de uma página é o par
+ * (árvore, id da página de disco) compactado em um long por key(int, long).
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public interface BufferPolicy
+{
+    /*
+     * Compacta o número da árvore e o id da página de disco em uma única chave.
+     *
+     * @param rtree Número da árvore (1 ou 2 nas junções).
+     * @param pageId Id da página de disco.
+     * @return Chave do buffer.
+     */
+    public static long key(int rtree, long pageId)
+    {
+        return ((long) rtree << 56) | (pageId & 0x00FFFFFFFFFFFFFFL);
+    }
+
+    /*
+     * Recupera um nó do buffer, registrando o acesso segundo a política.
+     *
+     * @param key Chave da página de disco (ver key(int, long)).
+     * @return O nó, caso esteja presente no buffer. Caso contrário retorna null.
+     */
+    public Node get(long key);
+
+    /*
+     * Insere no buffer um nó lido do disco, substituindo outro nó se o buffer estiver lotado.
+     *
+     * @param key Chave da página de disco (ver key(int, long)).
+     * @param value Nó da árvore que foi lida de uma página de disco.
+     */
+    public void put(long key, Node value);
+
+    public int getCapacity();
+
+    public long getHits();
+
+    public long getMisses();
+
+    public long getEvictions();
+}
@@ -0,0 +1,81 @@
+package org.obinject.joinqueries;
+
+import org.obinject.block.Node;
+import org.obinject.device.LongIntMap;
+
+/*
+ * Classe que implementa um buffer com a estratégia CLOCK (segunda chance).
+ * Os quadros formam um anel percorrido por um ponteiro; cada acesso liga o
+ * bit de referência do quadro. Para substituir, o ponteiro avança desligando
+ * os bits ligados até encontrar um quadro com o bit desligado.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class ClockCache extends AbstractBufferPolicy
+{
+    private int size = 0;
+    private int hand = 0;
+    private long[] keys;
+    private Node[] values;
+    private boolean[] referenced;
+    private LongIntMap map;
+
+    /*
+     * @param capacity Capacidade em páginas de disco do buffer.
+     */
+    public ClockCache(int capacity)
+    {
+        super(capacity);
+        this.keys = new long[this.capacity];
+        this.values = new Node[this.capacity];
+        this.referenced = new boolean[this.capacity];
+        this.map = new LongIntMap(this.capacity);
+    }
+
+    @Override
+    protected Node find(long key)
+    {
+        int frame = this.map.get(key);
+        if(frame == LongIntMap.EMPTY)
+            return null;
+        this.referenced[frame] = true;
+        return this.values[frame];
+    }
+
+    @Override
+    public void put(long key, Node value)
+    {
+        if(this.capacity == 0)
+            return;
+
+        int frame = this.map.get(key);
+        if(frame == LongIntMap.EMPTY)
+        {
+            if(this.size < this.capacity)
+            {
+                frame = this.size++;
+            }
+            else
+            {
+                // Segunda chance: desliga os bits até encontrar um quadro não referenciado
+                while(this.referenced[this.hand])
+                {
+                    this.referenced[this.hand] = false;
+                    this.hand = (this.hand + 1) % this.capacity;
+                }
+                frame = this.hand;
+                this.hand = (this.hand + 1) % this.capacity;
+                this.map.remove(this.keys[frame]);
+                this.evictions++;
+            }
+            this.keys[frame] = key;
+            this.map.put(key, frame);
+        }
+        this.values[frame] = value;
+        this.referenced[frame] = true;
+    }
+}
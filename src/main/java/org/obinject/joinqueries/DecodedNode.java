@@ -0,0 +1,78 @@
+package org.obinject.joinqueries;
+
+import org.obinject.block.Node;
+import org.obinject.meta.Uuid;
+
+/*
+ * Forma decodificada de um nó de Árvore R, armazenada no buffer das junções no lugar do nó
+ * lido do disco. Além da própria página (o vetor de bytes é compartilhado), guarda os MBRs de
+ * todas as entradas em vetores primitivos, já ordenados pelo "x lower" (a posição original de
+ * cada MBR no nó forma a permutação da ordenação), e os IDs das subárvores, nos nós índices,
+ * ou os bits dos Uuids, nas folhas. Assim, quando uma página já presente no buffer é
+ * examinada de novo, as chaves não são decodificadas nem ordenadas outra vez.
+ *
+ * Como DecodedNode é um Node, os buffers (BufferPolicy) não precisam ser alterados. Os nós
+ * são criados por JoinQueryUtilities.decodificar.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class DecodedNode extends Node
+{
+    private final boolean indice;
+    private final MbrArray mbrs;
+    private final long[] filhos;
+    private final long[] uuids;
+
+    /*
+     * @param node Nó lido do disco.
+     * @param indice Indica se o nó é um nó índice.
+     * @param mbrs MBRs de todas as entradas, ordenados pelo "x lower".
+     * @param filhos ID da subárvore de cada entrada, na ordem do nó, ou null se o nó é folha.
+     * @param uuids Bits mais e menos significativos do Uuid de cada entrada, na ordem do nó,
+     *              ou null se o nó é índice.
+     */
+    DecodedNode(Node node, boolean indice, MbrArray mbrs, long[] filhos, long[] uuids)
+    {
+        super(node.getPageId(), node.getArray());
+        this.indice = indice;
+        this.mbrs = mbrs;
+        this.filhos = filhos;
+        this.uuids = uuids;
+    }
+
+    /*
+     * Página a ser examinada a partir de uma entrada qualificada do nó: a subárvore da
+     * entrada, se o nó é índice, ou o próprio nó, se ele é uma folha fixada
+     * (ver JoinQueryUtilities.fixarFolha).
+     *
+     * @param posicao Posição da entrada no nó.
+     * @return ID da página a ser examinada.
+     */
+    public long paginaFilha(int posicao)
+    {
+        return this.indice ? this.filhos[posicao] : this.getPageId();
+    }
+
+    /*
+     * @param posicao Posição da entrada na folha.
+     * @return Uuid do objeto da entrada.
+     */
+    public Uuid readEntityUuid(int posicao)
+    {
+        return new Uuid(this.uuids[2 * posicao], this.uuids[2 * posicao + 1]);
+    }
+
+    public boolean isIndice()
+    {
+        return indice;
+    }
+
+    public MbrArray getMbrs()
+    {
+        return mbrs;
+    }
+}
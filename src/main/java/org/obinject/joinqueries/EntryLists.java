@@ -0,0 +1,101 @@
+package org.obinject.joinqueries;
+
+import java.util.Arrays;
+
+/*
+ * Conjunto de listas duplamente encadeadas intrusivas sobre entradas numeradas
+ * de 0 a n - 1. Cada entrada pertence a no máximo uma lista por vez. O início
+ * de cada lista é o elemento mais recente e o fim o mais antigo. É a base das
+ * filas de recência dos buffers (LRU, 2Q e ARC), sem alocação de nós.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+class EntryLists
+{
+    static final int NONE = -1;
+
+    private int[] prev;
+    private int[] next;
+    private int[] owner;
+    private int[] head;
+    private int[] tail;
+    private int[] size;
+
+    /*
+     * @param entries Número de entradas.
+     * @param lists Número de listas.
+     */
+    EntryLists(int entries, int lists)
+    {
+        this.prev = new int[entries];
+        this.next = new int[entries];
+        this.owner = new int[entries];
+        this.head = new int[lists];
+        this.tail = new int[lists];
+        this.size = new int[lists];
+        Arrays.fill(this.owner, NONE);
+        Arrays.fill(this.head, NONE);
+        Arrays.fill(this.tail, NONE);
+    }
+
+    /*
+     * Insere a entrada no início da lista, removendo-a antes da lista em que estiver.
+     */
+    void addFirst(int list, int entry)
+    {
+        remove(entry);
+        this.prev[entry] = NONE;
+        this.next[entry] = this.head[list];
+        if(this.head[list] != NONE)
+            this.prev[this.head[list]] = entry;
+        this.head[list] = entry;
+        if(this.tail[list] == NONE)
+            this.tail[list] = entry;
+        this.owner[entry] = list;
+        this.size[list]++;
+    }
+
+    void remove(int entry)
+    {
+        int list = this.owner[entry];
+        if(list == NONE)
+            return;
+
+        int p = this.prev[entry], n = this.next[entry];
+        if(p != NONE)
+            this.next[p] = n;
+        else
+            this.head[list] = n;
+        if(n != NONE)
+            this.prev[n] = p;
+        else
+            this.tail[list] = p;
+        this.owner[entry] = NONE;
+        this.size[list]--;
+    }
+
+    /*
+     * @return A entrada mais antiga da lista ou NONE se ela estiver vazia.
+     */
+    int last(int list)
+    {
+        return this.tail[list];
+    }
+
+    int size(int list)
+    {
+        return this.size[list];
+    }
+
+    /*
+     * @return A lista que contém a entrada ou NONE.
+     */
+    int listOf(int entry)
+    {
+        return this.owner[entry];
+    }
+}
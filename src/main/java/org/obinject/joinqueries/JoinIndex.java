@@ -0,0 +1,124 @@
+package org.obinject.joinqueries;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+ * Índice intermediário de junção (intermediate join index) da junção em largura: armazena
+ * os pares de páginas de um nível das duas árvores que ainda serão examinados. Cada par é
+ * formado pelos IDs das duas páginas, pela janela de interseção que restringe o espaço de
+ * busca e por uma chave de ordenação (por exemplo, o valor z-order ou de Hilbert da janela).
+ * Como o nível inteiro é materializado antes de ser examinado, os pares podem ser ordenados
+ * globalmente, e não apenas entre os filhos de um mesmo par de nós.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class JoinIndex
+{
+    private int size;
+    private long[] pageId1 = new long[16];
+    private long[] pageId2 = new long[16];
+    private double[][] janelas = new double[16][];
+    private long[] keys = new long[16];
+
+    public void clear()
+    {
+        Arrays.fill(this.janelas, 0, this.size, null);
+        this.size = 0;
+    }
+
+    /*
+     * Adiciona um par de páginas ao final do índice.
+     *
+     * @param pageId1 ID da página da rtree1.
+     * @param pageId2 ID da página da rtree2.
+     * @param janela Janela de interseção do par, ou null.
+     * @param key Chave de ordenação do par.
+     */
+    public void add(long pageId1, long pageId2, double[] janela, long key)
+    {
+        if(this.size == this.pageId1.length)
+        {
+            int length = 2 * this.size;
+            this.pageId1 = Arrays.copyOf(this.pageId1, length);
+            this.pageId2 = Arrays.copyOf(this.pageId2, length);
+            this.janelas = Arrays.copyOf(this.janelas, length);
+            this.keys = Arrays.copyOf(this.keys, length);
+        }
+        this.pageId1[this.size] = pageId1;
+        this.pageId2[this.size] = pageId2;
+        this.janelas[this.size] = janela;
+        this.keys[this.size] = key;
+        this.size++;
+    }
+
+    /*
+     * Ordena os pares pela chave de ordenação, mantendo a ordem relativa dos pares de mesma chave.
+     */
+    public void sortByKey()
+    {
+        sort(Comparator.comparingLong(i -> this.keys[i]));
+    }
+
+    /*
+     * Ordena os pares pelo ID da página da rtree1 e, em seguida, pelo ID da página da rtree2,
+     * de forma que os pares que compartilham uma página da rtree1 fiquem consecutivos.
+     */
+    public void sortByPageId()
+    {
+        sort(Comparator.<Integer>comparingLong(i -> this.pageId1[i]).thenComparingLong(i -> this.pageId2[i]));
+    }
+
+    private void sort(Comparator<Integer> comparador)
+    {
+        Integer[] ordem = new Integer[this.size];
+        for(int i = 0; i < this.size; i++)
+            ordem[i] = i;
+        Arrays.sort(ordem, comparador);
+
+        long[] pageId1 = new long[this.pageId1.length];
+        long[] pageId2 = new long[this.pageId2.length];
+        double[][] janelas = new double[this.janelas.length][];
+        long[] keys = new long[this.keys.length];
+        for(int i = 0; i < this.size; i++)
+        {
+            pageId1[i] = this.pageId1[ordem[i]];
+            pageId2[i] = this.pageId2[ordem[i]];
+            janelas[i] = this.janelas[ordem[i]];
+            keys[i] = this.keys[ordem[i]];
+        }
+        this.pageId1 = pageId1;
+        this.pageId2 = pageId2;
+        this.janelas = janelas;
+        this.keys = keys;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public long getPageId1(int i)
+    {
+        return pageId1[i];
+    }
+
+    public long getPageId2(int i)
+    {
+        return pageId2[i];
+    }
+
+    public double[] getJanela(int i)
+    {
+        return janelas[i];
+    }
+
+    public long getKey(int i)
+    {
+        return keys[i];
+    }
+}
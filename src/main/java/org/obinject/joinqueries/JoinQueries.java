@@ -5,13 +5,12 @@ import java.util.Stack;
 
 import org.obinject.block.Node;
 import org.obinject.block.RTreeDescriptor;
-import org.obinject.block.RTreeIndex;
-import org.obinject.block.RTreeLeaf;
 import org.obinject.block.RTreeNode;
 import org.obinject.device.Session;
 import org.obinject.meta.Entity;
 import org.obinject.meta.Rectangle;
 import org.obinject.meta.Uuid;
+import org.obinject.storage.HilbertCurve;
 import org.obinject.storage.RTree;
 
 /**
@@ -28,6 +27,13 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
 {
     public static int sizeOfBuffer = 32; // Em quantidade de páginas
     
+    /*
+     * Ordem global dos pares de páginas de cada nível na junção em largura (ver joinBfrj).
+     * PAGINAS agrupa os pares pelo ID da página da rtree1 e, em seguida, da rtree2; ZORDER e 
+     * HILBERT ordenam os pares pelo valor do centro da sua janela de interseção na respectiva curva.
+     */
+    public enum OrdemPares { PAGINAS, ZORDER, HILBERT }
+    
     private RTree<R> rtree1;
     private RTree<R> rtree2;
     
@@ -36,22 +42,31 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
     private JoinQueryUtilities<R> joinUtilities;
     
     /*
-     * Construtor que recebe duas Árvores R de mesma altura que serão utilizadas nas operações de junção.
+     * Construtor que recebe duas Árvores R que serão utilizadas nas operações de junção.
+     * As árvores podem ter alturas diferentes: quando um dos lados chega às folhas, a folha
+     * é fixada e somente o outro lado continua descendo (ver JoinQueryUtilities.fixarFolha).
      * 
      * @param rtree1 Primeira Árvore R.
      * @param rtree2 Segunda Árvore R.
-     * @throws Exception Se as árvores tiverem alturas diferentes.
      * */
-    public JoinQueries(RTree<R> rtree1, RTree<R> rtree2) throws Exception 
+    public JoinQueries(RTree<R> rtree1, RTree<R> rtree2)
     {
-        if(rtree1.height() != rtree2.height())
-            throw new Exception("The trees should have the same height.");
-            
         this.rtree1 = rtree1;
         this.rtree2 = rtree2;
         setup();
     }
     
+    /*
+     * Construtor para a auto-junção (ver selfJoin()), que recebe uma única Árvore R.
+     * Os dois lados da junção compartilham a mesma Session.
+     * 
+     * @param rtree Árvore R.
+     * */
+    public JoinQueries(RTree<R> rtree)
+    {
+        this(rtree, rtree);
+    }
+    
     /*
      * Método que inicializa Session e RTreeDescriptor para cada árvore.
      * Também inicializa o atributo joinUtilities.
@@ -63,6 +78,14 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
         long pageIdDescriptor1 = se1.findPageIdDescriptor(this.rtree1.getClassUuid());
         this.descriptor1 = new RTreeDescriptor(se1.load(pageIdDescriptor1));
         
+        if(this.rtree2 == this.rtree1) // A mesma árvore nos dois lados
+        {
+            this.se2 = this.se1;
+            this.descriptor2 = this.descriptor1;
+            joinUtilities = new JoinQueryUtilities<R>(this.rtree1.geometry);
+            return;
+        }
+        
         // R-tree 2
         this.se2 = this.rtree2.getWorkspace().openSession();
         long pageIdDescriptor2 = se2.findPageIdDescriptor(this.rtree2.getClassUuid());
@@ -80,8 +103,31 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
      */
     public ArrayList<Pair<Uuid, Uuid>> basicJoin()
     {
-        // Buffer LRU utilizado para diminuir a leitura de páginas de disco.
-        LRUCache bufferLRU = new LRUCache(sizeOfBuffer);
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        basicJoin((uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+    
+    /*
+     * Versão de basicJoin() que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void basicJoin(JoinResultSink sink)
+    {
+        basicJoin(sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de basicJoin(JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void basicJoin(JoinResultSink sink, BufferPolicy buffer)
+    {
         
         // Pilha contendo pares de ID das páginas de discos qualificadas a serem examinadas.
         // A pilha é necessária devido a implementação iterativa do algoritmo.
@@ -91,8 +137,8 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
 
         int overlap;
         long pageId1, pageId2;
-        R storedKeyRtree1, storedKeyRtree2;
-        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        MbrArray mbrsRtree1 = new MbrArray();
+        MbrArray mbrsRtree2 = new MbrArray();
         
         // Métricas
         long totalDiskAccess = 0;
@@ -105,52 +151,60 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
             pageId1 = pair.getFirst();
             pageId2 = pair.getSecond();
             
-            // Leitura de páginas de disco e utilização do buffer LRU
-            Node nodeRtree1 = bufferLRU.get(pageId1 + "-1");
+            // Leitura de páginas de disco e utilização do buffer
+            DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
             if(nodeRtree1 == null)
             {
-                nodeRtree1 = se1.load(pageId1);
-                bufferLRU.put(pageId1 + "-1", nodeRtree1);
+                nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                se1.unpin(pageId1);
+                buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
                 totalDiskAccess++;
             }
             
-            Node nodeRtree2 = bufferLRU.get(pageId2 + "-2");
+            DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
             if(nodeRtree2 == null)
             {
-                nodeRtree2 = se2.load(pageId2);
-                bufferLRU.put(pageId2 + "-2", nodeRtree2);
+                nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                se2.unpin(pageId2);
+                buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
                 totalDiskAccess++;
             }
             
-            RTreeNode<R> gerericNodeRtree1 = new RTreeNode<>(nodeRtree1, this.rtree1.getObjectClass());
-            RTreeNode<R> gerericNodeRtree2 = new RTreeNode<>(nodeRtree2, this.rtree2.getObjectClass());
-            int totalEntriesRtree1 = gerericNodeRtree1.readNumberOfKeys();
-            int totalEntriesRtree2 = gerericNodeRtree2.readNumberOfKeys();
+            boolean indiceRtree1 = nodeRtree1.isIndice();
+            boolean indiceRtree2 = nodeRtree2.isIndice();
+            
+            // Coordenadas decodificadas uma única vez por nó, quando ele entra no buffer
+            joinUtilities.restringirEspacoBusca(null, nodeRtree1, mbrsRtree1);
+            joinUtilities.restringirEspacoBusca(null, nodeRtree2, mbrsRtree2);
+            int totalEntriesRtree1 = mbrsRtree1.size();
+            int totalEntriesRtree2 = mbrsRtree2.size();
+            
+            // Com alturas diferentes, a folha é fixada e cada entrada do nó índice desce uma única vez
+            boolean[] desceuRtree1 = new boolean[totalEntriesRtree1];
             overlap = 0;
             
             for (int i = 0; i < totalEntriesRtree2; i++) 
             {
-                storedKeyRtree2 = gerericNodeRtree2.buildKey(i);
                 for (int j = 0; j < totalEntriesRtree1; j++) 
                 {
-                    storedKeyRtree1 = gerericNodeRtree1.buildKey(j);
                     totalComparisons++;
-                    if(this.joinUtilities.getGeometry().isOverlap(storedKeyRtree2, storedKeyRtree1)) 
+                    if(mbrsRtree2.overlaps(i, mbrsRtree1, j)) 
                     {
-                        if (RTreeIndex.matchNodeType(nodeRtree2)) // nodeRtree1 e nodeRtree2 são nós índices.
+                        if (indiceRtree1 || indiceRtree2) // Ao menos um dos nós é índice.
                         {
-                            RTreeIndex<R> indexRtree1 = new RTreeIndex<>(nodeRtree1, this.rtree1.getObjectClass());
-                            RTreeIndex<R> indexRtree2 = new RTreeIndex<>(nodeRtree2, this.rtree2.getObjectClass());
-                            qualifies.add(qualifies.size() - overlap, new Pair<>(indexRtree1.readSubPageId(j), indexRtree2.readSubPageId(i)));
+                            if(indiceRtree1 && !indiceRtree2 && desceuRtree1[j])
+                                continue;
+                            desceuRtree1[j] = true;
+                            qualifies.add(qualifies.size() - overlap, new Pair<>(nodeRtree1.paginaFilha(mbrsRtree1.getEntry(j)), nodeRtree2.paginaFilha(mbrsRtree2.getEntry(i))));
                             overlap++;
+                            if(!indiceRtree1) // Folha da rtree1 fixada: a entrada i da rtree2 já desceu.
+                                break;
                         }
                         else // nodeRtree1 e nodeRtree2 são nós folhas.
                         {
-                            RTreeLeaf<R> leafRtree1 = new RTreeLeaf<>(nodeRtree1, this.rtree1.getObjectClass());
-                            RTreeLeaf<R> leafRtree2 = new RTreeLeaf<>(nodeRtree2, this.rtree2.getObjectClass());
-                            Uuid uuidRtree1 = leafRtree1.readEntityUuid(j);
-                            Uuid uuidRtree2 = leafRtree2.readEntityUuid(i);
-                            result.add(new Pair<>(uuidRtree1, uuidRtree2));
+                            Uuid uuidRtree1 = nodeRtree1.readEntityUuid(mbrsRtree1.getEntry(j));
+                            Uuid uuidRtree2 = nodeRtree2.readEntityUuid(mbrsRtree2.getEntry(i));
+                            sink.accept(uuidRtree1, uuidRtree2);
                         } 
                     }
                 }            
@@ -162,7 +216,6 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
         System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
         System.out.println("Total Comparisons: " + totalComparisons);
         System.out.println("Total Disk Access: " + totalDiskAccess);
-        return result;
     }
     
     /*
@@ -174,19 +227,43 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
      */
     public ArrayList<Pair<Uuid, Uuid>> basicJoinRestringindoEspacoBusca()
     {
-        // Buffer LRU utilizado para diminuir a leitura de páginas de disco.
-        LRUCache bufferLRU = new LRUCache(sizeOfBuffer);
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        basicJoinRestringindoEspacoBusca((uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+    
+    /*
+     * Versão de basicJoinRestringindoEspacoBusca() que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void basicJoinRestringindoEspacoBusca(JoinResultSink sink)
+    {
+        basicJoinRestringindoEspacoBusca(sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de basicJoinRestringindoEspacoBusca(JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void basicJoinRestringindoEspacoBusca(JoinResultSink sink, BufferPolicy buffer)
+    {
         
         // Pilha contendo pares de ID das páginas de discos qualificadas a serem examinadas.
         // A pilha é necessária devido a implementação iterativa do algoritmo.
         // É ela que define a ordem dos pares de nós examinados.
-        Stack<Triple<Long, Long, R>> qualifies = new Stack<>();
+        Stack<Triple<Long, Long, double[]>> qualifies = new Stack<>();
         qualifies.push(new Triple<>(this.descriptor1.readRootPageId(), this.descriptor2.readRootPageId(), null));
 
         int overlap;
         long pageId1, pageId2;
-        R storedKeyRtree1, storedKeyRtree2, intersecao;
-        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        double[] intersecao;
+        MbrArray entradasRtree1 = new MbrArray();
+        MbrArray entradasRtree2 = new MbrArray();
         
         // Métricas
         long totalDiskAccess = 0;
@@ -195,60 +272,90 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
         
         do
         {
-            Triple<Long, Long, R> trio = qualifies.pop();
+            Triple<Long, Long, double[]> trio = qualifies.pop();
             pageId1 = trio.getFirst();
             pageId2 = trio.getSecond();
             intersecao = trio.getThird();
             
-            // Leitura de páginas de disco e utilização do buffer LRU
-            Node nodeRtree1 = bufferLRU.get(pageId1 + "-1");
+            // Leitura de páginas de disco e utilização do buffer
+            DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
             if(nodeRtree1 == null)
             {
-                nodeRtree1 = se1.load(pageId1);
-                bufferLRU.put(pageId1 + "-1", nodeRtree1);
+                nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                se1.unpin(pageId1);
+                buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
                 totalDiskAccess++;
             }
             
-            Node nodeRtree2 = bufferLRU.get(pageId2 + "-2");
+            DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
             if(nodeRtree2 == null)
             {
-                nodeRtree2 = se2.load(pageId2);
-                bufferLRU.put(pageId2 + "-2", nodeRtree2);
+                nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                se2.unpin(pageId2);
+                buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
                 totalDiskAccess++;
             }
             
-            RTreeNode<R> gerericNodeRtree1 = new RTreeNode<>(nodeRtree1, this.rtree1.getObjectClass());
-            RTreeNode<R> gerericNodeRtree2 = new RTreeNode<>(nodeRtree2, this.rtree2.getObjectClass());
             overlap = 0;
             
             // Restringindo o espaço de busca
-            ArrayList<Pair<R, Integer>> entradasRtree1 = joinUtilities.restringirEspacoBusca(intersecao, gerericNodeRtree1);
-            ArrayList<Pair<R, Integer>> entradasRtree2 = joinUtilities.restringirEspacoBusca(intersecao, gerericNodeRtree2);
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree1, entradasRtree1);
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree2, entradasRtree2);
+            
+            // Árvores de alturas diferentes: a folha é fixada e cada entrada do nó índice desce uma 
+            // única vez, com a janela restrita ao MBR que envolve as entradas da folha que a interceptam.
+            boolean indiceRtree1 = nodeRtree1.isIndice();
+            if(indiceRtree1 != nodeRtree2.isIndice())
+            {
+                MbrArray entradasIndice = indiceRtree1 ? entradasRtree1 : entradasRtree2;
+                MbrArray entradasFolha = indiceRtree1 ? entradasRtree2 : entradasRtree1;
+                int totalFolha = entradasFolha.size();
+                DecodedNode index = indiceRtree1 ? nodeRtree1 : nodeRtree2;
+                for (int e = 0; e < entradasIndice.size(); e++)
+                {
+                    int envoltorio = -1;
+                    for (int f = 0; f < totalFolha; f++)
+                    {
+                        totalComparisons++;
+                        if(entradasIndice.overlaps(e, entradasFolha, f))
+                        {
+                            if(envoltorio == -1)
+                                envoltorio = entradasFolha.addCopy(f);
+                            else
+                                entradasFolha.union(envoltorio, f);
+                        }
+                    }
+                    
+                    if(envoltorio != -1)
+                    {
+                        long subPageId = index.paginaFilha(entradasIndice.getEntry(e));
+                        intersecao = entradasIndice.intersection(e, entradasFolha, envoltorio);
+                        qualifies.add(qualifies.size() - overlap, indiceRtree1 ? new Triple<>(subPageId, pageId2, intersecao) : new Triple<>(pageId1, subPageId, intersecao));
+                        overlap++;
+                        entradasFolha.removeLast();
+                    }
+                }
+                continue;
+            }
             
             for (int i = 0; i < entradasRtree2.size(); i++) 
             {
-                storedKeyRtree2 = entradasRtree2.get(i).getFirst();
                 for (int j = 0; j < entradasRtree1.size(); j++) 
                 {
-                    storedKeyRtree1 = entradasRtree1.get(j).getFirst();
                     totalComparisons++;
-                    if(this.joinUtilities.getGeometry().isOverlap(storedKeyRtree2, storedKeyRtree1)) 
+                    if(entradasRtree2.overlaps(i, entradasRtree1, j)) 
                     {
-                        if (RTreeIndex.matchNodeType(nodeRtree2)) // nodeRtree1 e nodeRtree2 são nós índices.
+                        if (indiceRtree1) // nodeRtree1 e nodeRtree2 são nós índices.
                         {
-                            RTreeIndex<R> indexRtree1 = new RTreeIndex<>(nodeRtree1, this.rtree1.getObjectClass());
-                            RTreeIndex<R> indexRtree2 = new RTreeIndex<>(nodeRtree2, this.rtree2.getObjectClass());
-                            intersecao = this.joinUtilities.getGeometry().intersection(storedKeyRtree2, storedKeyRtree1);
-                            qualifies.add(qualifies.size() - overlap, new Triple<>(indexRtree1.readSubPageId(entradasRtree1.get(j).getSecond()), indexRtree2.readSubPageId(entradasRtree2.get(i).getSecond()), intersecao));
+                            intersecao = entradasRtree2.intersection(i, entradasRtree1, j);
+                            qualifies.add(qualifies.size() - overlap, new Triple<>(nodeRtree1.paginaFilha(entradasRtree1.getEntry(j)), nodeRtree2.paginaFilha(entradasRtree2.getEntry(i)), intersecao));
                             overlap++; 
                         }
                         else // nodeRtree1 e nodeRtree2 são nós folhas.
                         {
-                            RTreeLeaf<R> leafRtree1 = new RTreeLeaf<>(nodeRtree1, this.rtree1.getObjectClass());
-                            RTreeLeaf<R> leafRtree2 = new RTreeLeaf<>(nodeRtree2, this.rtree2.getObjectClass());
-                            Uuid uuidRtree1 = leafRtree1.readEntityUuid(entradasRtree1.get(j).getSecond());
-                            Uuid uuidRtree2 = leafRtree2.readEntityUuid(entradasRtree2.get(i).getSecond());
-                            result.add(new Pair<>(uuidRtree1, uuidRtree2));
+                            Uuid uuidRtree1 = nodeRtree1.readEntityUuid(entradasRtree1.getEntry(j));
+                            Uuid uuidRtree2 = nodeRtree2.readEntityUuid(entradasRtree2.getEntry(i));
+                            sink.accept(uuidRtree1, uuidRtree2);
                         }
                     }
                 }            
@@ -260,7 +367,6 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
         System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
         System.out.println("Total Comparisons: " + totalComparisons);
         System.out.println("Total Disk Access: " + totalDiskAccess);
-        return result;
     }
 
     /*
@@ -272,20 +378,47 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
      * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
      */
     public ArrayList<Pair<Uuid, Uuid>> joinPlaneSweep()
-    {        
-        // Buffer LRU utilizado para diminuir a leitura de páginas de disco.
-        LRUCache bufferLRU = new LRUCache(sizeOfBuffer);
+    {
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinPlaneSweep((uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+    
+    /*
+     * Versão de joinPlaneSweep() que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinPlaneSweep(JoinResultSink sink)
+    {
+        joinPlaneSweep(sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de joinPlaneSweep(JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void joinPlaneSweep(JoinResultSink sink, BufferPolicy buffer)
+    {
         
         // Pilha contendo pares de ID das páginas de discos qualificadas a serem examinadas.
         // A pilha é necessária devido a implementação iterativa do algoritmo.
         // É ela que define a ordem dos pares de nós examinados.
-        Stack<Triple<Long, Long, R>> qualifies = new Stack<>();
+        Stack<Triple<Long, Long, double[]>> qualifies = new Stack<>();
         qualifies.push(new Triple<>(this.descriptor1.readRootPageId(), this.descriptor2.readRootPageId(), null));
 
         int overlap;
         long pageId1, pageId2;
-        R intersecao;
-        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        double[] intersecao;
+        
+        // Vetores reutilizados a cada par de nós examinado
+        MbrArray entradasRtree1 = new MbrArray();
+        MbrArray entradasRtree2 = new MbrArray();
+        PairBuffer paresRetangulos = new PairBuffer();
         
         // Métricas
         long totalDiskAccess = 0;
@@ -294,58 +427,61 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
         
         do
         {
-            Triple<Long, Long, R> trio = qualifies.pop();
+            Triple<Long, Long, double[]> trio = qualifies.pop();
             pageId1 = trio.getFirst();
             pageId2 = trio.getSecond();
             intersecao = trio.getThird();
             
-            // Leitura de páginas de disco e utilização do buffer LRU
-            Node nodeRtree1 = bufferLRU.get(pageId1 + "-1");
+            // Leitura de páginas de disco e utilização do buffer
+            DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
             if(nodeRtree1 == null)
             {
-                nodeRtree1 = se1.load(pageId1);
-                bufferLRU.put(pageId1 + "-1", nodeRtree1);
+                nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                se1.unpin(pageId1);
+                buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
                 totalDiskAccess++;
             }
             
-            Node nodeRtree2 = bufferLRU.get(pageId2 + "-2");
+            DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
             if(nodeRtree2 == null)
             {
-                nodeRtree2 = se2.load(pageId2);
-                bufferLRU.put(pageId2 + "-2", nodeRtree2);
+                nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                se2.unpin(pageId2);
+                buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
                 totalDiskAccess++;
             }
                                     
-            RTreeNode<R> gerericNodeRtree1 = new RTreeNode<>(nodeRtree1, this.rtree1.getObjectClass());
-            RTreeNode<R> gerericNodeRtree2 = new RTreeNode<>(nodeRtree2, this.rtree2.getObjectClass());
             overlap = 0;
             
-            // Restringindo o espaço de busca
-            ArrayList<Pair<R, Integer>> entradasRtree1 = joinUtilities.restringirEspacoBusca(intersecao, gerericNodeRtree1);
-            ArrayList<Pair<R, Integer>> entradasRtree2 = joinUtilities.restringirEspacoBusca(intersecao, gerericNodeRtree2);
+            // Restringindo o espaço de busca e ordenando pelo "x lower"
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree1, entradasRtree1);
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree2, entradasRtree2);
             
-            // Aplicando a ordenação e o algoritmo plane-sweep
+            // Aplicando o algoritmo plane-sweep
             joinUtilities.setComparisons(0);
-            ArrayList<Triple<Pair<R, Integer>, Pair<R, Integer>, Pair<R, Long>>> paresRetangulos = joinUtilities.planeSweep(entradasRtree1, entradasRtree2, false);
+            joinUtilities.planeSweep(entradasRtree1, entradasRtree2, paresRetangulos, false);
             totalComparisons += joinUtilities.getComparisons();
             
-            for(int i = 0; i < paresRetangulos.size(); i++)
+            // Árvores de alturas diferentes: a folha é fixada e somente o outro lado desce
+            joinUtilities.fixarFolha(nodeRtree1.isIndice(), nodeRtree2.isIndice(), entradasRtree1, entradasRtree2, paresRetangulos);
+            
+            if (nodeRtree1.isIndice() || nodeRtree2.isIndice()) // Ao menos um dos nós é índice.
             {
-                if (RTreeIndex.matchNodeType(nodeRtree2)) // nodeRtree1 e nodeRtree2 são nós índices.
+                for(int i = 0; i < paresRetangulos.size(); i++)
                 {
-                    RTreeIndex<R> indexRtree1 = new RTreeIndex<>(nodeRtree1, this.rtree1.getObjectClass());
-                    RTreeIndex<R> indexRtree2 = new RTreeIndex<>(nodeRtree2, this.rtree2.getObjectClass());
-                    intersecao = paresRetangulos.get(i).getThird().getFirst();
-                    qualifies.add(qualifies.size() - overlap, new Triple<>(indexRtree1.readSubPageId(paresRetangulos.get(i).getFirst().getSecond()), indexRtree2.readSubPageId(paresRetangulos.get(i).getSecond().getSecond()), intersecao));
+                    int e1 = paresRetangulos.getFirst(i), e2 = paresRetangulos.getSecond(i);
+                    intersecao = entradasRtree1.intersection(e1, entradasRtree2, e2);
+                    qualifies.add(qualifies.size() - overlap, new Triple<>(nodeRtree1.paginaFilha(entradasRtree1.getEntry(e1)), nodeRtree2.paginaFilha(entradasRtree2.getEntry(e2)), intersecao));
                     overlap++;
                 }
-                else // nodeRtree1 e nodeRtree2 são nós folhas.
+            }
+            else // nodeRtree1 e nodeRtree2 são nós folhas.
+            {
+                for(int i = 0; i < paresRetangulos.size(); i++)
                 {
-                    RTreeLeaf<R> leafRtree1 = new RTreeLeaf<>(nodeRtree1, this.rtree1.getObjectClass());
-                    RTreeLeaf<R> leafRtree2 = new RTreeLeaf<>(nodeRtree2, this.rtree2.getObjectClass());
-                    Uuid uuidRtree1 = leafRtree1.readEntityUuid(paresRetangulos.get(i).getFirst().getSecond());
-                    Uuid uuidRtree2 = leafRtree2.readEntityUuid(paresRetangulos.get(i).getSecond().getSecond());
-                    result.add(new Pair<>(uuidRtree1, uuidRtree2));
+                    Uuid uuidRtree1 = nodeRtree1.readEntityUuid(entradasRtree1.getEntry(paresRetangulos.getFirst(i)));
+                    Uuid uuidRtree2 = nodeRtree2.readEntityUuid(entradasRtree2.getEntry(paresRetangulos.getSecond(i)));
+                    sink.accept(uuidRtree1, uuidRtree2);
                 }
             }
         }
@@ -355,7 +491,6 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
         System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
         System.out.println("Total Comparisons: " + totalComparisons);
         System.out.println("Total Disk Access: " + totalDiskAccess);
-        return result;
     }
     
     /*
@@ -368,18 +503,45 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
      */
     public ArrayList<Pair<Uuid, Uuid>> joinPlaneSweepFixacao()
     {
-        // Buffer LRU utilizado para diminuir a leitura de páginas de disco.
-        LRUCache bufferLRU = new LRUCache(sizeOfBuffer);
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinPlaneSweepFixacao((uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+    
+    /*
+     * Versão de joinPlaneSweepFixacao() que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinPlaneSweepFixacao(JoinResultSink sink)
+    {
+        joinPlaneSweepFixacao(sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de joinPlaneSweepFixacao(JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void joinPlaneSweepFixacao(JoinResultSink sink, BufferPolicy buffer)
+    {
         
         // Pilha contendo pares de ID das páginas de discos qualificadas a serem examinadas.
         // A pilha é necessária devido a implementação iterativa do algoritmo.
         // É ela que define a ordem dos pares de nós examinados.
-        Stack<Triple<Long, Long, R>> qualifies = new Stack<>();
+        Stack<Triple<Long, Long, double[]>> qualifies = new Stack<>();
         qualifies.push(new Triple<>(this.descriptor1.readRootPageId(), this.descriptor2.readRootPageId(), null));
         
         long pageId1, pageId2;
-        R intersecao;       
-        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        double[] intersecao;
+        
+        // Vetores reutilizados a cada par de nós examinado
+        MbrArray entradasRtree1 = new MbrArray();
+        MbrArray entradasRtree2 = new MbrArray();
+        PairBuffer paresRetangulos = new PairBuffer();
         
         // Métricas
         long totalDiskAccess = 0;
@@ -388,105 +550,44 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
    
         do
         {
-            Triple<Long, Long, R> trio = qualifies.pop();
+            Triple<Long, Long, double[]> trio = qualifies.pop();
             pageId1 = trio.getFirst();
             pageId2 = trio.getSecond();
             intersecao = trio.getThird();
             
-            // Leitura de páginas de disco e utilização do buffer LRU
-            Node nodeRtree1 = bufferLRU.get(pageId1 + "-1");
+            // Leitura de páginas de disco e utilização do buffer
+            DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
             if(nodeRtree1 == null)
             {
-                nodeRtree1 = se1.load(pageId1);
-                bufferLRU.put(pageId1 + "-1", nodeRtree1);
+                nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                se1.unpin(pageId1);
+                buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
                 totalDiskAccess++;
             }
             
-            Node nodeRtree2 = bufferLRU.get(pageId2 + "-2");
+            DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
             if(nodeRtree2 == null)
             {
-                nodeRtree2 = se2.load(pageId2);
-                bufferLRU.put(pageId2 + "-2", nodeRtree2);
+                nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                se2.unpin(pageId2);
+                buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
                 totalDiskAccess++;
             }
             
-            RTreeNode<R> gerericNodeRtree1 = new RTreeNode<>(nodeRtree1, this.rtree1.getObjectClass());
-            RTreeNode<R> gerericNodeRtree2 = new RTreeNode<>(nodeRtree2, this.rtree2.getObjectClass());  
             
-            // Restringindo o espaço de busca
-            ArrayList<Pair<R, Integer>> entradasRtree1 = joinUtilities.restringirEspacoBusca(intersecao, gerericNodeRtree1);
-            ArrayList<Pair<R, Integer>> entradasRtree2 = joinUtilities.restringirEspacoBusca(intersecao, gerericNodeRtree2);
+            // Restringindo o espaço de busca e ordenando pelo "x lower"
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree1, entradasRtree1);
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree2, entradasRtree2);
             
-            // Aplicando a ordenação e o algoritmo plane-sweep
+            // Aplicando o algoritmo plane-sweep
             joinUtilities.setComparisons(0);
-            ArrayList<Triple<Pair<R, Integer>, Pair<R, Integer>, Pair<R, Long>>> paresRetangulos = joinUtilities.planeSweep(entradasRtree1, entradasRtree2, false);
+            joinUtilities.planeSweep(entradasRtree1, entradasRtree2, paresRetangulos, false);
             totalComparisons += joinUtilities.getComparisons();
             
-            // Array para checar se um determinado par de retângulos já foi examinado ou não.
-            int totalPares = paresRetangulos.size();
-            boolean[] visitado = new boolean[totalPares]; 
-                        
-            for(int i = 0; i < totalPares; i++)
-            {
-                if(!visitado[i])
-                {
-                    Triple<Pair<R, Integer>, Pair<R, Integer>, Pair<R, Long>> par = paresRetangulos.get(i);
-                    if (RTreeIndex.matchNodeType(nodeRtree2)) // nodeRtree1 e nodeRtree2 são nós índices.
-                    {
-                        RTreeIndex<R> indexRtree1 = new RTreeIndex<>(nodeRtree1, this.rtree1.getObjectClass());
-                        RTreeIndex<R> indexRtree2 = new RTreeIndex<>(nodeRtree2, this.rtree2.getObjectClass());
-                        
-                        intersecao = par.getThird().getFirst();
-                        qualifies.add(0, new Triple<Long, Long, R>(indexRtree1.readSubPageId(par.getFirst().getSecond()), indexRtree2.readSubPageId(par.getSecond().getSecond()), intersecao));
-                        visitado[i] = true;
-                        
-                        // Calculando o graus dos dois MBRs
-                        int grauEntrada1 = 0, grauEntrada2 = 0;
-                        for(int j = i + 1; j < paresRetangulos.size(); j++)
-                        {
-                            if(par.getFirst() == paresRetangulos.get(j).getFirst())
-                                grauEntrada1++;
-
-                            if(par.getSecond() == paresRetangulos.get(j).getSecond())
-                                grauEntrada2++;             
-                        }                        
-                        
-                        // Definir como pares qualificados aqueles que se interceptam com o MBR de maior grau
-                        if(grauEntrada1 >= grauEntrada2)
-                        {
-                            for(int j = i + 1; j < paresRetangulos.size(); j++)
-                            {
-                                if(!visitado[j] && par.getFirst() == paresRetangulos.get(j).getFirst())
-                                {
-                                    intersecao = paresRetangulos.get(j).getThird().getFirst();
-                                    qualifies.add(0, new Triple<>(indexRtree1.readSubPageId(par.getFirst().getSecond()), indexRtree2.readSubPageId(paresRetangulos.get(j).getSecond().getSecond()), intersecao));
-                                    visitado[j] = true;     
-                                }
-                            }
-                        }
-                        else
-                        {
-                            for(int k = i + 1; k < paresRetangulos.size(); k++)
-                            {
-                                if(!visitado[k] && par.getSecond() == paresRetangulos.get(k).getSecond())
-                                {
-                                    intersecao = paresRetangulos.get(k).getThird().getFirst();
-                                    qualifies.add(0, new Triple<>(indexRtree1.readSubPageId(paresRetangulos.get(k).getFirst().getSecond()), indexRtree2.readSubPageId(par.getSecond().getSecond()), intersecao));
-                                    visitado[k] = true;               
-                                }    
-                            }
-                        }
-                    }
-                    else // nodeRtree1 e nodeRtree2 são nós folhas.
-                    {
-                        RTreeLeaf<R> leafRtree1 = new RTreeLeaf<>(nodeRtree1, this.rtree1.getObjectClass());
-                        RTreeLeaf<R> leafRtree2 = new RTreeLeaf<>(nodeRtree2, this.rtree2.getObjectClass());
-                        Uuid uuidRtree1 = leafRtree1.readEntityUuid(paresRetangulos.get(i).getFirst().getSecond());
-                        Uuid uuidRtree2 = leafRtree2.readEntityUuid(paresRetangulos.get(i).getSecond().getSecond());
-                        result.add(new Pair<>(uuidRtree1, uuidRtree2));
-                    }
-                }
-            }
+            // Árvores de alturas diferentes: a folha é fixada e somente o outro lado desce
+            joinUtilities.fixarFolha(nodeRtree1.isIndice(), nodeRtree2.isIndice(), entradasRtree1, entradasRtree2, paresRetangulos);
+            
+            fixar(pageId1, pageId2, nodeRtree1, nodeRtree2, entradasRtree1, entradasRtree2, paresRetangulos, qualifies, sink);
         }
         while(!qualifies.isEmpty());
         
@@ -494,7 +595,6 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
         System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
         System.out.println("Total Comparisons: " + totalComparisons);
         System.out.println("Total Disk Access: " + totalDiskAccess);
-        return result;
     }
 
     /*
@@ -507,18 +607,45 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
      */
     public ArrayList<Pair<Uuid, Uuid>> joinZorder()
     {
-        // Buffer LRU utilizado para diminuir a leitura de páginas de disco.
-        LRUCache bufferLRU = new LRUCache(sizeOfBuffer);
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinZorder((uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+    
+    /*
+     * Versão de joinZorder() que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinZorder(JoinResultSink sink)
+    {
+        joinZorder(sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de joinZorder(JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void joinZorder(JoinResultSink sink, BufferPolicy buffer)
+    {
         
         // Pilha contendo pares de ID das páginas de discos qualificadas a serem examinadas.
         // A pilha é necessária devido a implementação iterativa do algoritmo.
         // É ela que define a ordem dos pares de nós examinados.
-        Stack<Triple<Long, Long, R>> qualifies = new Stack<>();
+        Stack<Triple<Long, Long, double[]>> qualifies = new Stack<>();
         qualifies.push(new Triple<>(this.descriptor1.readRootPageId(), this.descriptor2.readRootPageId(), null));
 
         long pageId1, pageId2;
-        R intersecao;    
-        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        double[] intersecao;
+        
+        // Vetores reutilizados a cada par de nós examinado
+        MbrArray entradasRtree1 = new MbrArray();
+        MbrArray entradasRtree2 = new MbrArray();
+        PairBuffer paresRetangulos = new PairBuffer();
         
         // Métricas
         long totalDiskAccess = 0;
@@ -527,114 +654,599 @@ public class JoinQueries<R extends Rectangle<R> & Entity<? super R>>
         
         do
         {
-            Triple<Long, Long, R> trio = qualifies.pop();
+            Triple<Long, Long, double[]> trio = qualifies.pop();
             pageId1 = trio.getFirst();
             pageId2 = trio.getSecond();
             intersecao = trio.getThird();
             
-            // Leitura de páginas de disco e utilização do buffer LRU
-            Node nodeRtree1 = bufferLRU.get(pageId1 + "-1");
+            // Leitura de páginas de disco e utilização do buffer
+            DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
             if(nodeRtree1 == null)
             {
-                nodeRtree1 = se1.load(pageId1);
-                bufferLRU.put(pageId1 + "-1", nodeRtree1);
+                nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                se1.unpin(pageId1);
+                buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
                 totalDiskAccess++;
             }
             
-            Node nodeRtree2 = bufferLRU.get(pageId2 + "-2");
+            DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
             if(nodeRtree2 == null)
             {
-                nodeRtree2 = se2.load(pageId2);
-                bufferLRU.put(pageId2 + "-2", nodeRtree2);
+                nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                se2.unpin(pageId2);
+                buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
                 totalDiskAccess++;
             }
             
-            RTreeNode<R> gerericNodeRtree1 = new RTreeNode<>(nodeRtree1, this.rtree1.getObjectClass());
-            RTreeNode<R> gerericNodeRtree2 = new RTreeNode<>(nodeRtree2, this.rtree2.getObjectClass());
             
-            // Restringindo espaço de busca
-            ArrayList<Pair<R, Integer>> entradasRtree1 = joinUtilities.restringirEspacoBusca(intersecao, gerericNodeRtree1);
-            ArrayList<Pair<R, Integer>> entradasRtree2 = joinUtilities.restringirEspacoBusca(intersecao, gerericNodeRtree2);
+            // Restringindo espaço de busca e ordenando pelo "x lower"
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree1, entradasRtree1);
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree2, entradasRtree2);
             
             // Aplicando o algoritmo plane-sweep
             joinUtilities.setComparisons(0);
-            ArrayList<Triple<Pair<R, Integer>, Pair<R, Integer>, Pair<R, Long>>> paresRetangulos = joinUtilities.planeSweep(entradasRtree1, entradasRtree2, true);
+            joinUtilities.planeSweep(entradasRtree1, entradasRtree2, paresRetangulos, true);
             totalComparisons += joinUtilities.getComparisons();
             
+            // Árvores de alturas diferentes: a folha é fixada e somente o outro lado desce
+            joinUtilities.fixarFolha(nodeRtree1.isIndice(), nodeRtree2.isIndice(), entradasRtree1, entradasRtree2, paresRetangulos);
+            
             // Aplicando a ordenação Z
-            paresRetangulos.sort((o1, o2) -> Long.compare(o1.getThird().getSecond(), o2.getThird().getSecond()));
+            paresRetangulos.sortByKey();
             
-            int totalPares = paresRetangulos.size();
-            boolean[] visitado = new boolean[totalPares];
+            fixar(pageId1, pageId2, nodeRtree1, nodeRtree2, entradasRtree1, entradasRtree2, paresRetangulos, qualifies, sink);
+        }
+        while(!qualifies.isEmpty());
+        
+        // Impressão das métricas
+        System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
+        System.out.println("Total Comparisons: " + totalComparisons);
+        System.out.println("Total Disk Access: " + totalDiskAccess);
+    }
+    
+    /*
+     * Variante de joinZorder() que ordena os pares de MBRs pelo valor de Hilbert do centro 
+     * de sua interseção, no lugar do valor z-order. A curva de Hilbert preserva melhor a 
+     * localidade espacial, de forma que pares consecutivos tendem a compartilhar páginas 
+     * já presentes no buffer. A fixação é aplicada na ordem resultante, como em joinZorder().
+     * 
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinHilbert()
+    {
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinHilbert((uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+    
+    /*
+     * Versão de joinHilbert() que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinHilbert(JoinResultSink sink)
+    {
+        joinHilbert(sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de joinHilbert(JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void joinHilbert(JoinResultSink sink, BufferPolicy buffer)
+    {
+        // Pilha contendo pares de ID das páginas de discos qualificadas a serem examinadas.
+        Stack<Triple<Long, Long, double[]>> qualifies = new Stack<>();
+        qualifies.push(new Triple<>(this.descriptor1.readRootPageId(), this.descriptor2.readRootPageId(), null));
+
+        long pageId1, pageId2;
+        double[] intersecao;
+        
+        // Vetores reutilizados a cada par de nós examinado
+        MbrArray entradasRtree1 = new MbrArray();
+        MbrArray entradasRtree2 = new MbrArray();
+        PairBuffer paresRetangulos = new PairBuffer();
+        
+        // Métricas
+        long totalDiskAccess = 0;
+        long totalComparisons = 0;
+        long timeStart = System.nanoTime();
+        
+        // A curva é quantizada sobre o espaço coberto pelas raízes das duas árvores
+        HilbertCurve curva = null;
+        
+        do
+        {
+            Triple<Long, Long, double[]> trio = qualifies.pop();
+            pageId1 = trio.getFirst();
+            pageId2 = trio.getSecond();
+            intersecao = trio.getThird();
             
-            for(int i = 0; i < totalPares; i++)
+            // Leitura de páginas de disco e utilização do buffer
+            DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
+            if(nodeRtree1 == null)
+            {
+                nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                se1.unpin(pageId1);
+                buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
+                totalDiskAccess++;
+            }
+            
+            DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
+            if(nodeRtree2 == null)
+            {
+                nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                se2.unpin(pageId2);
+                buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
+                totalDiskAccess++;
+            }
+            
+            if(curva == null)
+                curva = joinUtilities.curvaHilbert(new RTreeNode<>(nodeRtree1, this.rtree1.getObjectClass()), new RTreeNode<>(nodeRtree2, this.rtree2.getObjectClass()));
+            
+            // Restringindo espaço de busca e ordenando pelo "x lower"
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree1, entradasRtree1);
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree2, entradasRtree2);
+            
+            // Aplicando o algoritmo plane-sweep
+            joinUtilities.setComparisons(0);
+            joinUtilities.planeSweep(entradasRtree1, entradasRtree2, paresRetangulos, false);
+            totalComparisons += joinUtilities.getComparisons();
+            
+            // Árvores de alturas diferentes: a folha é fixada e somente o outro lado desce
+            joinUtilities.fixarFolha(nodeRtree1.isIndice(), nodeRtree2.isIndice(), entradasRtree1, entradasRtree2, paresRetangulos);
+            
+            // Aplicando a ordenação de Hilbert
+            joinUtilities.hilbert(entradasRtree1, entradasRtree2, paresRetangulos, curva);
+            paresRetangulos.sortByKey();
+            
+            fixar(pageId1, pageId2, nodeRtree1, nodeRtree2, entradasRtree1, entradasRtree2, paresRetangulos, qualifies, sink);
+        }
+        while(!qualifies.isEmpty());
+        
+        // Impressão das métricas
+        System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
+        System.out.println("Total Comparisons: " + totalComparisons);
+        System.out.println("Total Disk Access: " + totalDiskAccess);
+    }
+    
+    /*
+     * Junção por distância (epsilon-join): encontra todos os pares de objetos espaciais cuja 
+     * distância euclidiana mínima é no máximo epsilon. Reutiliza o percurso sincronizado com 
+     * plane-sweep e fixação de joinPlaneSweepFixacao(), expandindo por epsilon os MBRs da rtree1 
+     * antes do plane-sweep. Os pares candidatos são então filtrados pela distância real entre 
+     * os MBRs, o que nas folhas corresponde à distância entre os objetos. Com epsilon igual a 
+     * zero, o resultado é o mesmo da junção por interseção.
+     * 
+     * @param epsilon Distância máxima entre os objetos de cada par.
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) a no máximo epsilon de distância.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinDistancia(double epsilon)
+    {
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinDistancia(epsilon, (uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+    
+    /*
+     * Versão de joinDistancia(double) que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param epsilon Distância máxima entre os objetos de cada par.
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) a no máximo epsilon de distância.
+     */
+    public void joinDistancia(double epsilon, JoinResultSink sink)
+    {
+        joinDistancia(epsilon, sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de joinDistancia(double, JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * As janelas empilhadas são a interseção entre o MBR expandido da rtree1 e o MBR da rtree2. 
+     * Como os MBRs filhos da rtree1 também serão expandidos, eles são restringidos pela janela 
+     * expandida por epsilon; os MBRs filhos da rtree2 são restringidos pela própria janela.
+     * 
+     * @param epsilon Distância máxima entre os objetos de cada par.
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) a no máximo epsilon de distância.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void joinDistancia(double epsilon, JoinResultSink sink, BufferPolicy buffer)
+    {
+        if(!(epsilon >= 0))
+            throw new IllegalArgumentException("The distance should be non-negative.");
+        
+        // Pilha contendo pares de ID das páginas de discos qualificadas a serem examinadas.
+        Stack<Triple<Long, Long, double[]>> qualifies = new Stack<>();
+        qualifies.push(new Triple<>(this.descriptor1.readRootPageId(), this.descriptor2.readRootPageId(), null));
+        
+        long pageId1, pageId2;
+        double[] intersecao;
+        
+        // Vetores reutilizados a cada par de nós examinado
+        MbrArray entradasRtree1 = new MbrArray();
+        MbrArray entradasRtree2 = new MbrArray();
+        PairBuffer paresRetangulos = new PairBuffer();
+        PairBuffer paresProximos = new PairBuffer();
+        
+        // Métricas
+        long totalDiskAccess = 0;
+        long totalComparisons = 0;
+        long timeStart = System.nanoTime();
+        
+        do
+        {
+            Triple<Long, Long, double[]> trio = qualifies.pop();
+            pageId1 = trio.getFirst();
+            pageId2 = trio.getSecond();
+            intersecao = trio.getThird();
+            
+            // Leitura de páginas de disco e utilização do buffer
+            DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
+            if(nodeRtree1 == null)
+            {
+                nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                se1.unpin(pageId1);
+                buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
+                totalDiskAccess++;
+            }
+            
+            DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
+            if(nodeRtree2 == null)
+            {
+                nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                se2.unpin(pageId2);
+                buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
+                totalDiskAccess++;
+            }
+            
+            
+            // Restringindo o espaço de busca, ordenando pelo "x lower" e expandindo os MBRs da rtree1
+            joinUtilities.restringirEspacoBusca(MbrArray.expand(intersecao, epsilon), nodeRtree1, entradasRtree1);
+            joinUtilities.restringirEspacoBusca(intersecao, nodeRtree2, entradasRtree2);
+            entradasRtree1.expand(epsilon);
+            
+            // Aplicando o algoritmo plane-sweep e descartando os pares além da distância
+            joinUtilities.setComparisons(0);
+            joinUtilities.planeSweep(entradasRtree1, entradasRtree2, paresRetangulos, false);
+            joinUtilities.filtrarDistancia(entradasRtree1, entradasRtree2, paresRetangulos, epsilon, paresProximos);
+            totalComparisons += joinUtilities.getComparisons();
+            
+            // Árvores de alturas diferentes: a folha é fixada e somente o outro lado desce
+            joinUtilities.fixarFolha(nodeRtree1.isIndice(), nodeRtree2.isIndice(), entradasRtree1, entradasRtree2, paresProximos);
+            
+            fixar(pageId1, pageId2, nodeRtree1, nodeRtree2, entradasRtree1, entradasRtree2, paresProximos, qualifies, sink);
+        }
+        while(!qualifies.isEmpty());
+        
+        // Impressão das métricas
+        System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
+        System.out.println("Total Comparisons: " + totalComparisons);
+        System.out.println("Total Disk Access: " + totalDiskAccess);
+    }
+    
+    /*
+     * Auto-junção da rtree1: encontra todos os pares de objetos espaciais da mesma árvore que 
+     * se interceptam, entregando cada par não ordenado uma única vez e sem os pares de um 
+     * objeto com ele mesmo. Baseado em joinPlaneSweepFixacao(), mas percorrendo somente o 
+     * triângulo superior dos pares de nós: um nó é comparado com ele mesmo por um plane-sweep
+     * que só forma pares (i, j) com i < j (mais as entradas consigo mesmas nos nós índices), 
+     * e nós distintos são comparados normalmente. Os dois lados compartilham a mesma Session 
+     * e o mesmo buffer, e um par diagonal lê a sua página uma única vez.
+     * 
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) distintos que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> selfJoin()
+    {
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        selfJoin((uuid1, uuid2) -> result.add(new Pair<>(uuid1, uuid2)));
+        return result;
+    }
+    
+    /*
+     * Versão de selfJoin() que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) distintos que se interceptam.
+     */
+    public void selfJoin(JoinResultSink sink)
+    {
+        selfJoin(sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de selfJoin(JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) distintos que se interceptam.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void selfJoin(JoinResultSink sink, BufferPolicy buffer)
+    {
+        // Pilha contendo pares de ID das páginas de discos qualificadas a serem examinadas.
+        // Todo par empilhado tem os dois nós no mesmo nível da rtree1.
+        Stack<Triple<Long, Long, double[]>> qualifies = new Stack<>();
+        qualifies.push(new Triple<>(this.descriptor1.readRootPageId(), this.descriptor1.readRootPageId(), null));
+        
+        long pageId1, pageId2;
+        double[] intersecao;
+        
+        // Vetores reutilizados a cada par de nós examinado
+        MbrArray entradasRtree1 = new MbrArray();
+        MbrArray entradasRtree2 = new MbrArray();
+        PairBuffer paresRetangulos = new PairBuffer();
+        
+        // Métricas
+        long totalDiskAccess = 0;
+        long totalComparisons = 0;
+        long timeStart = System.nanoTime();
+        
+        do
+        {
+            Triple<Long, Long, double[]> trio = qualifies.pop();
+            pageId1 = trio.getFirst();
+            pageId2 = trio.getSecond();
+            intersecao = trio.getThird();
+            
+            // Leitura de páginas de disco e utilização do buffer, compartilhado pelos dois lados
+            DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
+            if(nodeRtree1 == null)
             {
-                if(!visitado[i])
+                nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                se1.unpin(pageId1);
+                buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
+                totalDiskAccess++;
+            }
+            
+            joinUtilities.setComparisons(0);
+            if(pageId1 == pageId2) // Par diagonal: o nó é comparado com ele mesmo
+            {
+                joinUtilities.restringirEspacoBusca(intersecao, nodeRtree1, entradasRtree1);
+                joinUtilities.planeSweep(entradasRtree1, paresRetangulos, nodeRtree1.isIndice());
+                totalComparisons += joinUtilities.getComparisons();
+                
+                fixar(pageId1, pageId1, nodeRtree1, nodeRtree1, entradasRtree1, entradasRtree1, paresRetangulos, qualifies, sink);
+            }
+            else
+            {
+                DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId2)), this.rtree2.getObjectClass());
+                if(nodeRtree2 == null)
                 {
-                    Triple<Pair<R, Integer>, Pair<R, Integer>, Pair<R, Long>> par = paresRetangulos.get(i);
-                    if (RTreeIndex.matchNodeType(nodeRtree2)) // nodeRtree1 e nodeRtree2 são nós índices.
+                    nodeRtree2 = joinUtilities.decodificar(se1.load(pageId2), this.rtree2.getObjectClass());
+                    se1.unpin(pageId2);
+                    buffer.put(BufferPolicy.key(1, pageId2), nodeRtree2);
+                    totalDiskAccess++;
+                }
+                
+                joinUtilities.restringirEspacoBusca(intersecao, nodeRtree1, entradasRtree1);
+                joinUtilities.restringirEspacoBusca(intersecao, nodeRtree2, entradasRtree2);
+                joinUtilities.planeSweep(entradasRtree1, entradasRtree2, paresRetangulos, false);
+                totalComparisons += joinUtilities.getComparisons();
+                
+                fixar(pageId1, pageId2, nodeRtree1, nodeRtree2, entradasRtree1, entradasRtree2, paresRetangulos, qualifies, sink);
+            }
+        }
+        while(!qualifies.isEmpty());
+        
+        // Impressão das métricas
+        System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
+        System.out.println("Total Comparisons: " + totalComparisons);
+        System.out.println("Total Disk Access: " + totalDiskAccess);
+    }
+    
+    /*
+     * Junção em largura (Breadth-First R-tree Join, BFRJ) de Huang, Jing e Rundensteiner.
+     * Diferente dos demais métodos, que decidem a ordem dos pares de nós localmente com uma 
+     * pilha, as duas árvores são percorridas nível a nível: todos os pares de páginas de um 
+     * nível são materializados em um índice intermediário de junção (JoinIndex), que é então
+     * ordenado globalmente antes de ser examinado. Assim, os pares que compartilham páginas 
+     * são examinados em sequência e cada página tende a ser lida uma única vez, sem depender 
+     * da heurística de grau da fixação.
+     * 
+     * @param ordem Ordem global dos pares de páginas de cada nível.
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinBfrj(OrdemPares ordem)
+    {
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinBfrj(ordem, (uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+    
+    /*
+     * Versão de joinBfrj(OrdemPares) que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     * 
+     * @param ordem Ordem global dos pares de páginas de cada nível.
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinBfrj(OrdemPares ordem, JoinResultSink sink)
+    {
+        joinBfrj(ordem, sink, new LRUCache(sizeOfBuffer));
+    }
+    
+    /*
+     * Versão de joinBfrj(OrdemPares, JoinResultSink) que utiliza o buffer informado, permitindo 
+     * escolher a política de substituição de páginas a cada chamada.
+     * 
+     * @param ordem Ordem global dos pares de páginas de cada nível.
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void joinBfrj(OrdemPares ordem, JoinResultSink sink, BufferPolicy buffer)
+    {
+        // Índices intermediários de junção do nível examinado e do próximo nível
+        JoinIndex nivel = new JoinIndex();
+        JoinIndex proximoNivel = new JoinIndex();
+        nivel.add(this.descriptor1.readRootPageId(), this.descriptor2.readRootPageId(), null, 0L);
+        
+        // Vetores reutilizados a cada par de nós examinado
+        MbrArray entradasRtree1 = new MbrArray();
+        MbrArray entradasRtree2 = new MbrArray();
+        PairBuffer paresRetangulos = new PairBuffer();
+        
+        // Métricas
+        long totalDiskAccess = 0;
+        long totalComparisons = 0;
+        long timeStart = System.nanoTime();
+        
+        HilbertCurve curva = null;
+        
+        while(nivel.size() > 0)
+        {
+            proximoNivel.clear();
+            for(int p = 0; p < nivel.size(); p++)
+            {
+                long pageId1 = nivel.getPageId1(p);
+                long pageId2 = nivel.getPageId2(p);
+                
+                // Leitura de páginas de disco e utilização do buffer
+                DecodedNode nodeRtree1 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(1, pageId1)), this.rtree1.getObjectClass());
+                if(nodeRtree1 == null)
+                {
+                    nodeRtree1 = joinUtilities.decodificar(se1.load(pageId1), this.rtree1.getObjectClass());
+                    se1.unpin(pageId1);
+                    buffer.put(BufferPolicy.key(1, pageId1), nodeRtree1);
+                    totalDiskAccess++;
+                }
+                
+                DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
+                if(nodeRtree2 == null)
+                {
+                    nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                    se2.unpin(pageId2);
+                    buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
+                    totalDiskAccess++;
+                }
+                
+                if(curva == null && ordem == OrdemPares.HILBERT)
+                    curva = joinUtilities.curvaHilbert(new RTreeNode<>(nodeRtree1, this.rtree1.getObjectClass()), new RTreeNode<>(nodeRtree2, this.rtree2.getObjectClass()));
+                
+                // Restringindo o espaço de busca e ordenando pelo "x lower"
+                joinUtilities.restringirEspacoBusca(nivel.getJanela(p), nodeRtree1, entradasRtree1);
+                joinUtilities.restringirEspacoBusca(nivel.getJanela(p), nodeRtree2, entradasRtree2);
+                
+                // Aplicando o algoritmo plane-sweep
+                joinUtilities.setComparisons(0);
+                joinUtilities.planeSweep(entradasRtree1, entradasRtree2, paresRetangulos, ordem == OrdemPares.ZORDER);
+                totalComparisons += joinUtilities.getComparisons();
+                
+                // Árvores de alturas diferentes: a folha é fixada e somente o outro lado desce
+                boolean indiceRtree1 = nodeRtree1.isIndice();
+                boolean indiceRtree2 = nodeRtree2.isIndice();
+                joinUtilities.fixarFolha(indiceRtree1, indiceRtree2, entradasRtree1, entradasRtree2, paresRetangulos);
+                
+                if(indiceRtree1 || indiceRtree2) // Ao menos um dos nós é índice: os pares vão para o próximo nível.
+                {
+                    if(ordem == OrdemPares.HILBERT)
+                        joinUtilities.hilbert(entradasRtree1, entradasRtree2, paresRetangulos, curva);
+                    
+                    for(int i = 0; i < paresRetangulos.size(); i++)
                     {
-                        RTreeIndex<R> indexRtree1 = new RTreeIndex<>(nodeRtree1, this.rtree1.getObjectClass());
-                        RTreeIndex<R> indexRtree2 = new RTreeIndex<>(nodeRtree2, this.rtree2.getObjectClass());
-
-                        intersecao = par.getThird().getFirst();
-                        qualifies.add(0, new Triple<Long, Long, R>(indexRtree1.readSubPageId(par.getFirst().getSecond()), indexRtree2.readSubPageId(par.getSecond().getSecond()), intersecao));
-                        visitado[i] = true;
-                        
-                        // Calculando o graus dos dois MBRs
-                        int grauEntrada1 = 0, grauEntrada2 = 0;
-                        for(int j = i + 1; j < paresRetangulos.size(); j++)
-                        {
-                            if(par.getFirst() == paresRetangulos.get(j).getFirst())
-                                grauEntrada1++;
-
-                            if(par.getSecond() == paresRetangulos.get(j).getSecond())
-                                grauEntrada2++;             
-                        }
-                        
-                        // Definir como pares qualificados aqueles que se interceptam com o MBR de maior grau
-                        if(grauEntrada1 >= grauEntrada2)
-                        {
-                            for(int j = i + 1; j < paresRetangulos.size(); j++)
-                            {
-                                if(!visitado[j] && par.getFirst() == paresRetangulos.get(j).getFirst())
-                                {
-                                    intersecao = paresRetangulos.get(j).getThird().getFirst();
-                                    qualifies.add(0, new Triple<>(indexRtree1.readSubPageId(par.getFirst().getSecond()), indexRtree2.readSubPageId(paresRetangulos.get(j).getSecond().getSecond()), intersecao));
-                                    visitado[j] = true;               
-                                }
-                            }
-                        }
-                        else
-                        {
-                            for(int k = i + 1; k < paresRetangulos.size(); k++)
-                            {
-                                if(!visitado[k] && par.getSecond() == paresRetangulos.get(k).getSecond())
-                                {        
-                                    intersecao = paresRetangulos.get(k).getThird().getFirst();
-                                    qualifies.add(0, new Triple<>(indexRtree1.readSubPageId(paresRetangulos.get(k).getFirst().getSecond()), indexRtree2.readSubPageId(par.getSecond().getSecond()), intersecao));
-                                    visitado[k] = true;               
-                                }    
-                            }
-                        }
+                        int e1 = paresRetangulos.getFirst(i), e2 = paresRetangulos.getSecond(i);
+                        proximoNivel.add(nodeRtree1.paginaFilha(entradasRtree1.getEntry(e1)), nodeRtree2.paginaFilha(entradasRtree2.getEntry(e2)), entradasRtree1.intersection(e1, entradasRtree2, e2), paresRetangulos.getKey(i));
                     }
-                    else // nodeRtree1 e nodeRtree2 são nós folhas.
+                }
+                else // nodeRtree1 e nodeRtree2 são nós folhas.
+                {
+                    for(int i = 0; i < paresRetangulos.size(); i++)
                     {
-                        RTreeLeaf<R> leafRtree1 = new RTreeLeaf<>(nodeRtree1, this.rtree1.getObjectClass());
-                        RTreeLeaf<R> leafRtree2 = new RTreeLeaf<>(nodeRtree2, this.rtree2.getObjectClass());
-                        Uuid uuidRtree1 = leafRtree1.readEntityUuid(paresRetangulos.get(i).getFirst().getSecond());
-                        Uuid uuidRtree2 = leafRtree2.readEntityUuid(paresRetangulos.get(i).getSecond().getSecond());
-                        result.add(new Pair<>(uuidRtree1, uuidRtree2));
+                        Uuid uuidRtree1 = nodeRtree1.readEntityUuid(entradasRtree1.getEntry(paresRetangulos.getFirst(i)));
+                        Uuid uuidRtree2 = nodeRtree2.readEntityUuid(entradasRtree2.getEntry(paresRetangulos.getSecond(i)));
+                        sink.accept(uuidRtree1, uuidRtree2);
                     }
                 }
             }
+            
+            // Ordenação global dos pares de páginas do próximo nível
+            if(ordem == OrdemPares.PAGINAS)
+                proximoNivel.sortByPageId();
+            else
+                proximoNivel.sortByKey();
+            
+            JoinIndex aux = nivel;
+            nivel = proximoNivel;
+            proximoNivel = aux;
         }
-        while(!qualifies.isEmpty());
         
         // Impressão das métricas
         System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
         System.out.println("Total Comparisons: " + totalComparisons);
         System.out.println("Total Disk Access: " + totalDiskAccess);
-        return result;
+    }
+    
+    /*
+     * Método que aplica a técnica de fixação aos pares de MBRs encontrados pelo plane-sweep,
+     * na ordem em que estão no buffer. Para cada par ainda não examinado, o MBR de maior grau 
+     * é fixado e todos os pares que o contêm são inseridos em sequência na pilha. Nas folhas,
+     * os pares de objetos são entregues ao consumidor.
+     * 
+     * @param pageId1 ID da página do nó da rtree1.
+     * @param pageId2 ID da página do nó da rtree2.
+     * @param nodeRtree1 Nó da rtree1.
+     * @param nodeRtree2 Nó da rtree2.
+     * @param entradasRtree1 MBRs qualificados do nó da rtree1.
+     * @param entradasRtree2 MBRs qualificados do nó da rtree2.
+     * @param paresRetangulos Pares de MBRs que se interceptam.
+     * @param qualifies Pilha de pares de páginas a serem examinados.
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    private void fixar(long pageId1, long pageId2, DecodedNode nodeRtree1, DecodedNode nodeRtree2, MbrArray entradasRtree1, MbrArray entradasRtree2, PairBuffer paresRetangulos, Stack<Triple<Long, Long, double[]>> qualifies, JoinResultSink sink)
+    {
+        int totalPares = paresRetangulos.size();
+        
+        if (!nodeRtree1.isIndice() && !nodeRtree2.isIndice()) // nodeRtree1 e nodeRtree2 são nós folhas.
+        {
+            for(int i = 0; i < totalPares; i++)
+            {
+                Uuid uuidRtree1 = nodeRtree1.readEntityUuid(entradasRtree1.getEntry(paresRetangulos.getFirst(i)));
+                Uuid uuidRtree2 = nodeRtree2.readEntityUuid(entradasRtree2.getEntry(paresRetangulos.getSecond(i)));
+                sink.accept(uuidRtree1, uuidRtree2);
+            }
+            return;
+        }
+        
+        // Ao menos um dos nós é índice; a folha fixada é representada pela posição -1 (ver JoinQueryUtilities.fixarFolha).
+        
+        // Array para checar se um determinado par de retângulos já foi examinado ou não.
+        boolean[] visitado = new boolean[totalPares];
+        
+        for(int i = 0; i < totalPares; i++)
+        {
+            if(!visitado[i])
+            {
+                int e1 = paresRetangulos.getFirst(i), e2 = paresRetangulos.getSecond(i);
+                qualifies.add(0, new Triple<>(nodeRtree1.paginaFilha(entradasRtree1.getEntry(e1)), nodeRtree2.paginaFilha(entradasRtree2.getEntry(e2)), entradasRtree1.intersection(e1, entradasRtree2, e2)));
+                visitado[i] = true;
+                
+                // Calculando o graus dos dois MBRs
+                int grauEntrada1 = 0, grauEntrada2 = 0;
+                for(int j = i + 1; j < totalPares; j++)
+                {
+                    if(e1 == paresRetangulos.getFirst(j))
+                        grauEntrada1++;
+                    
+                    if(e2 == paresRetangulos.getSecond(j))
+                        grauEntrada2++;             
+                }
+                
+                // Definir como pares qualificados aqueles que se interceptam com o MBR de maior grau
+                for(int j = i + 1; j < totalPares; j++)
+                {
+                    boolean fixado = (grauEntrada1 >= grauEntrada2) ? e1 == paresRetangulos.getFirst(j) : e2 == paresRetangulos.getSecond(j);
+                    if(!visitado[j] && fixado)
+                    {
+                        int f1 = paresRetangulos.getFirst(j), f2 = paresRetangulos.getSecond(j);
+                        qualifies.add(0, new Triple<>(nodeRtree1.paginaFilha(entradasRtree1.getEntry(f1)), nodeRtree2.paginaFilha(entradasRtree2.getEntry(f2)), entradasRtree1.intersection(f1, entradasRtree2, f2)));
+                        visitado[j] = true;
+                    }
+                }
+            }
+        }
     }
 }
\ No newline at end of file
@@ -1,11 +1,17 @@
 package org.obinject.joinqueries;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
+import org.obinject.block.Node;
+import org.obinject.block.RTreeIndex;
+import org.obinject.block.RTreeLeaf;
 import org.obinject.block.RTreeNode;
 import org.obinject.meta.Entity;
 import org.obinject.meta.Rectangle;
+import org.obinject.meta.Uuid;
 import org.obinject.storage.EuclideanGeometry;
+import org.obinject.storage.HilbertCurve;
 
 /**
  * Classe que implementa métodos utilizados pelos algoritmos de junção.
@@ -20,6 +26,8 @@ public class JoinQueryUtilities<R extends Rectangle<R> & Entity<? super R>>
 {
     private EuclideanGeometry<R> geometry;
     private long comparisons; // Variável utilizada para contar o número de interseções calculadas
+    private R cursor; // Chave reutilizada para ler as entradas dos nós, sem reflexão
+    private double[] janelaEntrada = new double[0]; // Janela reutilizada com o MBR de cada entrada
     
     /*
      * Construtor que recebe duas Árvores R de mesma altura que serão utilizadas nas operações de junção.
@@ -54,6 +62,397 @@ public class JoinQueryUtilities<R extends Rectangle<R> & Entity<? super R>>
         return entradasRtree;
     }
     
+    /*
+     * Versão de restringirEspacoBusca que armazena os MBRs qualificados em um MbrArray,
+     * já ordenados pelo seu "x lower", prontos para o plane-sweep.
+     * 
+     * @param janela Janela de interseção (limites inferiores seguidos dos superiores) ou null.
+     * @param nodeRtree Nó de uma árvore R.
+     * @param saida Vetor de MBRs reutilizável que recebe os MBRs qualificados e suas posições no nó.
+     */
+    public void restringirEspacoBusca(double[] janela, RTreeNode<R> nodeRtree, MbrArray saida)
+    {
+        lerEntradas(janela, nodeRtree, saida);
+        saida.sortByLowerX();
+    }
+    
+    /*
+     * Versão de restringirEspacoBusca para nós já decodificados: os MBRs do nó já estão 
+     * ordenados pelo "x lower", então os qualificados são copiados na mesma ordem, sem
+     * ler a página nem ordenar de novo.
+     * 
+     * @param janela Janela de interseção (limites inferiores seguidos dos superiores) ou null.
+     * @param node Nó decodificado (ver decodificar).
+     * @param saida Vetor de MBRs reutilizável que recebe os MBRs qualificados e suas posições no nó.
+     */
+    public void restringirEspacoBusca(double[] janela, DecodedNode node, MbrArray saida)
+    {
+        MbrArray mbrs = node.getMbrs();
+        saida.clear(mbrs.numberOfDimensions());
+        for(int i = 0; i < mbrs.size(); i++)
+        {
+            if(mbrs.overlaps(i, janela))
+                saida.add(mbrs.getEntry(i), mbrs, i);
+        }
+    }
+    
+    /*
+     * Decodifica um nó lido do disco, para que ele seja armazenado no buffer da junção
+     * (ver DecodedNode). Um nó que já está decodificado é devolvido sem alterações.
+     * 
+     * @param node Nó lido do disco ou do buffer, ou null.
+     * @param classe Classe das chaves da árvore.
+     * @return O nó decodificado, ou null se node é null.
+     */
+    public DecodedNode decodificar(Node node, Class<R> classe)
+    {
+        if(node == null || node instanceof DecodedNode)
+            return (DecodedNode) node;
+        
+        RTreeNode<R> nodeRtree = new RTreeNode<>(node, classe);
+        MbrArray mbrs = new MbrArray();
+        restringirEspacoBusca(null, nodeRtree, mbrs);
+        
+        int totalEntries = nodeRtree.readNumberOfKeys();
+        if(RTreeIndex.matchNodeType(node))
+        {
+            RTreeIndex<R> index = new RTreeIndex<>(node, classe);
+            long[] filhos = new long[totalEntries];
+            for(int i = 0; i < totalEntries; i++)
+                filhos[i] = index.readSubPageId(i);
+            return new DecodedNode(node, true, mbrs, filhos, null);
+        }
+        
+        RTreeLeaf<R> leaf = new RTreeLeaf<>(node, classe);
+        long[] uuids = new long[2 * totalEntries];
+        for(int i = 0; i < totalEntries; i++)
+        {
+            Uuid uuid = leaf.readEntityUuid(i);
+            uuids[2 * i] = uuid.getMostSignificantBits();
+            uuids[2 * i + 1] = uuid.getLeastSignificantBits();
+        }
+        return new DecodedNode(node, false, mbrs, null, uuids);
+    }
+    
+    /*
+     * Lê as coordenadas das entradas diretamente da página do nó, por meio da chave cursor, 
+     * sem instanciar uma chave por entrada.
+     */
+    private void lerEntradas(double[] janela, RTreeNode<R> nodeRtree, MbrArray saida)
+    {
+        int totalEntriesRtree = nodeRtree.readNumberOfKeys();
+        saida.clear(saida.numberOfDimensions());
+        if(totalEntriesRtree == 0)
+            return;
+        
+        if(this.cursor == null)
+            this.cursor = nodeRtree.buildKey(0);
+        int dims = this.cursor.numberOfDimensions();
+        saida.clear(dims);
+        if(this.janelaEntrada.length != 2 * dims)
+            this.janelaEntrada = new double[2 * dims];
+        
+        for(int i = 0; i < totalEntriesRtree; i++)
+        {
+            for(int d = 0; d < dims; d++)
+            {
+                this.janelaEntrada[d] = nodeRtree.readOrigin(i, d, this.cursor);
+                this.janelaEntrada[dims + d] = this.janelaEntrada[d] + nodeRtree.readExtension(i, d, this.cursor);
+            }
+            saida.add(i, this.janelaEntrada);
+            if(!saida.overlaps(saida.size() - 1, janela))
+                saida.removeLast();
+        }
+    }
+    
+    /*
+     * Prepara os pares de um par de nós de níveis diferentes, o que ocorre quando as árvores
+     * têm alturas diferentes e uma delas já chegou às folhas. A folha é fixada e somente o 
+     * nó índice desce: os pares que compartilham uma entrada do nó índice são reduzidos a um
+     * único par, formado por essa entrada e o MBR que envolve as entradas da folha que a 
+     * interceptam. Esse MBR é adicionado ao vetor da folha com posição -1 (o próprio nó), de
+     * forma que a janela do próximo par é a interseção entre os dois. Cada par mantém a 
+     * chave e a ordem do primeiro par da sua entrada. Se os dois nós são do mesmo tipo, nada é feito.
+     * 
+     * @param indiceRtree1 Indica se o nó da rtree1 é um nó índice.
+     * @param indiceRtree2 Indica se o nó da rtree2 é um nó índice.
+     * @param mbrsRtree1 MBRs qualificados do nó da rtree1.
+     * @param mbrsRtree2 MBRs qualificados do nó da rtree2.
+     * @param pares Pares encontrados pelo plane-sweep, reescritos no próprio buffer.
+     */
+    public void fixarFolha(boolean indiceRtree1, boolean indiceRtree2, MbrArray mbrsRtree1, MbrArray mbrsRtree2, PairBuffer pares)
+    {
+        if(indiceRtree1 == indiceRtree2)
+            return;
+        
+        MbrArray folha = indiceRtree1 ? mbrsRtree2 : mbrsRtree1;
+        int[] envoltorio = new int[(indiceRtree1 ? mbrsRtree1 : mbrsRtree2).size()];
+        Arrays.fill(envoltorio, -1);
+        
+        int totalPares = 0;
+        for(int p = 0; p < pares.size(); p++)
+        {
+            int f = indiceRtree1 ? pares.getSecond(p) : pares.getFirst(p);
+            int e = indiceRtree1 ? pares.getFirst(p) : pares.getSecond(p);
+            if(envoltorio[e] == -1)
+            {
+                envoltorio[e] = folha.addCopy(f);
+                if(indiceRtree1)
+                    pares.set(totalPares++, e, envoltorio[e], pares.getKey(p));
+                else
+                    pares.set(totalPares++, envoltorio[e], e, pares.getKey(p));
+            }
+            else
+                folha.union(envoltorio[e], f);
+        }
+        pares.truncate(totalPares);
+    }
+    
+    /*
+     * Versão do plane-sweep que opera sobre vetores primitivos. Os MBRs de entrada devem
+     * estar ordenados pelo "x lower" (ver restringirEspacoBusca). Nenhum objeto é alocado 
+     * por par encontrado: os pares são escritos no buffer de saída, na mesma ordem da
+     * versão baseada em listas. Baseado no algoritmo "SortedIntersectionTest" de Brinkhoff.
+     * 
+     * @param mbrsRtree1 MBRs qualificados do nó da rtree1.
+     * @param mbrsRtree2 MBRs qualificados do nó da rtree2.
+     * @param saida Buffer reutilizável que recebe os pares (posição em mbrsRtree1, posição em mbrsRtree2).
+     * @param zorder Valor booleano que se verdadeiro, o método calcula o valor z-order de cada
+     *               interseção e o armazena como chave do par.
+     */
+    public void planeSweep(MbrArray mbrsRtree1, MbrArray mbrsRtree2, PairBuffer saida, boolean zorder)
+    {
+        int totalEntries1 = mbrsRtree1.size();
+        int totalEntries2 = mbrsRtree2.size();
+        int i = 0;
+        int j = 0;
+        
+        saida.clear();
+        while(i < totalEntries1 && j < totalEntries2)
+        {
+            if(mbrsRtree1.getLower(0, i) <= mbrsRtree2.getLower(0, j))
+            {
+                loopInterno(mbrsRtree1, i, mbrsRtree2, j, saida, true, zorder);
+                i++;
+            }
+            else
+            {
+                loopInterno(mbrsRtree2, j, mbrsRtree1, i, saida, false, zorder);
+                j++;
+            }
+        }
+    }
+    
+    /*
+     * Versão do plane-sweep para a auto-junção, que compara os MBRs de um mesmo nó entre si. 
+     * Os MBRs devem estar ordenados pelo "x lower"; cada MBR só é comparado com os que o 
+     * sucedem, de forma que cada par não ordenado é encontrado uma única vez, como (i, j) 
+     * com i < j, e nenhum MBR é comparado com ele mesmo.
+     * 
+     * @param mbrs MBRs qualificados do nó.
+     * @param saida Buffer reutilizável que recebe os pares (posição em mbrs, posição em mbrs).
+     * @param diagonal Indica se cada MBR também forma um par com ele mesmo, o que é necessário 
+     *                 nos nós índices, onde objetos de uma mesma subárvore podem se interceptar.
+     */
+    public void planeSweep(MbrArray mbrs, PairBuffer saida, boolean diagonal)
+    {
+        int totalEntries = mbrs.size();
+        
+        saida.clear();
+        for(int i = 0; i < totalEntries; i++)
+        {
+            if(diagonal)
+                saida.add(i, i, 0L);
+            
+            double xu = mbrs.getUpper(0, i);
+            for(int k = i + 1; k < totalEntries && mbrs.getLower(0, k) <= xu; k++)
+            {
+                this.comparisons++;
+                if(mbrs.overlaps(i, mbrs, k))
+                    saida.add(i, k, 0L);
+            }
+        }
+    }
+    
+    /*
+     * Método auxiliar do plane-sweep sobre vetores primitivos. Equivalente ao "InternatLoop" 
+     * de Brinkhoff.
+     * 
+     * @param t Vetor que contém o retângulo fixado.
+     * @param posT Posição do retângulo fixado em t.
+     * @param rs Vetor de retângulos da outra rtree.
+     * @param naoMarcado Primeira posição ainda não checada de rs.
+     * @param saida Buffer de pares de saída.
+     * @param primeiroLoop Indica se t contém os MBRs da rtree1.
+     * @param zorder Indica se o valor z-order da interseção deve ser calculado.
+     */
+    private void loopInterno(MbrArray t, int posT, MbrArray rs, int naoMarcado, PairBuffer saida, boolean primeiroLoop, boolean zorder)
+    {
+        int k = naoMarcado;
+        int totalEntries = rs.size();
+        int dims = t.numberOfDimensions();
+        double t_xu = t.getUpper(0, posT);
+        
+        while(k < totalEntries && rs.getLower(0, k) <= t_xu)
+        {
+            this.comparisons++;
+            boolean interceptaTodasDimensoes = true;
+            
+            for(int d = 1; d < dims; d++)
+            {
+                if(t.getLower(d, posT) > rs.getUpper(d, k) || t.getUpper(d, posT) < rs.getLower(d, k))
+                {
+                    interceptaTodasDimensoes = false;
+                    break;
+                }
+            }
+            
+            if(interceptaTodasDimensoes)
+            {
+                long zOrderUnidimensional = zorder ? zOrder(t, posT, rs, k) : 0;
+                
+                if(primeiroLoop)
+                    saida.add(posT, k, zOrderUnidimensional);
+                else
+                    saida.add(k, posT, zOrderUnidimensional);
+            }
+            k++;
+        }
+    }
+    
+    /*
+     * Filtra os pares encontrados pelo plane-sweep sobre MBRs expandidos, mantendo apenas
+     * aqueles cuja distância euclidiana mínima entre os MBRs originais é no máximo epsilon.
+     * A expansão por epsilon em cada dimensão aproxima a vizinhança circular por um quadrado,
+     * de forma que pares próximos apenas pelos cantos são descartados aqui.
+     * 
+     * @param expandidos MBRs do nó da rtree1, já expandidos por epsilon.
+     * @param mbrsRtree2 MBRs qualificados do nó da rtree2.
+     * @param pares Pares encontrados pelo plane-sweep.
+     * @param epsilon Distância máxima entre os MBRs.
+     * @param saida Buffer reutilizável que recebe os pares qualificados, na mesma ordem.
+     */
+    public void filtrarDistancia(MbrArray expandidos, MbrArray mbrsRtree2, PairBuffer pares, double epsilon, PairBuffer saida)
+    {
+        int dims = expandidos.numberOfDimensions();
+        double limite = epsilon * epsilon;
+        
+        saida.clear();
+        for(int p = 0; p < pares.size(); p++)
+        {
+            int i = pares.getFirst(p), j = pares.getSecond(p);
+            double soma = 0;
+            for(int d = 0; d < dims && soma <= limite; d++)
+            {
+                // Distância entre os intervalos originais: o MBR da rtree1 é desfeito da expansão
+                double gap = Math.max(mbrsRtree2.getLower(d, j) - (expandidos.getUpper(d, i) - epsilon),
+                                      (expandidos.getLower(d, i) + epsilon) - mbrsRtree2.getUpper(d, j));
+                if(gap > 0)
+                    soma += gap * gap;
+            }
+            this.comparisons++;
+            if(soma <= limite)
+                saida.add(i, j, pares.getKey(p));
+        }
+    }
+    
+    /*
+     * Calcula, para cada par do buffer, o valor de Hilbert do centro do retângulo de
+     * interseção entre os dois MBRs e o armazena como chave do par. Diferente do z-order,
+     * a curva de Hilbert não salta entre quadrantes distantes, de forma que pares com 
+     * chaves próximas compartilham mais páginas de disco.
+     * 
+     * @param mbrsRtree1 MBRs qualificados do nó da rtree1.
+     * @param mbrsRtree2 MBRs qualificados do nó da rtree2.
+     * @param pares Pares encontrados pelo plane-sweep.
+     * @param curva Curva de Hilbert que cobre o espaço das duas árvores (ver curvaHilbert).
+     */
+    public void hilbert(MbrArray mbrsRtree1, MbrArray mbrsRtree2, PairBuffer pares, HilbertCurve curva)
+    {
+        int dims = mbrsRtree1.numberOfDimensions();
+        long[] celulas = new long[dims];
+        
+        for(int p = 0; p < pares.size(); p++)
+        {
+            int i = pares.getFirst(p), j = pares.getSecond(p);
+            for(int d = 0; d < dims; d++)
+            {
+                double lower = Math.max(mbrsRtree1.getLower(d, i), mbrsRtree2.getLower(d, j));
+                double upper = Math.min(mbrsRtree1.getUpper(d, i), mbrsRtree2.getUpper(d, j));
+                celulas[d] = curva.quantize(d, (lower + upper) / 2.0); // Centro do retangulo de intersecao
+            }
+            pares.setKey(p, curva.index(celulas));
+        }
+    }
+    
+    /*
+     * Constrói a curva de Hilbert utilizada na ordenação dos pares, quantizando o espaço 
+     * coberto pelas entradas das raízes das duas árvores.
+     * 
+     * @param raizRtree1 Raiz da rtree1.
+     * @param raizRtree2 Raiz da rtree2.
+     * @return Curva de Hilbert que cobre as duas árvores.
+     */
+    public HilbertCurve curvaHilbert(RTreeNode<R> raizRtree1, RTreeNode<R> raizRtree2)
+    {
+        double[] min = null, max = null;
+        
+        for(RTreeNode<R> raiz : Arrays.asList(raizRtree1, raizRtree2))
+        {
+            for(int i = 0; i < raiz.readNumberOfKeys(); i++)
+            {
+                R mbr = this.cursor = raiz.readKey(i, this.cursor);
+                if(min == null)
+                {
+                    min = new double[mbr.numberOfDimensions()];
+                    max = new double[mbr.numberOfDimensions()];
+                    Arrays.fill(min, Double.POSITIVE_INFINITY);
+                    Arrays.fill(max, Double.NEGATIVE_INFINITY);
+                }
+                for(int d = 0; d < min.length; d++)
+                {
+                    min[d] = Math.min(min[d], mbr.getOrigin(d));
+                    max[d] = Math.max(max[d], mbr.getOrigin(d) + mbr.getExtension(d));
+                }
+            }
+        }
+        
+        if(min == null) // Árvores vazias
+            return new HilbertCurve(new double[] {0, 0}, new double[] {0, 0});
+        return new HilbertCurve(min, max);
+    }
+    
+    /*
+     * Versão de zOrder que calcula o valor unidimensional do centro da interseção entre
+     * dois MBRs armazenados em vetores primitivos, sem construir o retângulo de interseção.
+     * 
+     * @param a Vetor que contém o primeiro MBR.
+     * @param i Posição do primeiro MBR.
+     * @param b Vetor que contém o segundo MBR.
+     * @param j Posição do segundo MBR.
+     * @return Valor unidimensional que representa o ponto central da interseção.
+     */
+    private long zOrder(MbrArray a, int i, MbrArray b, int j)
+    {
+        long resultado = 0L;
+        int dims = a.numberOfDimensions();
+        int numBits = 64, aux = 0;
+        long coordenada;
+        
+        for (int bit = 0; bit < numBits; bit++) 
+        {
+            int d = bit % dims;
+            double lower = Math.max(a.getLower(d, i), b.getLower(d, j));
+            double upper = Math.min(a.getUpper(d, i), b.getUpper(d, j));
+            coordenada = (long)((Math.abs(lower*2) + (upper - lower))/2.0); // Centro do retangulo de intersecao (Truncar parte fracionaria)
+            resultado |= (coordenada & (1L << aux)) << (bit - aux);
+            if((bit + 1) % dims == 0)
+                aux++;
+        }
+        
+        return resultado;
+    }
+    
     /*
      * Método que realiza o algoritmo plane-sweep. Primeiramente é realizado uma ordenação 
      * dos MBRs pelo seus valores "x lower". Posteriormente, é feita uma varredura espacial 
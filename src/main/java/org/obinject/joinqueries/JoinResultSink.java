@@ -0,0 +1,26 @@
+package org.obinject.joinqueries;
+
+import org.obinject.meta.Uuid;
+
+/*
+ * Interface que recebe os pares de objetos espaciais encontrados por uma junção
+ * à medida que são encontrados nas folhas. Permite consumir o resultado de forma
+ * contínua, sem materializar toda a lista de pares em memória.
+ * 
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+@FunctionalInterface
+public interface JoinResultSink 
+{
+    /*
+     * Recebe um par de objetos espaciais que se interceptam.
+     * 
+     * @param uuidRtree1 Uuid do objeto armazenado na primeira árvore.
+     * @param uuidRtree2 Uuid do objeto armazenado na segunda árvore.
+     */
+    public void accept(Uuid uuidRtree1, Uuid uuidRtree2);
+}
@@ -0,0 +1,415 @@
+package org.obinject.joinqueries;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Stack;
+
+import org.obinject.block.Node;
+import org.obinject.block.RTreeDescriptor;
+import org.obinject.block.RTreeIndex;
+import org.obinject.block.RTreeLeaf;
+import org.obinject.device.Session;
+import org.obinject.meta.Entity;
+import org.obinject.meta.Rectangle;
+import org.obinject.meta.Uuid;
+import org.obinject.storage.RTree;
+
+/**
+ * Classe que implementa a junção dos k vizinhos mais próximos (kNN-join) entre duas
+ * Árvores R: para cada objeto da rtree1, encontra os k objetos da rtree2 de menor
+ * distância euclidiana mínima. <p/>
+ *
+ * A rtree1 é percorrida em profundidade e cada uma de suas folhas é processada em lote:
+ * a rtree2 é percorrida a partir da raiz em ordem de melhor primeiro, usando uma fila de
+ * prioridade de nós ordenada pela menor MINDIST entre o nó e os objetos da folha. Cada
+ * objeto da folha mantém um heap limitado aos seus k melhores candidatos, e o k-ésimo
+ * candidato define o raio de poda do objeto. Um par (folha, nó) é podado quando o nó está
+ * além do raio de todos os objetos da folha. <p/>
+ *
+ * Para que os raios encolham antes de chegar às folhas da rtree2, cada entrada de nó índice
+ * qualificada também entra no heap como um candidato provisório, com distância igual à
+ * MINMAXDIST entre o centro do objeto e o MBR da entrada: toda face de um MBR toca algum
+ * objeto, então a subárvore garante ao menos um objeto a essa distância. O candidato
+ * provisório é retirado dos heaps quando o nó é expandido, pois é substituído pelos seus filhos.
+ * Em uma rtree2 quantizada (RTreeDescriptor.quantizedFormat) os MBRs dos nós índices são
+ * arredondados para fora e as faces deixam de tocar os objetos, então não há candidatos
+ * provisórios e os raios encolhem somente nas folhas.
+ *
+ * Como folhas vizinhas da rtree1 visitam os mesmos nós da rtree2, o buffer de páginas evita
+ * a maior parte das leituras que consultas independentes fariam.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class KnnJoinQueries<R extends Rectangle<R> & Entity<? super R>>
+{
+    // Margem somada à MINMAXDIST, cobrindo a folga de precisão que a união de MBRs acrescenta
+    private static final double folga = 0.0000001;
+
+    private RTree<R> rtree1;
+    private RTree<R> rtree2;
+
+    private Session se1, se2;
+    private RTreeDescriptor descriptor1, descriptor2;
+    private boolean provisorios; // Falso se os MBRs dos nós índices da rtree2 são quantizados
+    private JoinQueryUtilities<R> joinUtilities;
+
+    // Métricas da última junção
+    private long totalDiskAccess;
+    private long totalComparisons;
+
+    /*
+     * Construtor que recebe as duas Árvores R da junção. As árvores podem ter alturas diferentes.
+     *
+     * @param rtree1 Árvore R cujos objetos terão seus vizinhos procurados.
+     * @param rtree2 Árvore R onde os vizinhos são procurados.
+     * */
+    public KnnJoinQueries(RTree<R> rtree1, RTree<R> rtree2)
+    {
+        this.rtree1 = rtree1;
+        this.rtree2 = rtree2;
+        setup();
+    }
+
+    /*
+     * Método que inicializa Session e RTreeDescriptor para cada árvore.
+     * Também inicializa o atributo joinUtilities.
+     * */
+    private void setup()
+    {
+        // R-tree 1
+        this.se1 = this.rtree1.getWorkspace().openSession();
+        long pageIdDescriptor1 = se1.findPageIdDescriptor(this.rtree1.getClassUuid());
+        this.descriptor1 = new RTreeDescriptor(se1.load(pageIdDescriptor1));
+
+        // R-tree 2
+        this.se2 = this.rtree2.getWorkspace().openSession();
+        long pageIdDescriptor2 = se2.findPageIdDescriptor(this.rtree2.getClassUuid());
+        this.descriptor2 = new RTreeDescriptor(se2.load(pageIdDescriptor2));
+        this.provisorios = this.descriptor2.readFormatVersion() != RTreeDescriptor.quantizedFormat;
+
+        joinUtilities = new JoinQueryUtilities<R>(this.rtree1.geometry);
+    }
+
+    /*
+     * Junção kNN que materializa o resultado em uma lista.
+     *
+     * @param k Número de vizinhos de cada objeto da rtree1.
+     * @return Lista de pares (objeto da rtree1, vizinho da rtree2). Os vizinhos de um mesmo
+     *         objeto aparecem em sequência, do mais próximo para o mais distante.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinKnn(int k)
+    {
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinKnn(k, (uuidRtree1, uuidRtree2) -> result.add(new Pair<>(uuidRtree1, uuidRtree2)));
+        return result;
+    }
+
+    /*
+     * Versão de joinKnn(int) que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     *
+     * @param k Número de vizinhos de cada objeto da rtree1.
+     * @param sink Consumidor dos pares (objeto da rtree1, vizinho da rtree2).
+     */
+    public void joinKnn(int k, JoinResultSink sink)
+    {
+        joinKnn(k, sink, new LRUCache(JoinQueries.sizeOfBuffer));
+    }
+
+    /*
+     * Versão de joinKnn(int, JoinResultSink) que utiliza o buffer informado para as páginas
+     * da rtree2, permitindo escolher a política de substituição de páginas a cada chamada.
+     *
+     * @param k Número de vizinhos de cada objeto da rtree1.
+     * @param sink Consumidor dos pares (objeto da rtree1, vizinho da rtree2).
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void joinKnn(int k, JoinResultSink sink, BufferPolicy buffer)
+    {
+        if(k < 1)
+            throw new IllegalArgumentException("The number of neighbors should be positive.");
+
+        this.totalDiskAccess = 0;
+        this.totalComparisons = 0;
+        long timeStart = System.nanoTime();
+
+        long raiz1 = this.descriptor1.readRootPageId();
+        long raiz2 = this.descriptor2.readRootPageId();
+        if(raiz1 != 0 && raiz2 != 0) // Nenhuma das árvores está vazia
+        {
+            // Percurso em profundidade da rtree1 até as suas folhas
+            Stack<Long> qualifies = new Stack<>();
+            qualifies.push(raiz1);
+            MbrArray objetos = new MbrArray();
+
+            do
+            {
+                long pageId1 = qualifies.pop();
+                Node nodeRtree1 = se1.load(pageId1);
+                se1.unpin(pageId1);
+                this.totalDiskAccess++;
+
+                if(RTreeIndex.matchNodeType(nodeRtree1))
+                {
+                    RTreeIndex<R> indexRtree1 = new RTreeIndex<>(nodeRtree1, this.rtree1.getObjectClass());
+                    // Empilhados do último para o primeiro, para visitar os filhos na ordem do nó
+                    for(int i = indexRtree1.readNumberOfKeys() - 1; i >= 0; i--)
+                        qualifies.push(indexRtree1.readSubPageId(i));
+                }
+                else
+                {
+                    RTreeLeaf<R> leafRtree1 = new RTreeLeaf<>(nodeRtree1, this.rtree1.getObjectClass());
+                    joinUtilities.restringirEspacoBusca(null, leafRtree1, objetos);
+                    vizinhosFolha(leafRtree1, objetos, raiz2, k, sink, buffer);
+                }
+            }
+            while(!qualifies.isEmpty());
+        }
+
+        // Impressão das métricas
+        System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
+        System.out.println("Total Comparisons: " + this.totalComparisons);
+        System.out.println("Total Disk Access: " + this.totalDiskAccess);
+    }
+
+    /*
+     * Encontra os k vizinhos de todos os objetos de uma folha da rtree1 em um único
+     * percurso de melhor primeiro da rtree2.
+     *
+     * @param leafRtree1 Folha da rtree1.
+     * @param objetos MBRs dos objetos da folha.
+     * @param raiz2 ID da página raiz da rtree2.
+     * @param k Número de vizinhos de cada objeto.
+     * @param sink Consumidor dos pares (objeto da rtree1, vizinho da rtree2).
+     * @param buffer Buffer de páginas de disco da rtree2.
+     */
+    private void vizinhosFolha(RTreeLeaf<R> leafRtree1, MbrArray objetos, long raiz2, int k, JoinResultSink sink, BufferPolicy buffer)
+    {
+        int totalObjetos = objetos.size();
+        if(totalObjetos == 0)
+            return;
+        int dims = objetos.numberOfDimensions();
+
+        // Um heap de máximo por objeto: (distância, Uuid do vizinho ou null se provisório, ID da página do provisório)
+        Comparator<Triple<Double, Uuid, Long>> maiorPrimeiro = (x, y) -> Double.compare(y.getFirst(), x.getFirst());
+        ArrayList<PriorityQueue<Triple<Double, Uuid, Long>>> heaps = new ArrayList<>(totalObjetos);
+        for(int i = 0; i < totalObjetos; i++)
+            heaps.add(new PriorityQueue<>(k + 1, maiorPrimeiro));
+
+        // Fila de nós da rtree2: (menor MINDIST aos objetos da folha, ID da página, MBR do nó)
+        PriorityQueue<Triple<Double, Long, double[]>> fila = new PriorityQueue<>((x, y) -> Double.compare(x.getFirst(), y.getFirst()));
+        fila.add(new Triple<>(0.0, raiz2, null));
+
+        MbrArray entradas = new MbrArray();
+        double[] centro = new double[dims];
+
+        while(!fila.isEmpty())
+        {
+            Triple<Double, Long, double[]> candidato = fila.poll();
+
+            // Nenhum nó restante está dentro do raio de algum objeto
+            if(candidato.getFirst() > maiorRaio(heaps, k))
+                break;
+
+            double[] mbr = candidato.getThird();
+            if(mbr != null && !qualificado(objetos, mbr, heaps, k))
+                continue;
+
+            long pageId2 = candidato.getSecond();
+            for(PriorityQueue<Triple<Double, Uuid, Long>> heap : heaps)
+                heap.removeIf(t -> t.getSecond() == null && t.getThird() == pageId2);
+
+            // Leitura de páginas de disco e utilização do buffer
+            DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId2)), this.rtree2.getObjectClass());
+            if(nodeRtree2 == null)
+            {
+                nodeRtree2 = joinUtilities.decodificar(se2.load(pageId2), this.rtree2.getObjectClass());
+                se2.unpin(pageId2);
+                buffer.put(BufferPolicy.key(2, pageId2), nodeRtree2);
+                this.totalDiskAccess++;
+            }
+
+            joinUtilities.restringirEspacoBusca(null, nodeRtree2, entradas);
+
+            if(nodeRtree2.isIndice())
+            {
+                for(int e = 0; e < entradas.size(); e++)
+                {
+                    long subPageId = nodeRtree2.paginaFilha(entradas.getEntry(e));
+                    double menor = Double.POSITIVE_INFINITY;
+                    for(int i = 0; i < totalObjetos; i++)
+                    {
+                        double distancia = minDist(objetos, i, entradas, e);
+                        if(distancia <= raio(heaps.get(i), k))
+                        {
+                            menor = Math.min(menor, distancia);
+                            if(this.provisorios)
+                            {
+                                for(int d = 0; d < dims; d++)
+                                    centro[d] = (objetos.getLower(d, i) + objetos.getUpper(d, i)) / 2.0;
+                                oferecer(heaps.get(i), k, new Triple<>(minMaxDist(centro, entradas, e) + folga, null, subPageId));
+                            }
+                        }
+                    }
+
+                    if(menor != Double.POSITIVE_INFINITY)
+                    {
+                        double[] janela = new double[2 * dims];
+                        for(int d = 0; d < dims; d++)
+                        {
+                            janela[d] = entradas.getLower(d, e);
+                            janela[dims + d] = entradas.getUpper(d, e);
+                        }
+                        fila.add(new Triple<>(menor, subPageId, janela));
+                    }
+                }
+            }
+            else
+            {
+                for(int e = 0; e < entradas.size(); e++)
+                {
+                    Uuid uuidRtree2 = null;
+                    for(int i = 0; i < totalObjetos; i++)
+                    {
+                        double distancia = minDist(objetos, i, entradas, e);
+                        PriorityQueue<Triple<Double, Uuid, Long>> heap = heaps.get(i);
+                        if(heap.size() < k || distancia < heap.peek().getFirst())
+                        {
+                            if(uuidRtree2 == null)
+                                uuidRtree2 = nodeRtree2.readEntityUuid(entradas.getEntry(e));
+                            oferecer(heap, k, new Triple<>(distancia, uuidRtree2, 0L));
+                        }
+                    }
+                }
+            }
+        }
+
+        // Entregando os vizinhos de cada objeto, do mais próximo para o mais distante
+        for(int i = 0; i < totalObjetos; i++)
+        {
+            Uuid uuidRtree1 = leafRtree1.readEntityUuid(objetos.getEntry(i));
+            ArrayList<Triple<Double, Uuid, Long>> vizinhos = new ArrayList<>(heaps.get(i));
+            vizinhos.sort((x, y) -> Double.compare(x.getFirst(), y.getFirst()));
+            for(Triple<Double, Uuid, Long> vizinho : vizinhos)
+            {
+                if(vizinho.getSecond() != null)
+                    sink.accept(uuidRtree1, vizinho.getSecond());
+            }
+        }
+    }
+
+    /*
+     * Insere um candidato no heap de um objeto, descartando o mais distante se o heap
+     * passar de k candidatos.
+     */
+    private void oferecer(PriorityQueue<Triple<Double, Uuid, Long>> heap, int k, Triple<Double, Uuid, Long> candidato)
+    {
+        if(heap.size() < k)
+            heap.add(candidato);
+        else if(candidato.getFirst() < heap.peek().getFirst())
+        {
+            heap.poll();
+            heap.add(candidato);
+        }
+    }
+
+    /*
+     * Raio de poda de um objeto: a distância do k-ésimo candidato, ou infinito se ainda
+     * não há k candidatos.
+     */
+    private double raio(PriorityQueue<Triple<Double, Uuid, Long>> heap, int k)
+    {
+        return heap.size() < k ? Double.POSITIVE_INFINITY : heap.peek().getFirst();
+    }
+
+    private double maiorRaio(ArrayList<PriorityQueue<Triple<Double, Uuid, Long>>> heaps, int k)
+    {
+        double maior = 0;
+        for(PriorityQueue<Triple<Double, Uuid, Long>> heap : heaps)
+            maior = Math.max(maior, raio(heap, k));
+        return maior;
+    }
+
+    /*
+     * Verifica se o MBR de um nó ainda está dentro do raio de algum objeto da folha.
+     */
+    private boolean qualificado(MbrArray objetos, double[] mbr, ArrayList<PriorityQueue<Triple<Double, Uuid, Long>>> heaps, int k)
+    {
+        int dims = objetos.numberOfDimensions();
+        for(int i = 0; i < objetos.size(); i++)
+        {
+            double soma = 0;
+            for(int d = 0; d < dims; d++)
+            {
+                double gap = Math.max(mbr[d] - objetos.getUpper(d, i), objetos.getLower(d, i) - mbr[dims + d]);
+                if(gap > 0)
+                    soma += gap * gap;
+            }
+            if(Math.sqrt(soma) <= raio(heaps.get(i), k))
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Menor distância euclidiana entre dois MBRs (MINDIST), zero se eles se interceptam.
+     */
+    private double minDist(MbrArray a, int i, MbrArray b, int j)
+    {
+        this.totalComparisons++;
+        double soma = 0;
+        for(int d = 0; d < a.numberOfDimensions(); d++)
+        {
+            double gap = Math.max(b.getLower(d, j) - a.getUpper(d, i), a.getLower(d, i) - b.getUpper(d, j));
+            if(gap > 0)
+                soma += gap * gap;
+        }
+        return Math.sqrt(soma);
+    }
+
+    /*
+     * MINMAXDIST entre um ponto e um MBR (Roussopoulos et al.): para cada dimensão, a distância
+     * até a face mais próxima nessa dimensão combinada com a face mais distante nas demais. O
+     * menor desses valores limita a distância até o objeto mais próximo contido no MBR.
+     *
+     * @param ponto Coordenadas do ponto.
+     * @param mbrs Vetor que contém o MBR.
+     * @param j Posição do MBR no vetor.
+     */
+    private double minMaxDist(double[] ponto, MbrArray mbrs, int j)
+    {
+        int dims = ponto.length;
+        double somaDistantes = 0;
+        for(int d = 0; d < dims; d++)
+        {
+            double distante = ponto[d] >= (mbrs.getLower(d, j) + mbrs.getUpper(d, j)) / 2.0 ? mbrs.getLower(d, j) : mbrs.getUpper(d, j);
+            somaDistantes += (ponto[d] - distante) * (ponto[d] - distante);
+        }
+
+        double menor = Double.POSITIVE_INFINITY;
+        for(int d = 0; d < dims; d++)
+        {
+            double meio = (mbrs.getLower(d, j) + mbrs.getUpper(d, j)) / 2.0;
+            double proxima = ponto[d] <= meio ? mbrs.getLower(d, j) : mbrs.getUpper(d, j);
+            double distante = ponto[d] >= meio ? mbrs.getLower(d, j) : mbrs.getUpper(d, j);
+            double soma = somaDistantes - (ponto[d] - distante) * (ponto[d] - distante) + (ponto[d] - proxima) * (ponto[d] - proxima);
+            menor = Math.min(menor, soma);
+        }
+        return Math.sqrt(Math.max(menor, 0));
+    }
+
+    public long getTotalDiskAccess()
+    {
+        return totalDiskAccess;
+    }
+
+    public long getTotalComparisons()
+    {
+        return totalComparisons;
+    }
+}
@@ -1,71 +1,106 @@
 package org.obinject.joinqueries;
 
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-
 import org.obinject.block.Node;
+import org.obinject.device.LongIntMap;
 
 /*
  * Classe que implementa as funcionaldades de um buffer que
  * utiliza a estratégia Least-Recently-Used (LRU). Ao adicionar
- * um novo elemento no buffer lotado, o elemento menos usado 
+ * um novo elemento no buffer lotado, o elemento menos usado
  * recentemente é substituído. Essa estrutura usa o esquema
- * de chave, valor. A chave é o id da página de disco e o valor
- * é o Nó lido da página de disco.
- * 
- * Reference: https://stackoverflow.com/questions/23772102/lru-cache-in-java-with-generics-and-o1-operations
- * 
+ * de chave, valor. A chave é o par (árvore, id da página de disco)
+ * compactado em um long (ver BufferPolicy.key) e o valor é o Nó lido
+ * da página de disco.
+ *
+ * As entradas ocupam posições fixas de vetores: uma tabela hash com
+ * endereçamento aberto aponta para as entradas, e a ordem LRU é mantida
+ * por uma lista duplamente encadeada intrusiva. Assim, nenhuma consulta
+ * ou inserção aloca objetos.
+ *
  * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
  * @author Joao Tonet
  * @author Joao Victor
  * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
  * @author Enzo Seraphim <seraphim@unifei.edu.br>
  */
-public class LRUCache 
+public class LRUCache extends AbstractBufferPolicy
 {
-    private int capacity;
-    private LinkedHashMap<String, Node> map;
+    private static final int LRU = 0;
+
+    private int size = 0;
+    private long[] keys;
+    private Node[] values;
+    private LongIntMap map;
+    private EntryLists lists;
 
     /*
      * Construtor de um buffer LRU.
-     * 
+     *
      * @param capacity Capacidade em páginas de disco do buffer LRU
      */
-    public LRUCache(int capacity) 
+    public LRUCache(int capacity)
     {
-        this.capacity = capacity;
-        this.map = new LinkedHashMap<>(capacity, 0.75f, true);
+        super(capacity);
+        this.keys = new long[this.capacity];
+        this.values = new Node[this.capacity];
+        this.map = new LongIntMap(this.capacity);
+        this.lists = new EntryLists(this.capacity, 1);
     }
-    
+
     /*
-     * Recupera um novo elemento do buffer a partir de um id de página de disco. 
+     * Recupera um novo elemento do buffer a partir de um id de página de disco.
      * Se o elemento existir, ele é atualizado como mais recentemente utilizado.
      * Se o elemento não existir, é retornado null.
-     * 
-     * @param key String que representa o id da página de disco. Formato: "pageId-RtreeNumber"
+     *
+     * @param key Chave que representa o id da página de disco (ver BufferPolicy.key).
      * @return Caso o elemento esteja presente no buffer é retornado o nó representado por key.
      *         Caso contrário retorna null.
      * */
-    public Node get(String key) 
+    @Override
+    protected Node find(long key)
     {
-        Node value = this.map.get(key);
-        return value;
+        int entry = this.map.get(key);
+        if(entry == LongIntMap.EMPTY)
+            return null;
+        this.lists.addFirst(LRU, entry);
+        return this.values[entry];
     }
-    
+
     /*
      * Insere um novo elemento no buffer, que se torna o dado mais recentemente utilizado.
-     * 
-     * @param key String que representa o id da página de disco. Formato: "pageId-RtreeNumber"
+     *
+     * @param key Chave que representa o id da página de disco (ver BufferPolicy.key).
      * @param value Nó da árvore que foi lida de uma página de disco.
      */
-    public void put(String key, Node value) 
+    @Override
+    public void put(long key, Node value)
     {
-        if(!this.map.containsKey(key) && this.map.size() == this.capacity) 
+        if(this.capacity == 0)
+            return;
+
+        int entry = this.map.get(key);
+        if(entry == LongIntMap.EMPTY)
         {
-            Iterator<String> it = this.map.keySet().iterator();
-            it.next();
-            it.remove();
+            if(this.size == this.capacity)
+            {
+                // Reutiliza a entrada menos recentemente utilizada
+                entry = this.lists.last(LRU);
+                this.map.remove(this.keys[entry]);
+                this.evictions++;
+            }
+            else
+            {
+                entry = this.size++;
+            }
+            this.keys[entry] = key;
+            this.map.put(key, entry);
         }
-        this.map.put(key, value);
+        this.values[entry] = value;
+        this.lists.addFirst(LRU, entry);
+    }
+
+    public int size()
+    {
+        return size;
     }
-}
\ No newline at end of file
+}
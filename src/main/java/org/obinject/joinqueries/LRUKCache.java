@@ -0,0 +1,159 @@
+package org.obinject.joinqueries;
+
+import org.obinject.block.Node;
+import org.obinject.device.LongIntMap;
+
+/*
+ * Classe que implementa um buffer com a estratégia LRU-K (O'Neil, O'Neil e Weikum).
+ * Para cada página são guardados os instantes dos seus K acessos mais recentes, e é
+ * substituída a página com a maior distância regressiva de ordem K, isto é, aquela
+ * cujo K-ésimo acesso mais recente é o mais antigo. Páginas com menos de K acessos
+ * têm distância infinita e são substituídas primeiro, em ordem LRU. Dessa forma,
+ * páginas lidas uma única vez por uma varredura não expulsam as páginas reutilizadas.
+ *
+ * O histórico das páginas substituídas é mantido em uma fila de tamanho igual à
+ * capacidade do buffer, para que uma página que volte logo ao buffer recupere os
+ * seus acessos anteriores. A escolha da vítima percorre os quadros do buffer, o que
+ * é adequado aos buffers pequenos usados nas junções.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class LRUKCache extends AbstractBufferPolicy
+{
+    private int k;
+    private long clock = 0;
+
+    // Quadros do buffer: chave, nó e os K instantes de acesso (history[frame * k + i], i = 0 é o mais recente)
+    private int size = 0;
+    private long[] keys;
+    private Node[] values;
+    private long[] history;
+    private LongIntMap map;
+
+    // Histórico das páginas substituídas, em fila circular
+    private int ghostNext = 0;
+    private int ghostSize = 0;
+    private long[] ghostKeys;
+    private long[] ghostHistory;
+    private LongIntMap ghostMap;
+
+    /*
+     * Construtor de um buffer LRU-2.
+     *
+     * @param capacity Capacidade em páginas de disco do buffer.
+     */
+    public LRUKCache(int capacity)
+    {
+        this(capacity, 2);
+    }
+
+    /*
+     * @param capacity Capacidade em páginas de disco do buffer.
+     * @param k Número de acessos considerados por página (K >= 1; K = 1 equivale ao LRU).
+     */
+    public LRUKCache(int capacity, int k)
+    {
+        super(capacity);
+        if(k < 1)
+            throw new IllegalArgumentException("K should be at least 1.");
+
+        this.k = k;
+        this.keys = new long[this.capacity];
+        this.values = new Node[this.capacity];
+        this.history = new long[this.capacity * k];
+        this.map = new LongIntMap(this.capacity);
+        this.ghostKeys = new long[this.capacity];
+        this.ghostHistory = new long[this.capacity * k];
+        this.ghostMap = new LongIntMap(this.capacity);
+    }
+
+    // Registra um novo acesso, deslocando os anteriores
+    private void touch(int frame)
+    {
+        int base = frame * this.k;
+        System.arraycopy(this.history, base, this.history, base + 1, this.k - 1);
+        this.history[base] = ++this.clock;
+    }
+
+    @Override
+    protected Node find(long key)
+    {
+        int frame = this.map.get(key);
+        if(frame == LongIntMap.EMPTY)
+            return null;
+        touch(frame);
+        return this.values[frame];
+    }
+
+    @Override
+    public void put(long key, Node value)
+    {
+        if(this.capacity == 0)
+            return;
+
+        int frame = this.map.get(key);
+        if(frame == LongIntMap.EMPTY)
+        {
+            if(this.size < this.capacity)
+                frame = this.size++;
+            else
+                frame = evict();
+
+            this.keys[frame] = key;
+            this.map.put(key, frame);
+
+            // Recupera o histórico da página, se ela foi substituída recentemente
+            int ghost = this.ghostMap.get(key);
+            if(ghost != LongIntMap.EMPTY)
+            {
+                System.arraycopy(this.ghostHistory, ghost * this.k, this.history, frame * this.k, this.k);
+                this.ghostMap.remove(key);
+            }
+            else
+            {
+                for(int i = 0; i < this.k; i++)
+                    this.history[frame * this.k + i] = 0;
+            }
+        }
+        this.values[frame] = value;
+        touch(frame);
+    }
+
+    // Escolhe e libera o quadro com a maior distância regressiva de ordem K
+    private int evict()
+    {
+        int victim = 0;
+        for(int frame = 1; frame < this.capacity; frame++)
+        {
+            long kth = this.history[frame * this.k + this.k - 1];
+            long victimKth = this.history[victim * this.k + this.k - 1];
+            if(kth < victimKth || (kth == victimKth && this.history[frame * this.k] < this.history[victim * this.k]))
+                victim = frame;
+        }
+
+        // Guarda o histórico da vítima, descartando o mais antigo da fila
+        long key = this.keys[victim];
+        int ghost = this.ghostNext;
+        if(this.ghostSize == this.capacity)
+        {
+            // A página pode ter voltado ao buffer e sido substituída de novo em outra posição
+            if(this.ghostMap.get(this.ghostKeys[ghost]) == ghost)
+                this.ghostMap.remove(this.ghostKeys[ghost]);
+        }
+        else
+            this.ghostSize++;
+        this.ghostKeys[ghost] = key;
+        System.arraycopy(this.history, victim * this.k, this.ghostHistory, ghost * this.k, this.k);
+        this.ghostMap.put(key, ghost);
+        this.ghostNext = (ghost + 1) % this.capacity;
+
+        this.map.remove(key);
+        this.values[victim] = null;
+        this.evictions++;
+        return victim;
+    }
+}
@@ -0,0 +1,337 @@
+package org.obinject.joinqueries;
+
+import java.util.Arrays;
+
+import org.obinject.meta.Rectangle;
+
+/*
+ * Classe que armazena os MBRs das entradas de um nó em forma de estrutura de vetores
+ * (structure of arrays): para cada dimensão, um vetor de double com os limites inferiores
+ * e outro com os limites superiores, além de um vetor com a posição de cada MBR no seu nó
+ * de origem. A mesma instância é reutilizada para todos os nós examinados em uma junção,
+ * de forma que o plane-sweep não aloca objetos por entrada.
+ *
+ * Janelas de busca (retângulos de interseção) são representadas por vetores de
+ * 2 * dims posições: os limites inferiores de cada dimensão seguidos dos limites superiores.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class MbrArray
+{
+    private int dims;
+    private int size;
+    private double[][] lower = new double[0][];
+    private double[][] upper = new double[0][];
+    private int[] entries = new int[0];
+
+    /*
+     * Esvazia o vetor, preparando-o para receber MBRs com o número de dimensões dado.
+     *
+     * @param dims Número de dimensões dos MBRs.
+     */
+    public void clear(int dims)
+    {
+        if(this.dims != dims)
+        {
+            this.dims = dims;
+            this.lower = new double[dims][this.entries.length];
+            this.upper = new double[dims][this.entries.length];
+        }
+        this.size = 0;
+    }
+
+    /*
+     * Adiciona um MBR ao final do vetor.
+     *
+     * @param entry Posição do MBR no seu nó de origem.
+     * @param key MBR a ser adicionado.
+     */
+    public void add(int entry, Rectangle<?> key)
+    {
+        ensureCapacity(this.size + 1);
+        for(int d = 0; d < this.dims; d++)
+        {
+            double origin = key.getOrigin(d);
+            this.lower[d][this.size] = origin;
+            this.upper[d][this.size] = origin + key.getExtension(d);
+        }
+        this.entries[this.size] = entry;
+        this.size++;
+    }
+
+    /*
+     * Adiciona ao final do vetor um MBR representado como janela.
+     *
+     * @param entry Posição do MBR na sua origem.
+     * @param janela Limites inferiores de cada dimensão seguidos dos limites superiores.
+     */
+    public void add(int entry, double[] janela)
+    {
+        ensureCapacity(this.size + 1);
+        for(int d = 0; d < this.dims; d++)
+        {
+            this.lower[d][this.size] = janela[d];
+            this.upper[d][this.size] = janela[this.dims + d];
+        }
+        this.entries[this.size] = entry;
+        this.size++;
+    }
+
+    /*
+     * Adiciona ao final do vetor uma cópia de um MBR de outro vetor.
+     *
+     * @param entry Posição do MBR na sua origem.
+     * @param other Vetor que contém o MBR.
+     * @param j Posição do MBR no outro vetor.
+     */
+    public void add(int entry, MbrArray other, int j)
+    {
+        ensureCapacity(this.size + 1);
+        for(int d = 0; d < this.dims; d++)
+        {
+            this.lower[d][this.size] = other.lower[d][j];
+            this.upper[d][this.size] = other.upper[d][j];
+        }
+        this.entries[this.size] = entry;
+        this.size++;
+    }
+
+    /*
+     * Remove o último MBR adicionado.
+     */
+    public void removeLast()
+    {
+        this.size--;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if(capacity > this.entries.length)
+        {
+            int length = Math.max(capacity, this.entries.length * 2);
+            for(int d = 0; d < this.dims; d++)
+            {
+                this.lower[d] = Arrays.copyOf(this.lower[d], length);
+                this.upper[d] = Arrays.copyOf(this.upper[d], length);
+            }
+            this.entries = Arrays.copyOf(this.entries, length);
+        }
+    }
+
+    /*
+     * Ordena os MBRs pelo seu "x lower" (limite inferior na dimensão 0),
+     * sem alocar memória.
+     */
+    public void sortByLowerX()
+    {
+        quickSort(0, this.size - 1);
+    }
+
+    private void quickSort(int left, int right)
+    {
+        double[] key = this.lower[0];
+        while(right - left > 16)
+        {
+            double pivot = key[(left + right) >>> 1];
+            int i = left, j = right;
+            while(i <= j)
+            {
+                while(key[i] < pivot) i++;
+                while(key[j] > pivot) j--;
+                if(i <= j)
+                    swap(i++, j--);
+            }
+            // Recursão no menor lado para limitar a profundidade da pilha
+            if(j - left < right - i)
+            {
+                quickSort(left, j);
+                left = i;
+            }
+            else
+            {
+                quickSort(i, right);
+                right = j;
+            }
+        }
+        for(int i = left + 1; i <= right; i++)
+            for(int j = i; j > left && key[j - 1] > key[j]; j--)
+                swap(j, j - 1);
+    }
+
+    private void swap(int i, int j)
+    {
+        for(int d = 0; d < this.dims; d++)
+        {
+            double aux = this.lower[d][i];
+            this.lower[d][i] = this.lower[d][j];
+            this.lower[d][j] = aux;
+            aux = this.upper[d][i];
+            this.upper[d][i] = this.upper[d][j];
+            this.upper[d][j] = aux;
+        }
+        int aux = this.entries[i];
+        this.entries[i] = this.entries[j];
+        this.entries[j] = aux;
+    }
+
+    /*
+     * Verifica se um MBR intercepta uma janela.
+     *
+     * @param i Posição do MBR neste vetor.
+     * @param janela Janela de busca. Se for null, qualquer MBR a intercepta.
+     * @return true se o MBR intercepta a janela.
+     */
+    public boolean overlaps(int i, double[] janela)
+    {
+        if(janela == null)
+            return true;
+
+        for(int d = 0; d < this.dims; d++)
+        {
+            if(this.lower[d][i] > janela[this.dims + d] || this.upper[d][i] < janela[d])
+                return false;
+        }
+        return true;
+    }
+
+    /*
+     * Verifica se um MBR deste vetor intercepta um MBR de outro vetor.
+     *
+     * @param i Posição do MBR neste vetor.
+     * @param other Outro vetor de MBRs.
+     * @param j Posição do MBR no outro vetor.
+     * @return true se os dois MBRs se interceptam.
+     */
+    public boolean overlaps(int i, MbrArray other, int j)
+    {
+        for(int d = 0; d < this.dims; d++)
+        {
+            if(this.lower[d][i] > other.upper[d][j] || this.upper[d][i] < other.lower[d][j])
+                return false;
+        }
+        return true;
+    }
+
+    /*
+     * Calcula o retângulo de interseção entre um MBR deste vetor e um MBR de outro vetor.
+     *
+     * @param i Posição do MBR neste vetor.
+     * @param other Outro vetor de MBRs.
+     * @param j Posição do MBR no outro vetor.
+     * @return Janela que representa a interseção entre os dois MBRs.
+     */
+    public double[] intersection(int i, MbrArray other, int j)
+    {
+        double[] janela = new double[2 * this.dims];
+        for(int d = 0; d < this.dims; d++)
+        {
+            janela[d] = Math.max(this.lower[d][i], other.lower[d][j]);
+            janela[this.dims + d] = Math.min(this.upper[d][i], other.upper[d][j]);
+        }
+        return janela;
+    }
+
+    /*
+     * Adiciona ao final do vetor uma cópia de um MBR, com posição -1 (o próprio nó).
+     * Usado quando as árvores têm alturas diferentes, para envolver as entradas da folha
+     * fixada que interceptam uma mesma entrada do nó índice (ver JoinQueryUtilities.fixarFolha).
+     *
+     * @param i Posição do MBR a ser copiado.
+     * @return Posição da cópia.
+     */
+    public int addCopy(int i)
+    {
+        ensureCapacity(this.size + 1);
+        for(int d = 0; d < this.dims; d++)
+        {
+            this.lower[d][this.size] = this.lower[d][i];
+            this.upper[d][this.size] = this.upper[d][i];
+        }
+        this.entries[this.size] = -1;
+        return this.size++;
+    }
+
+    /*
+     * Expande um MBR do vetor para que ele envolva outro MBR do mesmo vetor.
+     *
+     * @param i Posição do MBR expandido.
+     * @param j Posição do MBR a ser envolvido.
+     */
+    public void union(int i, int j)
+    {
+        for(int d = 0; d < this.dims; d++)
+        {
+            this.lower[d][i] = Math.min(this.lower[d][i], this.lower[d][j]);
+            this.upper[d][i] = Math.max(this.upper[d][i], this.upper[d][j]);
+        }
+    }
+
+    /*
+     * Expande todos os MBRs do vetor por uma distância em cada dimensão. Como todos os
+     * limites inferiores diminuem do mesmo valor, a ordenação pelo "x lower" é preservada.
+     *
+     * @param epsilon Distância da expansão.
+     */
+    public void expand(double epsilon)
+    {
+        for(int d = 0; d < this.dims; d++)
+        {
+            for(int i = 0; i < this.size; i++)
+            {
+                this.lower[d][i] -= epsilon;
+                this.upper[d][i] += epsilon;
+            }
+        }
+    }
+
+    /*
+     * Expande uma janela de busca por uma distância em cada dimensão.
+     *
+     * @param janela Janela de busca (limites inferiores seguidos dos superiores) ou null.
+     * @param epsilon Distância da expansão.
+     * @return Nova janela expandida, ou null se a janela for null.
+     */
+    public static double[] expand(double[] janela, double epsilon)
+    {
+        if(janela == null)
+            return null;
+
+        int dims = janela.length / 2;
+        double[] expandida = new double[janela.length];
+        for(int d = 0; d < dims; d++)
+        {
+            expandida[d] = janela[d] - epsilon;
+            expandida[dims + d] = janela[dims + d] + epsilon;
+        }
+        return expandida;
+    }
+
+    public int numberOfDimensions()
+    {
+        return dims;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getEntry(int i)
+    {
+        return entries[i];
+    }
+
+    public double getLower(int d, int i)
+    {
+        return lower[d][i];
+    }
+
+    public double getUpper(int d, int i)
+    {
+        return upper[d][i];
+    }
+}
@@ -0,0 +1,225 @@
+package org.obinject.joinqueries;
+
+import java.util.Arrays;
+
+/*
+ * Classe que armazena os pares de MBRs que se interceptam encontrados pelo plane-sweep.
+ * Cada par é formado pelas posições dos dois MBRs nos seus respectivos MbrArray e,
+ * opcionalmente, por uma chave de ordenação (por exemplo, o valor z-order do retângulo
+ * de interseção). Os vetores são reutilizados entre os nós examinados, evitando a
+ * alocação de um objeto por par.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class PairBuffer
+{
+    private int size;
+    private int[] first = new int[16];
+    private int[] second = new int[16];
+    private long[] keys = new long[16];
+    private int[] auxFirst = new int[0];
+    private int[] auxSecond = new int[0];
+    private long[] auxKeys = new long[0];
+    private int[] contagem = new int[0];
+    private static final int TRECHO = 16;
+
+    public void clear()
+    {
+        this.size = 0;
+    }
+
+    /*
+     * Adiciona um par ao final do buffer.
+     *
+     * @param first Posição do MBR no primeiro MbrArray (rtree1).
+     * @param second Posição do MBR no segundo MbrArray (rtree2).
+     * @param key Chave de ordenação do par.
+     */
+    public void add(int first, int second, long key)
+    {
+        if(this.size == this.first.length)
+        {
+            int length = 2 * this.size;
+            this.first = Arrays.copyOf(this.first, length);
+            this.second = Arrays.copyOf(this.second, length);
+            this.keys = Arrays.copyOf(this.keys, length);
+        }
+        this.first[this.size] = first;
+        this.second[this.size] = second;
+        this.keys[this.size] = key;
+        this.size++;
+    }
+
+    /*
+     * Substitui um par do buffer.
+     *
+     * @param i Posição do par.
+     * @param first Posição do MBR no primeiro MbrArray (rtree1).
+     * @param second Posição do MBR no segundo MbrArray (rtree2).
+     * @param key Chave de ordenação do par.
+     */
+    public void set(int i, int first, int second, long key)
+    {
+        this.first[i] = first;
+        this.second[i] = second;
+        this.keys[i] = key;
+    }
+
+    /*
+     * Descarta os pares a partir de uma posição.
+     *
+     * @param size Nova quantidade de pares.
+     */
+    public void truncate(int size)
+    {
+        this.size = Math.min(this.size, size);
+    }
+
+    /*
+     * Ordena os pares pela chave de ordenação, mantendo a ordem relativa
+     * dos pares de mesma chave. Ordenação por intercalação (merge sort) de
+     * baixo para cima: trechos curtos são ordenados por inserção e depois
+     * intercalados dois a dois, alternando entre os vetores do buffer e os
+     * vetores auxiliares, que são reutilizados entre as ordenações.
+     */
+    public void sortByKey()
+    {
+        int n = this.size;
+        for(int lo = 0; lo < n; lo += TRECHO)
+            ordenarPorInsercao(lo, Math.min(lo + TRECHO, n));
+        if(n <= TRECHO)
+            return;
+        if(this.auxFirst.length < this.first.length)
+        {
+            this.auxFirst = new int[this.first.length];
+            this.auxSecond = new int[this.first.length];
+            this.auxKeys = new long[this.first.length];
+        }
+        int[] f = this.first, s = this.second, af = this.auxFirst, as = this.auxSecond;
+        long[] k = this.keys, ak = this.auxKeys;
+        for(int largura = TRECHO; largura < n; largura *= 2)
+        {
+            for(int lo = 0; lo < n; lo += 2 * largura)
+            {
+                int mid = Math.min(lo + largura, n), hi = Math.min(lo + 2 * largura, n);
+                if(mid == hi || k[mid - 1] <= k[mid])
+                {
+                    //trechos já em ordem
+                    System.arraycopy(f, lo, af, lo, hi - lo);
+                    System.arraycopy(s, lo, as, lo, hi - lo);
+                    System.arraycopy(k, lo, ak, lo, hi - lo);
+                    continue;
+                }
+                int i = lo, j = mid;
+                for(int d = lo; d < hi; d++)
+                {
+                    int o = (j == hi || (i < mid && k[i] <= k[j])) ? i++ : j++;
+                    af[d] = f[o];
+                    as[d] = s[o];
+                    ak[d] = k[o];
+                }
+            }
+            int[] ti = f; f = af; af = ti;
+            ti = s; s = as; as = ti;
+            long[] tl = k; k = ak; ak = tl;
+        }
+        this.first = f;
+        this.second = s;
+        this.keys = k;
+        this.auxFirst = af;
+        this.auxSecond = as;
+        this.auxKeys = ak;
+    }
+
+    /*
+     * Ordena os pares pela posição no segundo MbrArray e, nos pares de mesma posição,
+     * pela posição no primeiro, com duas passadas de ordenação por contagem. Agrupa, em
+     * tempo linear, os pares de cada entrada de um nó, cujo número é limitado pelo fanout.
+     *
+     * @param totalFirst Quantidade de MBRs do primeiro MbrArray.
+     * @param totalSecond Quantidade de MBRs do segundo MbrArray.
+     */
+    public void sortBySecond(int totalFirst, int totalSecond)
+    {
+        if(this.auxFirst.length < this.first.length)
+        {
+            this.auxFirst = new int[this.first.length];
+            this.auxSecond = new int[this.first.length];
+            this.auxKeys = new long[this.first.length];
+        }
+        distribuir(this.first, totalFirst, this.first, this.second, this.keys, this.auxFirst, this.auxSecond, this.auxKeys);
+        distribuir(this.auxSecond, totalSecond, this.auxFirst, this.auxSecond, this.auxKeys, this.first, this.second, this.keys);
+    }
+
+    /*
+     * Passada estável de ordenação por contagem, dos vetores de origem para os de destino.
+     *
+     * @param posicoes Posição de cada par, usada como chave (entre 0 e total - 1).
+     */
+    private void distribuir(int[] posicoes, int total, int[] f, int[] s, long[] k, int[] df, int[] ds, long[] dk)
+    {
+        if(this.contagem.length < total + 1)
+            this.contagem = new int[total + 1];
+        Arrays.fill(this.contagem, 0, total + 1, 0);
+        for(int i = 0; i < this.size; i++)
+            this.contagem[posicoes[i] + 1]++;
+        for(int c = 0; c < total; c++)
+            this.contagem[c + 1] += this.contagem[c];
+        for(int i = 0; i < this.size; i++)
+        {
+            int d = this.contagem[posicoes[i]]++;
+            df[d] = f[i];
+            ds[d] = s[i];
+            dk[d] = k[i];
+        }
+    }
+
+    private void ordenarPorInsercao(int lo, int hi)
+    {
+        for(int i = lo + 1; i < hi; i++)
+        {
+            int f = this.first[i], s = this.second[i];
+            long k = this.keys[i];
+            int j = i - 1;
+            while(j >= lo && this.keys[j] > k)
+            {
+                this.first[j + 1] = this.first[j];
+                this.second[j + 1] = this.second[j];
+                this.keys[j + 1] = this.keys[j];
+                j--;
+            }
+            this.first[j + 1] = f;
+            this.second[j + 1] = s;
+            this.keys[j + 1] = k;
+        }
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public int getFirst(int i)
+    {
+        return first[i];
+    }
+
+    public int getSecond(int i)
+    {
+        return second[i];
+    }
+
+    public long getKey(int i)
+    {
+        return keys[i];
+    }
+
+    public void setKey(int i, long key)
+    {
+        this.keys[i] = key;
+    }
+}
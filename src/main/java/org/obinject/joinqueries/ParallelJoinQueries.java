@@ -0,0 +1,522 @@
+package org.obinject.joinqueries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import org.obinject.block.RTreeDescriptor;
+import org.obinject.block.RTreeNode;
+import org.obinject.device.Session;
+import org.obinject.meta.Entity;
+import org.obinject.meta.Rectangle;
+import org.obinject.meta.Uuid;
+import org.obinject.storage.EuclideanGeometry;
+import org.obinject.storage.HilbertCurve;
+import org.obinject.storage.RTree;
+
+/**
+ * Classe que implementa a versão paralela dos cinco métodos de junção
+ * de JoinQueries. Cada par de páginas qualificado se torna uma tarefa
+ * do framework fork-join, que distribui o trabalho entre as threads
+ * por roubo de tarefas (work stealing). O conjunto resultante é o mesmo
+ * do algoritmo sequencial correspondente. <p/>
+ *
+ * O pool de threads pertence ao objeto e é encerrado por close(). <p/>
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class ParallelJoinQueries<R extends Rectangle<R> & Entity<? super R>> implements AutoCloseable
+{
+    // Algoritmos de junção suportados (mesmos de JoinQueries)
+    private static final int BASIC = 1;
+    private static final int RESTRINGINDO_ESPACO_BUSCA = 2;
+    private static final int PLANE_SWEEP = 3;
+    private static final int PLANE_SWEEP_FIXACAO = 4;
+    private static final int ZORDER = 5;
+    private static final int HILBERT = 6;
+
+    private RTree<R> rtree1;
+    private RTree<R> rtree2;
+    private ForkJoinPool pool;
+
+    // Fábrica do buffer de páginas de cada thread
+    private Supplier<BufferPolicy> bufferFactory = () -> new LRUCache(JoinQueries.sizeOfBuffer);
+
+    /*
+     * Construtor que recebe duas Árvores R, que podem ter alturas diferentes. Utiliza 
+     * uma thread por processador disponível.
+     *
+     * @param rtree1 Primeira Árvore R.
+     * @param rtree2 Segunda Árvore R.
+     * */
+    public ParallelJoinQueries(RTree<R> rtree1, RTree<R> rtree2)
+    {
+        this(rtree1, rtree2, Runtime.getRuntime().availableProcessors());
+    }
+
+    /*
+     * Construtor que recebe duas Árvores R e o grau de paralelismo. Quando as alturas são
+     * diferentes, a folha do lado mais baixo é fixada enquanto o outro lado desce
+     * (ver JoinQueryUtilities.fixarFolha).
+     *
+     * @param rtree1 Primeira Árvore R.
+     * @param rtree2 Segunda Árvore R.
+     * @param parallelism Número de threads utilizadas na junção.
+     * */
+    public ParallelJoinQueries(RTree<R> rtree1, RTree<R> rtree2, int parallelism)
+    {
+        this.rtree1 = rtree1;
+        this.rtree2 = rtree2;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /*
+     * Encerra o pool de threads. As junções em andamento terminam normalmente.
+     */
+    @Override
+    public void close()
+    {
+        this.pool.shutdown();
+    }
+
+    /*
+     * Lê a raiz atual de uma árvore, que muda com as inserções e a carga em lote.
+     */
+    private long lerRaiz(RTree<R> rtree)
+    {
+        Session se = rtree.getWorkspace().openSession();
+        try
+        {
+            return new RTreeDescriptor(se.load(se.findPageIdDescriptor(rtree.getClassUuid()))).readRootPageId();
+        }
+        finally
+        {
+            se.close();
+        }
+    }
+
+    /*
+     * Define a política de substituição do buffer de páginas usada pelas próximas
+     * junções. Cada thread recebe o seu próprio buffer, criado pela fábrica.
+     *
+     * @param bufferFactory Fábrica de buffers (por exemplo, () -> new ArcCache(32)).
+     */
+    public void setBufferFactory(Supplier<BufferPolicy> bufferFactory)
+    {
+        this.bufferFactory = bufferFactory;
+    }
+
+    /*
+     * Versão paralela de JoinQueries.basicJoin ("SpatiaLJoin1" de Brinkhoff).
+     *
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> basicJoin()
+    {
+        return join(BASIC, null);
+    }
+
+    /*
+     * Versão de basicJoin() que entrega cada par encontrado ao consumidor.
+     * O consumidor é chamado concorrentemente pelas threads do pool
+     * e, portanto, deve ser thread-safe.
+     *
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void basicJoin(JoinResultSink sink)
+    {
+        join(BASIC, sink);
+    }
+
+    /*
+     * Versão paralela de JoinQueries.basicJoinRestringindoEspacoBusca ("SpatiaLJoin2" de Brinkhoff).
+     *
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> basicJoinRestringindoEspacoBusca()
+    {
+        return join(RESTRINGINDO_ESPACO_BUSCA, null);
+    }
+
+    /*
+     * Versão de basicJoinRestringindoEspacoBusca() que entrega cada par encontrado ao consumidor.
+     * O consumidor é chamado concorrentemente pelas threads do pool
+     * e, portanto, deve ser thread-safe.
+     *
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void basicJoinRestringindoEspacoBusca(JoinResultSink sink)
+    {
+        join(RESTRINGINDO_ESPACO_BUSCA, sink);
+    }
+
+    /*
+     * Versão paralela de JoinQueries.joinPlaneSweep ("SpatiaLJoin3" de Brinkhoff).
+     *
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinPlaneSweep()
+    {
+        return join(PLANE_SWEEP, null);
+    }
+
+    /*
+     * Versão de joinPlaneSweep() que entrega cada par encontrado ao consumidor.
+     * O consumidor é chamado concorrentemente pelas threads do pool
+     * e, portanto, deve ser thread-safe.
+     *
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinPlaneSweep(JoinResultSink sink)
+    {
+        join(PLANE_SWEEP, sink);
+    }
+
+    /*
+     * Versão paralela de JoinQueries.joinPlaneSweepFixacao ("SpatiaLJoin4" de Brinkhoff).
+     * A fixação define a ordem em que as subtarefas são criadas, o que favorece
+     * a localidade do buffer de cada thread.
+     *
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinPlaneSweepFixacao()
+    {
+        return join(PLANE_SWEEP_FIXACAO, null);
+    }
+
+    /*
+     * Versão de joinPlaneSweepFixacao() que entrega cada par encontrado ao consumidor.
+     * O consumidor é chamado concorrentemente pelas threads do pool
+     * e, portanto, deve ser thread-safe.
+     *
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinPlaneSweepFixacao(JoinResultSink sink)
+    {
+        join(PLANE_SWEEP_FIXACAO, sink);
+    }
+
+    /*
+     * Versão paralela de JoinQueries.joinZorder ("SpatiaLJoin5" de Brinkhoff).
+     *
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinZorder()
+    {
+        return join(ZORDER, null);
+    }
+
+    /*
+     * Versão de joinZorder() que entrega cada par encontrado ao consumidor.
+     * O consumidor é chamado concorrentemente pelas threads do pool
+     * e, portanto, deve ser thread-safe.
+     *
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinZorder(JoinResultSink sink)
+    {
+        join(ZORDER, sink);
+    }
+
+    /*
+     * Versão paralela de JoinQueries.joinHilbert.
+     *
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinHilbert()
+    {
+        return join(HILBERT, null);
+    }
+
+    /*
+     * Versão de joinHilbert() que entrega cada par encontrado ao consumidor.
+     * O consumidor é chamado concorrentemente pelas threads do pool
+     * e, portanto, deve ser thread-safe.
+     *
+     * @param sink Consumidor dos pares de objetos espaciais (Uuid) que se interceptam.
+     */
+    public void joinHilbert(JoinResultSink sink)
+    {
+        join(HILBERT, sink);
+    }
+
+    /*
+     * Executa a junção no pool fork-join a partir do par de raízes e agrega
+     * os resultados e as métricas de cada thread.
+     *
+     * @param algoritmo Algoritmo de junção aplicado a cada par de nós.
+     * @param sink Consumidor dos pares encontrados. Se for null, cada thread
+     *             acumula seus pares e todos são devolvidos em uma lista.
+     * @return Lista contendo todos os pares de objetos espaciais (Uuid) que se interceptam,
+     *         ou lista vazia se um consumidor for informado.
+     */
+    private ArrayList<Pair<Uuid, Uuid>> join(int algoritmo, JoinResultSink sink)
+    {
+        Execucao execucao = new Execucao(algoritmo, sink);
+
+        long timeStart = System.nanoTime();
+        long rootPageId1 = lerRaiz(this.rtree1);
+        long rootPageId2 = lerRaiz(this.rtree2);
+        if(algoritmo == HILBERT)
+        {
+            Session se1 = this.rtree1.getWorkspace().openSession();
+            Session se2 = this.rtree2.getWorkspace().openSession();
+            JoinQueryUtilities<R> joinUtilities = new JoinQueryUtilities<>(new EuclideanGeometry<>(this.rtree1.getObjectClass()));
+            execucao.curva = joinUtilities.curvaHilbert(new RTreeNode<>(se1.load(rootPageId1), this.rtree1.getObjectClass()), new RTreeNode<>(se2.load(rootPageId2), this.rtree2.getObjectClass()));
+            se1.close();
+            se2.close();
+        }
+        this.pool.invoke(new NodePairTask(rootPageId1, rootPageId2, null, execucao));
+
+        // Métricas e resultado
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        long totalDiskAccess = 0;
+        long totalComparisons = 0;
+        for(Worker worker : execucao.workers.values())
+        {
+            result.addAll(worker.result);
+            totalDiskAccess += worker.diskAccess;
+            totalComparisons += worker.comparisons;
+            worker.se1.close();
+            worker.se2.close();
+        }
+        // Os workers, com seus buffers e resultados, não ficam presos às threads do pool
+        execucao.workers.clear();
+
+        // Impressão das métricas
+        System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
+        System.out.println("Total Comparisons: " + totalComparisons);
+        System.out.println("Total Disk Access: " + totalDiskAccess);
+        return result;
+    }
+
+    /*
+     * Estado de uma chamada de join(). Fica fora dos campos da classe para que
+     * junções concorrentes sobre o mesmo objeto não compartilhem as threads e a curva.
+     * Os workers são indexados pela thread em um mapa da execução, e não em um
+     * ThreadLocal, para que sejam liberados com ela.
+     */
+    private class Execucao
+    {
+        private final int algoritmo;
+        private final JoinResultSink sink;
+        private HilbertCurve curva; // Curva de Hilbert da junção (joinHilbert)
+        private final ConcurrentHashMap<Thread, Worker> workers = new ConcurrentHashMap<>();
+
+        private Execucao(int algoritmo, JoinResultSink sink)
+        {
+            this.algoritmo = algoritmo;
+            this.sink = sink;
+        }
+
+        private Worker worker()
+        {
+            Thread thread = Thread.currentThread();
+            Worker worker = this.workers.get(thread);
+            if(worker == null)
+            {
+                worker = new Worker(this.sink);
+                this.workers.put(thread, worker);
+            }
+            return worker;
+        }
+    }
+
+    /*
+     * Estado privado de uma thread: sessões, buffer de páginas e resultados parciais.
+     * Cada thread possui seu próprio buffer, de forma que nenhuma sincronização
+     * é necessária no laço principal.
+     */
+    private class Worker
+    {
+        private Session se1 = rtree1.getWorkspace().openSession();
+        private Session se2 = rtree2.getWorkspace().openSession();
+        private BufferPolicy buffer = bufferFactory.get();
+        private JoinQueryUtilities<R> joinUtilities = new JoinQueryUtilities<>(new EuclideanGeometry<>(rtree1.getObjectClass()));
+        private ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        private JoinResultSink sink;
+        private long diskAccess = 0;
+        private long comparisons = 0;
+
+        // Vetores reutilizados a cada par de nós examinado pela thread
+        private MbrArray entradasRtree1 = new MbrArray();
+        private MbrArray entradasRtree2 = new MbrArray();
+        private PairBuffer paresRetangulos = new PairBuffer();
+        private PairBuffer qualificados = new PairBuffer();
+
+        private Worker(JoinResultSink sink)
+        {
+            this.sink = (sink != null) ? sink : (uuidRtree1, uuidRtree2) -> this.result.add(new Pair<>(uuidRtree1, uuidRtree2));
+        }
+
+        private DecodedNode load(long pageId, int rtree)
+        {
+            Class<R> classe = (rtree == 1) ? rtree1.getObjectClass() : rtree2.getObjectClass();
+            DecodedNode node = this.joinUtilities.decodificar(this.buffer.get(BufferPolicy.key(rtree, pageId)), classe);
+            if(node == null)
+            {
+                Session se = (rtree == 1) ? this.se1 : this.se2;
+                node = this.joinUtilities.decodificar(se.load(pageId), classe);
+                se.unpin(pageId);
+                this.buffer.put(BufferPolicy.key(rtree, pageId), node);
+                this.diskAccess++;
+            }
+            return node;
+        }
+    }
+
+    /*
+     * Tarefa que examina um par de nós (um de cada árvore). Os pares de nós
+     * filhos qualificados são executados como novas tarefas.
+     */
+    private class NodePairTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private long pageId1, pageId2;
+        private double[] janela;
+        private Execucao execucao;
+        private int algoritmo;
+
+        private NodePairTask(long pageId1, long pageId2, double[] janela, Execucao execucao)
+        {
+            this.pageId1 = pageId1;
+            this.pageId2 = pageId2;
+            this.janela = janela;
+            this.execucao = execucao;
+            this.algoritmo = execucao.algoritmo;
+        }
+
+        @Override
+        protected void compute()
+        {
+            Worker worker = this.execucao.worker();
+            DecodedNode nodeRtree1 = worker.load(this.pageId1, 1);
+            DecodedNode nodeRtree2 = worker.load(this.pageId2, 2);
+            boolean indiceRtree1 = nodeRtree1.isIndice();
+            boolean indiceRtree2 = nodeRtree2.isIndice();
+            boolean indice = indiceRtree1 || indiceRtree2;
+
+            // Os MBRs e os pares são lidos para os vetores da thread; como os vetores são
+            // reutilizados pelas subtarefas, eles são consumidos antes de invokeAll.
+            worker.joinUtilities.restringirEspacoBusca(this.janela, nodeRtree1, worker.entradasRtree1);
+            worker.joinUtilities.restringirEspacoBusca(this.janela, nodeRtree2, worker.entradasRtree2);
+
+            // Pares (posição em entradasRtree1, posição em entradasRtree2) na ordem em que devem ser examinados.
+            if(this.algoritmo == BASIC || this.algoritmo == RESTRINGINDO_ESPACO_BUSCA)
+                nestedLoop(worker);
+            else
+                sweep(worker, indice);
+
+            // Árvores de alturas diferentes: a folha é fixada e somente o outro lado desce
+            worker.joinUtilities.fixarFolha(indiceRtree1, indiceRtree2, worker.entradasRtree1, worker.entradasRtree2, worker.qualificados);
+
+            MbrArray entradasRtree1 = worker.entradasRtree1;
+            MbrArray entradasRtree2 = worker.entradasRtree2;
+            PairBuffer qualificados = worker.qualificados;
+            if (indice) // Ao menos um dos nós é índice.
+            {
+                List<NodePairTask> subtarefas = new ArrayList<>(qualificados.size());
+                for(int i = 0; i < qualificados.size(); i++)
+                {
+                    int e1 = qualificados.getFirst(i), e2 = qualificados.getSecond(i);
+                    double[] novaJanela = (this.algoritmo == BASIC) ? null : entradasRtree1.intersection(e1, entradasRtree2, e2);
+                    subtarefas.add(new NodePairTask(nodeRtree1.paginaFilha(entradasRtree1.getEntry(e1)), nodeRtree2.paginaFilha(entradasRtree2.getEntry(e2)), novaJanela, this.execucao));
+                }
+                invokeAll(subtarefas);
+            }
+            else // nodeRtree1 e nodeRtree2 são nós folhas.
+            {
+                for(int i = 0; i < qualificados.size(); i++)
+                    worker.sink.accept(nodeRtree1.readEntityUuid(entradasRtree1.getEntry(qualificados.getFirst(i))), nodeRtree2.readEntityUuid(entradasRtree2.getEntry(qualificados.getSecond(i))));
+            }
+        }
+
+        /*
+         * Laço aninhado dos algoritmos "SpatiaLJoin1" e "SpatiaLJoin2".
+         */
+        private void nestedLoop(Worker worker)
+        {
+            MbrArray entradasRtree1 = worker.entradasRtree1;
+            MbrArray entradasRtree2 = worker.entradasRtree2;
+            PairBuffer qualificados = worker.qualificados;
+            qualificados.clear();
+
+            for (int i = 0; i < entradasRtree2.size(); i++)
+            {
+                for (int j = 0; j < entradasRtree1.size(); j++)
+                {
+                    worker.comparisons++;
+                    if(entradasRtree2.overlaps(i, entradasRtree1, j))
+                        qualificados.add(j, i, 0L);
+                }
+            }
+        }
+
+        /*
+         * Plane-sweep dos algoritmos "SpatiaLJoin3", "SpatiaLJoin4" e "SpatiaLJoin5".
+         * Para a fixação, o z-order e a ordem de Hilbert, os pares seguem a ordem de fixação,
+         * agrupando os pares que compartilham o MBR de maior grau.
+         */
+        private void sweep(Worker worker, boolean indice)
+        {
+            PairBuffer paresRetangulos = worker.paresRetangulos;
+            worker.joinUtilities.setComparisons(0);
+            worker.joinUtilities.planeSweep(worker.entradasRtree1, worker.entradasRtree2, paresRetangulos, this.algoritmo == ZORDER);
+            worker.comparisons += worker.joinUtilities.getComparisons();
+
+            if(this.algoritmo == HILBERT)
+                worker.joinUtilities.hilbert(worker.entradasRtree1, worker.entradasRtree2, paresRetangulos, this.execucao.curva);
+            if(this.algoritmo == ZORDER || this.algoritmo == HILBERT)
+                paresRetangulos.sortByKey();
+
+            int totalPares = paresRetangulos.size();
+            PairBuffer qualificados = worker.qualificados;
+            qualificados.clear();
+            if(this.algoritmo == PLANE_SWEEP || !indice)
+            {
+                for(int i = 0; i < totalPares; i++)
+                    qualificados.add(paresRetangulos.getFirst(i), paresRetangulos.getSecond(i), 0L);
+                return;
+            }
+
+            // Ordem de fixação: o MBR de maior grau é fixado com todos os MBRs que o interceptam.
+            boolean[] visitado = new boolean[totalPares];
+            for(int i = 0; i < totalPares; i++)
+            {
+                if(!visitado[i])
+                {
+                    int e1 = paresRetangulos.getFirst(i), e2 = paresRetangulos.getSecond(i);
+                    qualificados.add(e1, e2, 0L);
+                    visitado[i] = true;
+
+                    int grauEntrada1 = 0, grauEntrada2 = 0;
+                    for(int j = i + 1; j < totalPares; j++)
+                    {
+                        if(e1 == paresRetangulos.getFirst(j))
+                            grauEntrada1++;
+                        if(e2 == paresRetangulos.getSecond(j))
+                            grauEntrada2++;
+                    }
+
+                    for(int j = i + 1; j < totalPares; j++)
+                    {
+                        boolean fixado = (grauEntrada1 >= grauEntrada2) ? e1 == paresRetangulos.getFirst(j) : e2 == paresRetangulos.getSecond(j);
+                        if(!visitado[j] && fixado)
+                        {
+                            qualificados.add(paresRetangulos.getFirst(j), paresRetangulos.getSecond(j), 0L);
+                            visitado[j] = true;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,583 @@
+package org.obinject.joinqueries;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.obinject.block.RTreeDescriptor;
+import org.obinject.device.Session;
+import org.obinject.meta.Entity;
+import org.obinject.meta.Rectangle;
+import org.obinject.meta.Uuid;
+import org.obinject.storage.EuclideanGeometry;
+import org.obinject.storage.RTree;
+
+/**
+ * Classe que implementa a junção espacial por particionamento (Partition Based Spatial-Merge
+ * join, PBSM, de Patel e DeWitt), para entradas que não possuem índice. <p/>
+ *
+ * As duas entradas são lidas uma única vez e despejadas em arquivos temporários, enquanto o
+ * seu MBR global é calculado. O espaço é então dividido em uma grade de ladrilhos, e os
+ * ladrilhos são distribuídos entre as partições de forma circular (round-robin), de modo que
+ * regiões densas se espalhem por várias partições. O número de partições é escolhido para que
+ * cada partição das duas entradas caiba no limite de memória. Cada retângulo é copiado para
+ * todas as partições cujos ladrilhos ele intercepta, e cada partição é carregada em memória
+ * e resolvida com o plane-sweep. <p/>
+ *
+ * Como um par de retângulos replicados pode ser encontrado em mais de uma partição, o par só
+ * é reportado na partição que contém o ponto de referência da sua interseção (o canto
+ * inferior), o que elimina as duplicatas sem ordenar o resultado. <p/>
+ *
+ * Quando um dos lados já possui uma Árvore R, joinIndexado faz uma junção de laço aninhado
+ * indexado: a entrada é lida em lotes do tamanho do limite de memória e cada lote desce pela
+ * árvore de uma só vez, de forma que cada nó é lido uma vez por lote, e não uma vez por objeto.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class PbsmJoin<R extends Rectangle<R> & Entity<? super R>>
+{
+    public static int sizeOfMemory = 100000; // Em quantidade de retângulos
+
+    private int limiteMemoria;
+    private JoinQueryUtilities<R> joinUtilities;
+
+    // Grade da junção corrente: MBR global, ladrilhos por eixo e número de partições
+    private double[] universo;
+    private int ladrilhos;
+    private int totalParticoes;
+
+    // Métricas da última junção
+    private long totalDiskAccess;
+    private long totalReplicas;
+
+    /*
+     * Arquivo temporário com os registros (Uuid e MBR) de uma entrada ou de uma partição.
+     */
+    private static class Despejo
+    {
+        private File arquivo;
+        private DataOutputStream saida;
+        private long total;
+    }
+
+    /*
+     * Vetores de um nível da descida de joinIndexado, reutilizados por todos os nós do nível.
+     */
+    private static class Nivel
+    {
+        private final MbrArray entradas = new MbrArray();
+        private final PairBuffer pares = new PairBuffer();
+        private final MbrArray subconsultas = new MbrArray();
+    }
+
+    /*
+     * Construtor que utiliza o limite de memória padrão (sizeOfMemory).
+     *
+     * @param geometry Geometria dos retângulos das entradas.
+     * */
+    public PbsmJoin(EuclideanGeometry<R> geometry)
+    {
+        this(geometry, sizeOfMemory);
+    }
+
+    /*
+     * Construtor que recebe o número de retângulos que cabem em memória durante a
+     * junção de uma partição (somando as duas entradas) ou durante um lote de joinIndexado.
+     *
+     * @param geometry Geometria dos retângulos das entradas.
+     * @param limiteMemoria Número máximo de retângulos em memória.
+     * */
+    public PbsmJoin(EuclideanGeometry<R> geometry, int limiteMemoria)
+    {
+        if(limiteMemoria < 1)
+            throw new IllegalArgumentException("The memory limit should be positive.");
+
+        this.limiteMemoria = limiteMemoria;
+        this.joinUtilities = new JoinQueryUtilities<R>(geometry);
+    }
+
+    /*
+     * Junção PBSM que materializa o resultado em uma lista.
+     *
+     * @param entrada1 Retângulos da primeira entrada.
+     * @param entrada2 Retângulos da segunda entrada.
+     * @return Lista de pares (Uuid da entrada1, Uuid da entrada2) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinPbsm(Iterator<R> entrada1, Iterator<R> entrada2) throws IOException
+    {
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinPbsm(entrada1, entrada2, (uuid1, uuid2) -> result.add(new Pair<>(uuid1, uuid2)));
+        return result;
+    }
+
+    /*
+     * Versão de joinPbsm(Iterator, Iterator) que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     *
+     * @param entrada1 Retângulos da primeira entrada.
+     * @param entrada2 Retângulos da segunda entrada.
+     * @param sink Consumidor dos pares (Uuid da entrada1, Uuid da entrada2).
+     */
+    public void joinPbsm(Iterator<R> entrada1, Iterator<R> entrada2, JoinResultSink sink) throws IOException
+    {
+        this.joinUtilities.setComparisons(0);
+        this.totalDiskAccess = 0;
+        this.totalReplicas = 0;
+        this.universo = null;
+        long timeStart = System.nanoTime();
+
+        Despejo despejo1 = null;
+        Despejo despejo2 = null;
+        Despejo[] particoes1 = new Despejo[0];
+        Despejo[] particoes2 = new Despejo[0];
+        try
+        {
+            // Primeira passada: despejo das entradas e cálculo do MBR global
+            despejo1 = despejar(entrada1);
+            despejo2 = despejar(entrada2);
+            if(despejo1.total > 0 && despejo2.total > 0)
+            {
+                int dims = this.universo.length / 2;
+                this.totalParticoes = (int) Math.max(1, Math.ceil((despejo1.total + despejo2.total) / (double) this.limiteMemoria));
+                // Mais ladrilhos que partições, para que cada partição receba regiões espalhadas
+                this.ladrilhos = (int) Math.ceil(Math.pow(4.0 * this.totalParticoes, 1.0 / dims));
+                if(this.totalParticoes == 1)
+                    this.ladrilhos = 1;
+
+                // Segunda passada: distribuição dos retângulos entre as partições
+                particoes1 = particionar(despejo1, dims);
+                particoes2 = particionar(despejo2, dims);
+
+                MbrArray mbrs1 = new MbrArray();
+                MbrArray mbrs2 = new MbrArray();
+                PairBuffer pares = new PairBuffer();
+                double[] referencia = new double[dims];
+                for(int p = 0; p < this.totalParticoes; p++)
+                {
+                    long[] uuids1 = carregar(particoes1[p], dims, mbrs1);
+                    long[] uuids2 = carregar(particoes2[p], dims, mbrs2);
+                    mbrs1.sortByLowerX();
+                    mbrs2.sortByLowerX();
+                    joinUtilities.planeSweep(mbrs1, mbrs2, pares, false);
+
+                    for(int k = 0; k < pares.size(); k++)
+                    {
+                        int i = pares.getFirst(k);
+                        int j = pares.getSecond(k);
+                        for(int d = 0; d < dims; d++)
+                            referencia[d] = Math.max(mbrs1.getLower(d, i), mbrs2.getLower(d, j));
+
+                        // Eliminação de duplicatas pelo ponto de referência
+                        if(particao(referencia) == p)
+                        {
+                            int e1 = mbrs1.getEntry(i);
+                            int e2 = mbrs2.getEntry(j);
+                            sink.accept(new Uuid(uuids1[2 * e1], uuids1[2 * e1 + 1]), new Uuid(uuids2[2 * e2], uuids2[2 * e2 + 1]));
+                        }
+                    }
+                }
+            }
+        }
+        finally
+        {
+            apagar(despejo1);
+            apagar(despejo2);
+            for(Despejo despejo : particoes1)
+                apagar(despejo);
+            for(Despejo despejo : particoes2)
+                apagar(despejo);
+        }
+
+        // Impressão das métricas
+        System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
+        System.out.println("Total Comparisons: " + joinUtilities.getComparisons());
+        System.out.println("Total Partitions: " + (despejo1.total > 0 && despejo2.total > 0 ? this.totalParticoes : 0));
+        System.out.println("Total Replicated Rectangles: " + this.totalReplicas);
+    }
+
+    /*
+     * Junção de laço aninhado indexado que materializa o resultado em uma lista.
+     *
+     * @param entrada1 Retângulos da entrada sem índice.
+     * @param rtree2 Árvore R da outra entrada.
+     * @return Lista de pares (Uuid da entrada1, Uuid da rtree2) que se interceptam.
+     */
+    public ArrayList<Pair<Uuid, Uuid>> joinIndexado(Iterator<R> entrada1, RTree<R> rtree2)
+    {
+        ArrayList<Pair<Uuid, Uuid>> result = new ArrayList<>();
+        joinIndexado(entrada1, rtree2, (uuid1, uuid2) -> result.add(new Pair<>(uuid1, uuid2)));
+        return result;
+    }
+
+    /*
+     * Versão de joinIndexado(Iterator, RTree) que entrega cada par encontrado ao consumidor,
+     * sem materializar o resultado em memória.
+     *
+     * @param entrada1 Retângulos da entrada sem índice.
+     * @param rtree2 Árvore R da outra entrada.
+     * @param sink Consumidor dos pares (Uuid da entrada1, Uuid da rtree2).
+     */
+    public void joinIndexado(Iterator<R> entrada1, RTree<R> rtree2, JoinResultSink sink)
+    {
+        joinIndexado(entrada1, rtree2, sink, new LRUCache(JoinQueries.sizeOfBuffer));
+    }
+
+    /*
+     * Versão de joinIndexado(Iterator, RTree, JoinResultSink) que utiliza o buffer informado
+     * para as páginas da rtree2, permitindo escolher a política de substituição de páginas.
+     *
+     * @param entrada1 Retângulos da entrada sem índice.
+     * @param rtree2 Árvore R da outra entrada.
+     * @param sink Consumidor dos pares (Uuid da entrada1, Uuid da rtree2).
+     * @param buffer Buffer de páginas de disco (LRUCache, LRUKCache, TwoQueueCache, ClockCache ou ArcCache).
+     */
+    public void joinIndexado(Iterator<R> entrada1, RTree<R> rtree2, JoinResultSink sink, BufferPolicy buffer)
+    {
+        this.joinUtilities.setComparisons(0);
+        this.totalDiskAccess = 0;
+        this.totalReplicas = 0;
+        long timeStart = System.nanoTime();
+
+        Session se2 = rtree2.getWorkspace().openSession();
+        long pageIdDescriptor2 = se2.findPageIdDescriptor(rtree2.getClassUuid());
+        long raiz2 = new RTreeDescriptor(se2.load(pageIdDescriptor2)).readRootPageId();
+        se2.unpin(pageIdDescriptor2);
+
+        try
+        {
+            MbrArray lote = new MbrArray();
+            long[] uuids = new long[0];
+            ArrayList<Nivel> niveis = new ArrayList<>();
+            while(entrada1.hasNext())
+            {
+                // Leitura de um lote da entrada, limitado pela memória
+                int tamanho = 0;
+                while(tamanho < this.limiteMemoria && entrada1.hasNext())
+                {
+                    R key = entrada1.next();
+                    if(tamanho == 0)
+                        lote.clear(key.numberOfDimensions());
+                    if(2 * tamanho == uuids.length)
+                        uuids = Arrays.copyOf(uuids, Math.max(32, 2 * uuids.length));
+                    uuids[2 * tamanho] = key.getUuid().getMostSignificantBits();
+                    uuids[2 * tamanho + 1] = key.getUuid().getLeastSignificantBits();
+                    lote.add(tamanho, key);
+                    tamanho++;
+                }
+                lote.sortByLowerX();
+
+                if(raiz2 != 0) // A árvore não está vazia
+                    descer(raiz2, lote, uuids, rtree2, se2, sink, buffer, niveis, 0);
+            }
+        }
+        finally
+        {
+            se2.close();
+        }
+
+        // Impressão das métricas
+        System.out.println("Time spent (seconds): " + (System.nanoTime() - timeStart) / 1000000000.0);
+        System.out.println("Total Comparisons: " + joinUtilities.getComparisons());
+        System.out.println("Total Disk Access: " + this.totalDiskAccess);
+    }
+
+    /*
+     * Desce por um nó da rtree2 com os retângulos do lote que interceptam o seu MBR. As entradas
+     * do nó são comparadas com o lote por plane-sweep, e cada subárvore recebe somente os
+     * retângulos que interceptam a sua entrada.
+     *
+     * @param pageId ID da página do nó.
+     * @param consultas Retângulos do lote, ordenados pelo "x lower"; a posição de cada um
+     *                  indica o seu Uuid no vetor uuids.
+     * @param uuids Bits mais e menos significativos do Uuid de cada retângulo do lote.
+     */
+    private void descer(long pageId, MbrArray consultas, long[] uuids, RTree<R> rtree2, Session se2, JoinResultSink sink, BufferPolicy buffer, ArrayList<Nivel> niveis, int nivel)
+    {
+        // Leitura de páginas de disco e utilização do buffer
+        DecodedNode nodeRtree2 = joinUtilities.decodificar(buffer.get(BufferPolicy.key(2, pageId)), rtree2.getObjectClass());
+        if(nodeRtree2 == null)
+        {
+            nodeRtree2 = joinUtilities.decodificar(se2.load(pageId), rtree2.getObjectClass());
+            se2.unpin(pageId);
+            buffer.put(BufferPolicy.key(2, pageId), nodeRtree2);
+            this.totalDiskAccess++;
+        }
+
+        if(nivel == niveis.size())
+            niveis.add(new Nivel());
+        MbrArray entradas = niveis.get(nivel).entradas;
+        PairBuffer pares = niveis.get(nivel).pares;
+        joinUtilities.restringirEspacoBusca(null, nodeRtree2, entradas);
+        joinUtilities.planeSweep(consultas, entradas, pares, false);
+
+        if(nodeRtree2.isIndice())
+        {
+            // Agrupando os pares pela entrada do nó, mantendo a ordem dos retângulos do lote
+            pares.sortBySecond(consultas.size(), entradas.size());
+
+            MbrArray subconsultas = niveis.get(nivel).subconsultas;
+            int k = 0;
+            while(k < pares.size())
+            {
+                int e = pares.getSecond(k);
+                subconsultas.clear(consultas.numberOfDimensions());
+                for(; k < pares.size() && pares.getSecond(k) == e; k++)
+                    subconsultas.add(consultas.getEntry(pares.getFirst(k)), consultas, pares.getFirst(k));
+                descer(nodeRtree2.paginaFilha(entradas.getEntry(e)), subconsultas, uuids, rtree2, se2, sink, buffer, niveis, nivel + 1);
+            }
+        }
+        else
+        {
+            for(int k = 0; k < pares.size(); k++)
+            {
+                int e = consultas.getEntry(pares.getFirst(k));
+                sink.accept(new Uuid(uuids[2 * e], uuids[2 * e + 1]), nodeRtree2.readEntityUuid(entradas.getEntry(pares.getSecond(k))));
+            }
+        }
+    }
+
+    /*
+     * Despeja uma entrada em um arquivo temporário, estendendo o MBR global da junção.
+     * O arquivo é apagado se a leitura da entrada falhar.
+     */
+    private Despejo despejar(Iterator<R> entrada) throws IOException
+    {
+        Despejo despejo = novoDespejo();
+        try
+        {
+            preencher(despejo, entrada);
+        }
+        catch(IOException | RuntimeException ex)
+        {
+            apagar(despejo);
+            throw ex;
+        }
+        despejo.saida.close();
+        return despejo;
+    }
+
+    private void preencher(Despejo despejo, Iterator<R> entrada) throws IOException
+    {
+        double[] janela = null;
+        while(entrada.hasNext())
+        {
+            R key = entrada.next();
+            int dims = key.numberOfDimensions();
+            if(janela == null)
+                janela = new double[2 * dims];
+            if(this.universo == null)
+            {
+                this.universo = new double[2 * dims];
+                for(int d = 0; d < dims; d++)
+                {
+                    this.universo[d] = Double.POSITIVE_INFINITY;
+                    this.universo[dims + d] = Double.NEGATIVE_INFINITY;
+                }
+            }
+
+            for(int d = 0; d < dims; d++)
+            {
+                janela[d] = key.getOrigin(d);
+                janela[dims + d] = janela[d] + key.getExtension(d);
+                this.universo[d] = Math.min(this.universo[d], janela[d]);
+                this.universo[dims + d] = Math.max(this.universo[dims + d], janela[dims + d]);
+            }
+            escrever(despejo, key.getUuid().getMostSignificantBits(), key.getUuid().getLeastSignificantBits(), janela);
+        }
+    }
+
+    /*
+     * Copia cada registro de um despejo para as partições cujos ladrilhos ele intercepta.
+     */
+    private Despejo[] particionar(Despejo despejo, int dims) throws IOException
+    {
+        Despejo[] particoes = new Despejo[this.totalParticoes];
+        try
+        {
+            for(int p = 0; p < this.totalParticoes; p++)
+                particoes[p] = novoDespejo();
+            distribuir(despejo, dims, particoes);
+        }
+        catch(IOException | RuntimeException ex)
+        {
+            for(Despejo particao : particoes)
+                apagar(particao);
+            throw ex;
+        }
+        for(Despejo particao : particoes)
+            particao.saida.close();
+        return particoes;
+    }
+
+    private void distribuir(Despejo despejo, int dims, Despejo[] particoes) throws IOException
+    {
+
+        boolean[] marcadas = new boolean[this.totalParticoes];
+        int[] destinos = new int[this.totalParticoes];
+        int[] menor = new int[dims];
+        int[] maior = new int[dims];
+        int[] celula = new int[dims];
+        double[] janela = new double[2 * dims];
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(despejo.arquivo))))
+        {
+            for(long r = 0; r < despejo.total; r++)
+            {
+                long msb = in.readLong();
+                long lsb = in.readLong();
+                for(int d = 0; d < 2 * dims; d++)
+                    janela[d] = in.readDouble();
+
+                for(int d = 0; d < dims; d++)
+                {
+                    menor[d] = celula(d, janela[d]);
+                    maior[d] = celula(d, janela[dims + d]);
+                    celula[d] = menor[d];
+                }
+
+                // Percorrendo os ladrilhos interceptados e marcando as suas partições
+                int totalDestinos = 0;
+                while(true)
+                {
+                    int p = particao(celula);
+                    if(!marcadas[p])
+                    {
+                        marcadas[p] = true;
+                        destinos[totalDestinos++] = p;
+                    }
+
+                    int d = 0;
+                    while(d < dims && celula[d] == maior[d])
+                    {
+                        celula[d] = menor[d];
+                        d++;
+                    }
+                    if(d == dims)
+                        break;
+                    celula[d]++;
+                }
+
+                for(int i = 0; i < totalDestinos; i++)
+                {
+                    escrever(particoes[destinos[i]], msb, lsb, janela);
+                    marcadas[destinos[i]] = false;
+                }
+                this.totalReplicas += totalDestinos - 1;
+            }
+        }
+    }
+
+    /*
+     * Carrega uma partição em memória.
+     *
+     * @return Bits mais e menos significativos do Uuid de cada retângulo, na ordem do arquivo;
+     *         a posição de cada retângulo no arquivo é a sua entrada no MbrArray.
+     */
+    private long[] carregar(Despejo particao, int dims, MbrArray mbrs) throws IOException
+    {
+        mbrs.clear(dims);
+        long[] uuids = new long[(int) (2 * particao.total)];
+        double[] janela = new double[2 * dims];
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(particao.arquivo))))
+        {
+            for(int r = 0; r < particao.total; r++)
+            {
+                uuids[2 * r] = in.readLong();
+                uuids[2 * r + 1] = in.readLong();
+                for(int d = 0; d < 2 * dims; d++)
+                    janela[d] = in.readDouble();
+                mbrs.add(r, janela);
+            }
+        }
+        return uuids;
+    }
+
+    /*
+     * Ladrilho da grade que contém uma coordenada, em uma dimensão.
+     */
+    private int celula(int d, double valor)
+    {
+        int dims = this.universo.length / 2;
+        double largura = this.universo[dims + d] - this.universo[d];
+        if(largura <= 0)
+            return 0;
+
+        int celula = (int) ((valor - this.universo[d]) / largura * this.ladrilhos);
+        return Math.max(0, Math.min(this.ladrilhos - 1, celula));
+    }
+
+    /*
+     * Partição de um ladrilho, dado pelas suas coordenadas na grade.
+     */
+    private int particao(int[] celula)
+    {
+        long ladrilho = 0;
+        for(int d = celula.length - 1; d >= 0; d--)
+            ladrilho = ladrilho * this.ladrilhos + celula[d];
+        return (int) (ladrilho % this.totalParticoes);
+    }
+
+    /*
+     * Partição do ladrilho que contém um ponto.
+     */
+    private int particao(double[] ponto)
+    {
+        long ladrilho = 0;
+        for(int d = ponto.length - 1; d >= 0; d--)
+            ladrilho = ladrilho * this.ladrilhos + celula(d, ponto[d]);
+        return (int) (ladrilho % this.totalParticoes);
+    }
+
+    private Despejo novoDespejo() throws IOException
+    {
+        Despejo despejo = new Despejo();
+        despejo.arquivo = File.createTempFile("pbsm", ".tmp");
+        despejo.saida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(despejo.arquivo)));
+        return despejo;
+    }
+
+    private void escrever(Despejo despejo, long msb, long lsb, double[] janela) throws IOException
+    {
+        despejo.saida.writeLong(msb);
+        despejo.saida.writeLong(lsb);
+        for(double valor : janela)
+            despejo.saida.writeDouble(valor);
+        despejo.total++;
+    }
+
+    private void apagar(Despejo despejo) throws IOException
+    {
+        if(despejo == null)
+            return;
+        despejo.saida.close();
+        despejo.arquivo.delete();
+    }
+
+    public long getTotalDiskAccess()
+    {
+        return totalDiskAccess;
+    }
+
+    public long getTotalComparisons()
+    {
+        return joinUtilities.getComparisons();
+    }
+
+    public long getTotalReplicas()
+    {
+        return totalReplicas;
+    }
+}
@@ -0,0 +1,139 @@
+package org.obinject.joinqueries;
+
+import org.obinject.block.Node;
+import org.obinject.device.LongIntMap;
+
+/*
+ * Classe que implementa um buffer com a estratégia 2Q (Johnson e Shasha), na sua
+ * versão completa. Uma página lida pela primeira vez entra na fila FIFO A1in. Ao
+ * sair de A1in, apenas a sua chave é lembrada na fila A1out. Se a página for lida
+ * de novo enquanto estiver em A1out, ela é considerada quente e entra na fila LRU Am.
+ * Páginas lidas uma única vez por uma varredura passam apenas por A1in e não
+ * expulsam as páginas de Am.
+ *
+ * Tamanhos utilizados: A1in com 25% da capacidade e A1out com 50%, como sugerido
+ * pelos autores.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class TwoQueueCache extends AbstractBufferPolicy
+{
+    private static final int A1IN = 0;
+    private static final int AM = 1;
+    private static final int A1OUT = 2;
+
+    private int kin;
+    private int kout;
+
+    // Entradas 0 a capacity - 1 guardam páginas; as demais guardam apenas chaves (A1out)
+    private long[] keys;
+    private Node[] values;
+    private LongIntMap map;
+    private EntryLists lists;
+    private int[] free;
+    private int freeSize = 0;
+    private int[] freeGhosts;
+    private int freeGhostsSize = 0;
+
+    /*
+     * @param capacity Capacidade em páginas de disco do buffer.
+     */
+    public TwoQueueCache(int capacity)
+    {
+        super(capacity);
+        this.kin = Math.max(1, this.capacity / 4);
+        this.kout = Math.max(1, this.capacity / 2);
+        int entries = this.capacity + this.kout;
+        this.keys = new long[entries];
+        this.values = new Node[this.capacity];
+        this.map = new LongIntMap(entries);
+        this.lists = new EntryLists(entries, 3);
+
+        this.free = new int[this.capacity];
+        for(int i = this.capacity - 1; i >= 0; i--)
+            this.free[this.freeSize++] = i;
+        this.freeGhosts = new int[this.kout];
+        for(int i = entries - 1; i >= this.capacity; i--)
+            this.freeGhosts[this.freeGhostsSize++] = i;
+    }
+
+    @Override
+    protected Node find(long key)
+    {
+        int entry = this.map.get(key);
+        if(entry == LongIntMap.EMPTY || entry >= this.capacity)
+            return null;
+
+        // Acessos em A1in não alteram a fila (correlacionados ao primeiro acesso)
+        if(this.lists.listOf(entry) == AM)
+            this.lists.addFirst(AM, entry);
+        return this.values[entry];
+    }
+
+    @Override
+    public void put(long key, Node value)
+    {
+        if(this.capacity == 0)
+            return;
+
+        int entry = this.map.get(key);
+        if(entry != LongIntMap.EMPTY && entry < this.capacity)
+        {
+            this.values[entry] = value;
+            if(this.lists.listOf(entry) == AM)
+                this.lists.addFirst(AM, entry);
+            return;
+        }
+
+        // Se a chave estava em A1out, a página é quente e vai para Am
+        boolean quente = entry != LongIntMap.EMPTY;
+        if(quente)
+        {
+            this.lists.remove(entry);
+            this.map.remove(key);
+            this.freeGhosts[this.freeGhostsSize++] = entry;
+        }
+
+        if(this.freeSize == 0)
+            reclaim();
+        entry = this.free[--this.freeSize];
+        this.keys[entry] = key;
+        this.values[entry] = value;
+        this.map.put(key, entry);
+        this.lists.addFirst(quente ? AM : A1IN, entry);
+    }
+
+    // Libera um quadro: o mais antigo de A1in (lembrado em A1out) ou o LRU de Am
+    private void reclaim()
+    {
+        int victim;
+        if(this.lists.size(A1IN) > this.kin || this.lists.size(AM) == 0)
+        {
+            victim = this.lists.last(A1IN);
+            if(this.freeGhostsSize == 0)
+            {
+                int antigo = this.lists.last(A1OUT);
+                this.lists.remove(antigo);
+                this.map.remove(this.keys[antigo]);
+                this.freeGhosts[this.freeGhostsSize++] = antigo;
+            }
+            int ghost = this.freeGhosts[--this.freeGhostsSize];
+            this.keys[ghost] = this.keys[victim];
+            this.map.put(this.keys[ghost], ghost);
+            this.lists.addFirst(A1OUT, ghost);
+        }
+        else
+        {
+            victim = this.lists.last(AM);
+            this.map.remove(this.keys[victim]);
+        }
+        this.lists.remove(victim);
+        this.values[victim] = null;
+        this.free[this.freeSize++] = victim;
+        this.evictions++;
+    }
+}
@@ -90,4 +90,34 @@ public interface Rectangle<K extends Rectangle<K> & Entity<? super K>> extends M
      * @param value is the origin value.
      */
     public void setOrigin(int axis, double value);
+
+    /**
+     * Reads the origin value of an axis of a key stored in a page, without
+     * building a new key. The default implementation pulls the whole key into
+     * this instance, which works as a reusable cursor; implementations that
+     * know their layout may read the value straight from the array.
+     *
+     * @param array is the page array.
+     * @param position is the position of the key in the array.
+     * @param axis is the axis of interest.
+     * @return the origin value
+     */
+    public default double pullOrigin(byte[] array, int position, int axis) {
+        this.pullKey(array, position);
+        return this.getOrigin(axis);
+    }
+
+    /**
+     * Reads the extension value of an axis of a key stored in a page, without
+     * building a new key. See {@link #pullOrigin(byte[], int, int)}.
+     *
+     * @param array is the page array.
+     * @param position is the position of the key in the array.
+     * @param axis is the axis of interest.
+     * @return the extension value
+     */
+    public default double pullExtension(byte[] array, int position, int axis) {
+        this.pullKey(array, position);
+        return this.getExtension(axis);
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ Copyright (C) 2013     Enzo Seraphim
+
+ This program is free software; you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ or visit <http://www.gnu.org/licenses/>
+ */
+package org.obinject.queries;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import org.obinject.meta.Entity;
+import org.obinject.meta.Rectangle;
+import org.obinject.storage.RTree;
+
+/**
+ * The k nearest neighbors of an object in an {@link RTree}, found with the
+ * best-first search of {@link RTree#nearest(Rectangle)}. As in
+ * {@link KNearestNeighborSequential}, the keys tied with the k-th distance
+ * are also returned. The keys are ranked, nearest first, and carry their
+ * distances in {@code getPreservedDistance()}.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ * @param <R>
+ */
+public abstract class KNearestNeighborRTree<R extends Rectangle<R> & Entity<? super R>> extends AbstractStrategy<R> {
+
+    private final R object;
+    private final int k;
+
+    public KNearestNeighborRTree(RTree<R> rtree, R object, int k) {
+        super(rtree);
+        this.object = object;
+        this.k = k;
+    }
+
+    @Override
+    public Collection<R> solve() {
+        RTree<R> rtree = (RTree<R>) this.getStructure();
+        List<R> result = new LinkedList<>();
+        long diskAccess = rtree.getAverageForNearest().getTotalDiskAcess();
+        long verifications = rtree.getAverageForNearest().getTotalVerifications();
+        long time = System.nanoTime();
+
+        Iterator<R> it = rtree.nearest(object);
+        double range = Double.MAX_VALUE;
+        while (k > 0 && it.hasNext()) {
+            R key = it.next();
+            if (result.size() >= k && key.getPreservedDistance() > range) {
+                break;
+            }
+            result.add(key);
+            range = key.getPreservedDistance();
+        }
+
+        this.getPerformanceMeasurement().incrementDiskAccess(rtree.getAverageForNearest().getTotalDiskAcess() - diskAccess);
+        this.getPerformanceMeasurement().incrementVerification(rtree.getAverageForNearest().getTotalVerifications() - verifications);
+        this.getPerformanceMeasurement().incrementTime(System.nanoTime() - time);
+        this.getPerformanceMeasurement().incrementMeasurement();
+        return result;
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ Copyright (C) 2013     Enzo Seraphim
+
+ This program is free software; you can redistribute it and/or modify
+ it under the terms of the GNU Lesser General Public License as published by
+ the Free Software Foundation; either version 2 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+ or visit <http://www.gnu.org/licenses/>
+ */
+package org.obinject.queries;
+
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import org.obinject.meta.Entity;
+import org.obinject.meta.Rectangle;
+import org.obinject.meta.Uuid;
+import org.obinject.storage.RTree;
+
+/**
+ * Window query on an {@link RTree}: the Uuids of all keys that overlap the
+ * window. Unlike {@link RangeQuerySequential}, the index entries that do not
+ * overlap the window prune their subtrees.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ * @param <R>
+ */
+public abstract class WindowQueryRTree<R extends Rectangle<R> & Entity<? super R>> extends AbstractStrategy<R> {
+
+    private final R window;
+
+    public WindowQueryRTree(RTree<R> rtree, R window) {
+        super(rtree);
+        this.window = window;
+    }
+
+    @Override
+    public Collection<Uuid> solve() {
+        RTree<R> rtree = (RTree<R>) this.getStructure();
+        List<Uuid> result = new LinkedList<>();
+        long diskAccess = rtree.getAverageForSearch().getTotalDiskAcess();
+        long verifications = rtree.getAverageForSearch().getTotalVerifications();
+        long time = System.nanoTime();
+
+        rtree.search(window, result::add);
+
+        this.getPerformanceMeasurement().incrementDiskAccess(rtree.getAverageForSearch().getTotalDiskAcess() - diskAccess);
+        this.getPerformanceMeasurement().incrementVerification(rtree.getAverageForSearch().getTotalVerifications() - verifications);
+        this.getPerformanceMeasurement().incrementTime(System.nanoTime() - time);
+        this.getPerformanceMeasurement().incrementMeasurement();
+        return result;
+    }
+
+}
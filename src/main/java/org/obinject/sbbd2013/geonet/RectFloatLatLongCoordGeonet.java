@@ -0,0 +1,165 @@
+package org.obinject.sbbd2013.geonet;
+
+import org.obinject.block.PageCodec;
+import org.obinject.meta.Rectangle;
+import org.obinject.meta.Uuid;
+import org.obinject.block.Page;
+
+/**
+ * Same rectangle as {@link RectLatLongCoordGeonet}, stored in the pages in
+ * single precision: the lower and the upper corners as four floats, half the
+ * size of the key. The corners are rounded outward when written, so a key
+ * read from a page always covers the key that was written and the pruning of
+ * searches and joins stays correct. Keys whose corners are floats are stored
+ * exactly; otherwise the leaves may also report pairs that are apart by less
+ * than a float unit. Keys are compared as they are stored, so a key with
+ * double corners is found and removed through the float key read back.
+ */
+public class RectFloatLatLongCoordGeonet extends EntityCoordGeonet
+	implements Rectangle<RectFloatLatLongCoordGeonet>
+{
+	private double preservedDistance;
+
+    public RectFloatLatLongCoordGeonet()
+    {
+    }
+
+    public RectFloatLatLongCoordGeonet(CoordGeonet coord)
+    {
+        super(coord);
+    }
+
+    public RectFloatLatLongCoordGeonet(Uuid uuid)
+    {
+        super(uuid);
+    }
+
+    @Override
+    public double distanceTo(RectFloatLatLongCoordGeonet metric)
+    {
+        // Lower corners as stored in the pages
+        double latitude = PageCodec.floatDown(this.getLatitude());
+        double longitude = PageCodec.floatDown(this.getLongitude());
+        return Math.sqrt(
+                Math.pow(latitude - PageCodec.floatDown(metric.getLatitude()), 2)
+                + Math.pow(longitude - PageCodec.floatDown(metric.getLongitude()), 2));
+    }
+
+    @Override
+    public double getOrigin(int idx)
+    {
+        if (idx == 0)
+        {
+            return this.getLatitude();
+        } else
+        {
+            return this.getLongitude();
+        }
+    }
+
+    @Override
+    public int numberOfDimensions()
+    {
+        return 2;
+    }
+
+    @Override
+    public boolean pullKey(byte[] array, int position)
+    {
+        this.setLatitude(PageCodec.getFloat(array, position));
+        this.setLongitude(PageCodec.getFloat(array, position + Page.sizeOfFloat));
+        this.setWidth(this.pullExtension(array, position, 0));
+        this.setHeight(this.pullExtension(array, position, 1));
+        return true;
+    }
+
+    @Override
+    public void pushKey(byte[] array, int position)
+    {
+        PageCodec.putFloatDown(array, position, this.getLatitude());
+        PageCodec.putFloatDown(array, position + Page.sizeOfFloat, this.getLongitude());
+        PageCodec.putFloatUp(array, position + 2 * Page.sizeOfFloat, this.getLatitude() + this.getWidth());
+        PageCodec.putFloatUp(array, position + 3 * Page.sizeOfFloat, this.getLongitude() + this.getHeight());
+        PageCodec.markModified(array);
+    }
+
+    @Override
+    public double pullOrigin(byte[] array, int position, int axis)
+    {
+        // Lower corner: the first two floats of the key
+        return PageCodec.getFloat(array, position + axis * Page.sizeOfFloat);
+    }
+
+    @Override
+    public double pullExtension(byte[] array, int position, int axis)
+    {
+        // Upper corner: the last two floats of the key
+        double lower = PageCodec.getFloat(array, position + axis * Page.sizeOfFloat);
+        double upper = PageCodec.getFloat(array, position + (2 + axis) * Page.sizeOfFloat);
+        double extension = upper - lower;
+        // origin + extension must not fall below the upper corner
+        return (lower + extension < upper) ? Math.nextUp(extension) : extension;
+    }
+
+    @Override
+    public void setOrigin(int idx, double value)
+    {
+        if (idx == 0)
+        {
+            this.setLatitude(value);
+        } else
+        {
+            this.setLongitude(value);
+        }
+    }
+
+    @Override
+    public int sizeOfKey()
+    {
+        return Page.sizeOfFloat * 4;
+    }
+
+    @Override
+    public double getExtension(int axis)
+    {
+        if (axis == 0)
+        {
+            return this.getWidth();
+        } else
+        {
+            return this.getHeight();
+        }
+    }
+
+    @Override
+    public void setExtension(int axis, double value)
+    {
+        if (axis == 0)
+        {
+            this.setWidth(value);
+        } else
+        {
+            this.setHeight(value);
+        }
+    }
+
+    @Override
+    public boolean hasSameKey(RectFloatLatLongCoordGeonet key) {
+        // Corners as stored in the pages
+        return PageCodec.floatDown(this.getLatitude())==PageCodec.floatDown(key.getLatitude()) &&
+        		PageCodec.floatDown(this.getLongitude())==PageCodec.floatDown(key.getLongitude()) &&
+        		PageCodec.floatUp(this.getLatitude() + this.getWidth())==PageCodec.floatUp(key.getLatitude() + key.getWidth()) &&
+        		PageCodec.floatUp(this.getLongitude() + this.getHeight())==PageCodec.floatUp(key.getLongitude() + key.getHeight());
+    }
+
+	@Override
+	public double getPreservedDistance() {
+		return preservedDistance;
+	}
+
+	@Override
+	public void setPreservedDistance(double distance) {
+		preservedDistance=distance;
+	}
+
+}
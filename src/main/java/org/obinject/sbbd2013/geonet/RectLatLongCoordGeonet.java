@@ -1,7 +1,6 @@
 package org.obinject.sbbd2013.geonet;
 
-import org.obinject.block.PullPage;
-import org.obinject.block.PushPage;
+import org.obinject.block.PageCodec;
 import org.obinject.meta.Rectangle;
 import org.obinject.meta.Uuid;
 import org.obinject.block.Page;
@@ -54,22 +53,35 @@ public class RectLatLongCoordGeonet extends EntityCoordGeonet
     @Override
     public boolean pullKey(byte[] array, int position)
     {
-        PullPage pull = new PullPage(array, position);
-        this.setLatitude(pull.pullDouble());
-        this.setLongitude(pull.pullDouble());
-        this.setWidth(pull.pullDouble());
-        this.setHeight(pull.pullDouble());
+        this.setLatitude(PageCodec.getDouble(array, position));
+        this.setLongitude(PageCodec.getDouble(array, position + Page.sizeOfDouble));
+        this.setWidth(PageCodec.getDouble(array, position + 2 * Page.sizeOfDouble));
+        this.setHeight(PageCodec.getDouble(array, position + 3 * Page.sizeOfDouble));
         return true;
     }
 
     @Override
     public void pushKey(byte[] array, int position)
     {
-        PushPage push = new PushPage(array, position);
-        push.pushDouble(this.getLatitude());
-        push.pushDouble(this.getLongitude());
-        push.pushDouble(this.getWidth());
-        push.pushDouble(this.getHeight());
+        PageCodec.putDouble(array, position, this.getLatitude());
+        PageCodec.putDouble(array, position + Page.sizeOfDouble, this.getLongitude());
+        PageCodec.putDouble(array, position + 2 * Page.sizeOfDouble, this.getWidth());
+        PageCodec.putDouble(array, position + 3 * Page.sizeOfDouble, this.getHeight());
+        PageCodec.markModified(array);
+    }
+
+    @Override
+    public double pullOrigin(byte[] array, int position, int axis)
+    {
+        // Latitude and longitude are the first two doubles of the key
+        return PageCodec.getDouble(array, position + axis * Page.sizeOfDouble);
+    }
+
+    @Override
+    public double pullExtension(byte[] array, int position, int axis)
+    {
+        // Width and height follow the origin
+        return PageCodec.getDouble(array, position + (2 + axis) * Page.sizeOfDouble);
     }
 
     @Override
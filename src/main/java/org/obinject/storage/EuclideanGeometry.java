@@ -81,6 +81,23 @@ public class EuclideanGeometry<K extends Rectangle<K> & Entity<? super K>> {
         return mbrUnion;
     }
     
+    /**
+     * Builds the rectangle with the given corners, with the same precision
+     * margin as {@link #union(Rectangle, Rectangle)}.
+     *
+     * @param minPoint The lower corner.
+     * @param maxPoint The upper corner.
+     * @return
+     */
+    public K rectangle(double[] minPoint, double[] maxPoint) {
+        K rect = this.newGenericType();
+        for (int i = 0; i < minPoint.length; i++) {
+            rect.setOrigin(i, minPoint[i]);
+            rect.setExtension(i, maxPoint[i] - minPoint[i] + this.precisionError);
+        }
+        return rect;
+    }
+
     public K intersection(K rect1, K rect2)
     {
         int dims = rect1.numberOfDimensions();
@@ -123,6 +140,52 @@ public class EuclideanGeometry<K extends Rectangle<K> & Entity<? super K>> {
         return ocup;
     }
 
+    /**
+     * Occupancy of the intersection of two rectangles, without building it.
+     *
+     * @param rect1
+     * @param rect2
+     * @return Zero if the rectangles do not intersect.
+     */
+    public double overlap(K rect1, K rect2) {
+        double ocup = 1;
+        int dims = rect1.numberOfDimensions();
+
+        for (int i = 0; i < dims; i++) {
+            double min = Math.max(rect1.getOrigin(i), rect2.getOrigin(i));
+            double max = Math.min(rect1.getOrigin(i) + rect1.getExtension(i), rect2.getOrigin(i) + rect2.getExtension(i));
+            if (min >= max) {
+                return 0;
+            }
+            ocup *= max - min;
+        }
+
+        return ocup;
+    }
+
+    /**
+     * Smallest Euclidean distance between two rectangles (MINDIST). It is
+     * zero if they intersect.
+     *
+     * @param rect1
+     * @param rect2
+     * @return
+     */
+    public double minDistance(K rect1, K rect2) {
+        double sum = 0;
+        int dims = rect1.numberOfDimensions();
+
+        for (int i = 0; i < dims; i++) {
+            double gap = Math.max(rect2.getOrigin(i) - (rect1.getOrigin(i) + rect1.getExtension(i)),
+                    rect1.getOrigin(i) - (rect2.getOrigin(i) + rect2.getExtension(i)));
+            if (gap > 0) {
+                sum += gap * gap;
+            }
+        }
+
+        return Math.sqrt(sum);
+    }
+
     /**
      *
      * @param rectOverlap
@@ -0,0 +1,170 @@
+/*
+Copyright (C) 2013     Enzo Seraphim
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+or visit <http://www.gnu.org/licenses/>
+ */
+package org.obinject.storage;
+
+/**
+ * Maps points of a bounded space to their position along a Hilbert curve.
+ * <p>
+ * Each coordinate is quantized to an integer cell in
+ * [0, 2<sup>bits</sup> - 1], relative to the bounds given at construction,
+ * so negative and fractional coordinates are supported. Coordinates out of
+ * the bounds are clamped to the nearest cell. The cells are then mapped to
+ * the curve with Skilling's transpose algorithm ("Programming the Hilbert
+ * curve", 2004), which works for any number of dimensions.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ */
+public class HilbertCurve {
+
+    private final int dims;
+    private final int bits;
+    private final long maxCell;
+    private final double[] min;
+    private final double[] scale;
+
+    /**
+     * Builds a curve with the largest resolution that fits in a long.
+     *
+     * @param min The lower bound of each dimension.
+     * @param max The upper bound of each dimension.
+     */
+    public HilbertCurve(double[] min, double[] max) {
+        this(min, max, Math.min(31, 63 / min.length));
+    }
+
+    /**
+     * @param min The lower bound of each dimension.
+     * @param max The upper bound of each dimension.
+     * @param bits The number of bits of each quantized coordinate.
+     * @throws IllegalArgumentException If the bounds have different lengths
+     * or if the index does not fit in 63 bits.
+     */
+    public HilbertCurve(double[] min, double[] max, int bits) {
+        if (min.length != max.length || min.length == 0) {
+            throw new IllegalArgumentException("Bounds with different number of dimensions.");
+        }
+        if (bits < 1 || bits > 31 || bits * min.length > 63) {
+            throw new IllegalArgumentException("Invalid number of bits: " + bits + ".");
+        }
+        this.dims = min.length;
+        this.bits = bits;
+        this.maxCell = (1L << bits) - 1;
+        this.min = min.clone();
+        this.scale = new double[dims];
+        for (int d = 0; d < dims; d++) {
+            double range = max[d] - min[d];
+            this.scale[d] = range > 0 ? maxCell / range : 0;
+        }
+    }
+
+    /**
+     * Quantizes a coordinate.
+     *
+     * @param axis The dimension of the coordinate.
+     * @param coord The coordinate.
+     * @return The cell of the coordinate, in [0, 2<sup>bits</sup> - 1].
+     */
+    public long quantize(int axis, double coord) {
+        double cell = (coord - min[axis]) * scale[axis];
+        if (!(cell > 0)) {
+            return 0;
+        }
+        if (cell >= maxCell) {
+            return maxCell;
+        }
+        return (long) cell;
+    }
+
+    /**
+     * @param point The coordinates of the point.
+     * @return The position of the point along the curve.
+     */
+    public long index(double[] point) {
+        long[] cells = new long[dims];
+        for (int d = 0; d < dims; d++) {
+            cells[d] = this.quantize(d, point[d]);
+        }
+        return this.index(cells);
+    }
+
+    /**
+     * Two-dimensional shortcut of {@link #index(double[])}.
+     *
+     * @param x The coordinate of the first dimension.
+     * @param y The coordinate of the second dimension.
+     * @return The position of the point along the curve.
+     */
+    public long index(double x, double y) {
+        return this.index(new long[]{this.quantize(0, x), this.quantize(1, y)});
+    }
+
+    /**
+     * Maps quantized cells to the curve. The array is overwritten.
+     *
+     * @param cells The quantized coordinates.
+     * @return The position of the cells along the curve.
+     */
+    public long index(long[] cells) {
+        long m = 1L << (bits - 1);
+        // Inverse undo
+        for (long q = m; q > 1; q >>= 1) {
+            long p = q - 1;
+            for (int i = 0; i < dims; i++) {
+                if ((cells[i] & q) != 0) {
+                    cells[0] ^= p;
+                } else {
+                    long t = (cells[0] ^ cells[i]) & p;
+                    cells[0] ^= t;
+                    cells[i] ^= t;
+                }
+            }
+        }
+        // Gray encode
+        for (int i = 1; i < dims; i++) {
+            cells[i] ^= cells[i - 1];
+        }
+        long t = 0;
+        for (long q = m; q > 1; q >>= 1) {
+            if ((cells[dims - 1] & q) != 0) {
+                t ^= q - 1;
+            }
+        }
+        for (int i = 0; i < dims; i++) {
+            cells[i] ^= t;
+        }
+        // Interleaving the transposed bits, most significant first
+        long index = 0;
+        for (int b = bits - 1; b >= 0; b--) {
+            for (int i = 0; i < dims; i++) {
+                index = (index << 1) | ((cells[i] >>> b) & 1);
+            }
+        }
+        return index;
+    }
+
+    public int numberOfDimensions() {
+        return dims;
+    }
+
+    public int getBitsPerDimension() {
+        return bits;
+    }
+}
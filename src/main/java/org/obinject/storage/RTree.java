@@ -18,8 +18,13 @@
  */
 package org.obinject.storage;
 
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Stack;
+import java.util.function.Consumer;
 import org.obinject.block.Node;
 import org.obinject.block.RTreeDescriptor;
 import org.obinject.block.RTreeIndex;
@@ -46,16 +51,93 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
     public EuclideanGeometry<R> geometry = new EuclideanGeometry<>(this.getObjectClass());
     PerformanceMeasurement averageForAdd = new AveragePerformance();
     PerformanceMeasurement averageForFind = new AveragePerformance();
+    PerformanceMeasurement averageForSearch = new AveragePerformance();
+    PerformanceMeasurement averageForNearest = new AveragePerformance();
+    private final InsertionMode insertionMode;
+    private final boolean quantized;
+
+    /**
+     * Algorithms used by {@link RTree#add(Rectangle)}.
+     */
+    public enum InsertionMode {
+
+        /**
+         * Least enlargement choose-subtree and Guttman's quadratic split.
+         */
+        QUADRATIC,
+        /**
+         * R*-tree (Beckmann, Kriegel, Schneider and Seeger): overlap
+         * enlargement choose-subtree, forced reinsert and margin split.
+         */
+        RSTAR
+    }
+
+    /**
+     * Minimum fill of a node after an R* split.
+     */
+    private static final double minimumFill = 0.4;
+    /**
+     * Fraction of the entries of an overflowed node moved by the R* forced
+     * reinsert.
+     */
+    private static final double reinsertFraction = 0.3;
+    /**
+     * Entries with the least area enlargement whose overlap enlargement is
+     * computed by the R* choose-subtree.
+     */
+    private static final int overlapCandidates = 32;
+
+    /**
+     * Number of keys that fit in a leaf and in an index, computed once.
+     */
+    private int leafCapacity = 0;
+    private int indexCapacity = 0;
 
     /**
      *
      * @param workspace
      */
     public RTree(Workspace workspace) {
+        this(workspace, InsertionMode.QUADRATIC);
+    }
+
+    /**
+     * The insertion mode is not stored in the workspace: a tree may be
+     * reopened with another mode.
+     *
+     * @param workspace
+     * @param insertionMode The algorithms used by {@link #add(Rectangle)}.
+     */
+    public RTree(Workspace workspace, InsertionMode insertionMode) {
+        this(workspace, insertionMode, false);
+    }
+
+    /**
+     * The format of the nodes is stored in the descriptor of the tree: it is
+     * chosen while the tree is empty and kept when the tree is reopened.
+     * <p>
+     * In the quantized format, the indexes store the keys as 16-bit cells of
+     * a grid over their bounding box, rounded outward, instead of the keys
+     * themselves. The fanout of the indexes grows and the tree gets shorter;
+     * the keys read from an index may be larger than the actual bounding
+     * boxes of the children, but never smaller. The leaves keep the exact
+     * keys.
+     *
+     * @param workspace
+     * @param insertionMode The algorithms used by {@link #add(Rectangle)}.
+     * @param quantized Whether a new tree uses the quantized format.
+     * @see RTreeDescriptor#quantizedFormat
+     */
+    public RTree(Workspace workspace, InsertionMode insertionMode, boolean quantized) {
         super(workspace);
+        this.insertionMode = insertionMode;
         Session se = this.getWorkspace().openSession();
         long pageIdDescriptor = se.findPageIdDescriptor(this.getClassUuid());
         RTreeDescriptor descriptor = new RTreeDescriptor(se.load(pageIdDescriptor));
+        if (descriptor.readRootPageId() == 0) {
+            descriptor.writeFormatVersion(quantized ? RTreeDescriptor.quantizedFormat : RTreeDescriptor.exactFormat);
+        }
+        this.quantized = descriptor.readFormatVersion() == RTreeDescriptor.quantizedFormat;
 
         se.close();
     }
@@ -87,6 +169,8 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
             leaf.writeNextPageId(leaf.getPageId());
             descriptor.writeRootPageId(leaf.getPageId());
             descriptor.incTreeHeight();
+        } else if (this.insertionMode == InsertionMode.RSTAR) {
+            this.insert(se, descriptor, key, key.getUuid(), 0, 0, new boolean[descriptor.readTreeHeight()]);
         } else {
             long[] path = new long[descriptor.readTreeHeight()];
             Node node = se.load(rootPageId);
@@ -127,7 +211,7 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
                         if (index.addKey(objPromote.getSecondKey(), objPromote.getSecondSubPageId())) {
                             promote = false;
                         } else {
-                            newIndex = new RTreeIndex<>(se.create(), this.getObjectClass());
+                            newIndex = new RTreeIndex<>(se.create(), this.getObjectClass(), this.quantized);
                             objPromote = this.splitIndex(se, index, newIndex, objPromote.getSecondKey(), objPromote.getSecondSubPageId());
 //							nodeLeft = index;
 //							nodeRight = newIndex;
@@ -141,7 +225,7 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
 
                 if (promote == true) {
                     // Promote
-                    newIndex = new RTreeIndex<>(se.create(), this.getObjectClass());
+                    newIndex = new RTreeIndex<>(se.create(), this.getObjectClass(), this.quantized);
                     newIndex.addKey(objPromote.getFirstKey(), objPromote.getFistSubPageId());
                     newIndex.addKey(objPromote.getSecondKey(), objPromote.getSecondSubPageId());
                     // Circularly link
@@ -165,8 +249,323 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
 
         return true;
     }
-    
-    
+
+    /**
+     * Builds the tree bottom-up with Sort-Tile-Recursive packing (Leutenegger,
+     * Lopez and Edgington). The entries of a level are sorted by the center
+     * on the first axis and cut into slabs. Each slab is sorted by the next
+     * axis and cut again, down to the last axis. Consecutive runs are then
+     * packed into full nodes. The next level is built the same way from the
+     * MBRs of these nodes, until a single root remains. The nodes of each
+     * level are linked circularly, as {@link #add(Rectangle)} does.
+     * <p>
+     * The keys are copied as they are read, so the iterator may reuse the
+     * same object.
+     *
+     * @param keys The keys to be loaded.
+     * @throws IllegalStateException If the tree is not empty.
+     */
+    public void bulkLoad(Iterator<R> keys) {
+        this.pack(keys, false);
+    }
+
+    /**
+     * Builds the tree bottom-up as a Hilbert packed R-tree (Kamel and
+     * Faloutsos). The entries are sorted by the Hilbert value of their
+     * centers, quantized over the bounds of the data set, and consecutive
+     * runs are packed into full leaves. The upper levels pack the nodes of
+     * the level below in the same order. The nodes of each level are linked
+     * circularly, as {@link #add(Rectangle)} does.
+     * <p>
+     * The keys are copied as they are read, so the iterator may reuse the
+     * same object.
+     *
+     * @param keys The keys to be loaded.
+     * @throws IllegalStateException If the tree is not empty.
+     * @see HilbertCurve
+     */
+    public void bulkLoadHilbert(Iterator<R> keys) {
+        this.pack(keys, true);
+    }
+
+    private void pack(Iterator<R> keys, boolean hilbert) {
+        Session se = this.getWorkspace().openSession();
+        long pageIdDescriptor = se.findPageIdDescriptor(this.getClassUuid());
+        Node nodeDescriptor = se.load(pageIdDescriptor);
+        RTreeDescriptor descriptor = new RTreeDescriptor(nodeDescriptor);
+        if (descriptor.readRootPageId() != 0) {
+            se.close();
+            throw new IllegalStateException("The tree should be empty.");
+        }
+        if (!keys.hasNext()) {
+            se.close();
+            return;
+        }
+
+        // Copying keys (serialized), Uuids and bounds. The keys start at
+        // position 1, because every write to a page sets its first byte
+        // (modified flag).
+        R key = keys.next();
+        int dims = key.numberOfDimensions();
+        int sizeOfKey = key.sizeOfKey();
+        int total = 0;
+        byte[] vecKey = new byte[1 + 64 * sizeOfKey];
+        Uuid[] vecUuid = new Uuid[64];
+        double[][] lower = new double[dims][64];
+        double[][] upper = new double[dims][64];
+        while (true) {
+            if (total == vecUuid.length) {
+                vecKey = Arrays.copyOf(vecKey, 1 + 2 * total * sizeOfKey);
+                vecUuid = Arrays.copyOf(vecUuid, 2 * total);
+                for (int d = 0; d < dims; d++) {
+                    lower[d] = Arrays.copyOf(lower[d], 2 * total);
+                    upper[d] = Arrays.copyOf(upper[d], 2 * total);
+                }
+            }
+            key.pushKey(vecKey, 1 + total * sizeOfKey);
+            vecUuid[total] = key.getUuid();
+            for (int d = 0; d < dims; d++) {
+                lower[d][total] = key.getOrigin(d);
+                upper[d][total] = key.getOrigin(d) + key.getExtension(d);
+            }
+            total++;
+            if (!keys.hasNext()) {
+                break;
+            }
+            key = keys.next();
+        }
+
+        // Capacity of leaves and indexes
+        int sizeOfArray = nodeDescriptor.getArray().length;
+        double[] minPoint = new double[dims];
+        double[] maxPoint = new double[dims];
+        R scratch = this.geometry.rectangle(minPoint, maxPoint);
+        int leafCapacity = this.capacity(true, scratch.sizeOfKey(), sizeOfArray);
+        int indexCapacity = this.capacity(false, scratch.sizeOfKey(), sizeOfArray);
+
+        // Building one level per iteration, from the leaves up to the root
+        boolean leafLevel = true;
+        int count = total;
+        R[] levelKeys = null;
+        long[] levelPageIds = null;
+        int height = 0;
+        do {
+            int capacity = leafLevel ? leafCapacity : indexCapacity;
+            int[] order = new int[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            if (!hilbert) {
+                this.tile(order, 0, count, 0, lower, upper, capacity);
+            } else if (leafLevel) {
+                // upper levels are already in Hilbert order
+                this.sortByHilbert(order, lower, upper);
+            }
+
+            int nodes = (count + capacity - 1) / capacity;
+            R[] nodeKeys = newKeyArray(nodes);
+            long[] nodePageIds = new long[nodes];
+            double[][] nodeLower = new double[dims][nodes];
+            double[][] nodeUpper = new double[dims][nodes];
+            RTreeNode<R> firstNode = null, previousNode = null;
+
+            for (int n = 0; n < nodes; n++) {
+                Node node = se.create();
+                RTreeLeaf<R> leaf = leafLevel ? new RTreeLeaf<>(node, this.getObjectClass()) : null;
+                RTreeIndex<R> index = leafLevel ? null : new RTreeIndex<>(node, this.getObjectClass(), this.quantized);
+                Arrays.fill(minPoint, Double.POSITIVE_INFINITY);
+                Arrays.fill(maxPoint, Double.NEGATIVE_INFINITY);
+
+                for (int i = n * capacity; i < Math.min(count, (n + 1) * capacity); i++) {
+                    int e = order[i];
+                    for (int d = 0; d < dims; d++) {
+                        minPoint[d] = Math.min(minPoint[d], lower[d][e]);
+                        maxPoint[d] = Math.max(maxPoint[d], upper[d][e]);
+                    }
+                }
+
+                // MBR promoted to the next level
+                nodeKeys[n] = this.geometry.rectangle(minPoint, maxPoint);
+                if (!leafLevel) {
+                    // keys quantized once, over the final box
+                    index.enlargeReference(nodeKeys[n]);
+                }
+
+                for (int i = n * capacity; i < Math.min(count, (n + 1) * capacity); i++) {
+                    int e = order[i];
+                    if (leafLevel) {
+                        scratch.pullKey(vecKey, 1 + e * sizeOfKey);
+                        leaf.addKey(scratch, vecUuid[e]);
+                    } else {
+                        index.addKey(levelKeys[e], levelPageIds[e]);
+                    }
+                }
+                nodePageIds[n] = node.getPageId();
+                for (int d = 0; d < dims; d++) {
+                    nodeLower[d][n] = nodeKeys[n].getOrigin(d);
+                    nodeUpper[d][n] = nodeKeys[n].getOrigin(d) + nodeKeys[n].getExtension(d);
+                }
+
+                // Circularly link
+                RTreeNode<R> current = leafLevel ? leaf : index;
+                if (previousNode == null) {
+                    firstNode = current;
+                } else {
+                    previousNode.writeNextPageId(current.getPageId());
+                    current.writePreviousPageId(previousNode.getPageId());
+                    if (previousNode != firstNode) {
+                        se.unpin(previousNode.getPageId());
+                    }
+                }
+                previousNode = current;
+            }
+            previousNode.writeNextPageId(firstNode.getPageId());
+            firstNode.writePreviousPageId(previousNode.getPageId());
+            if (previousNode != firstNode) {
+                se.unpin(previousNode.getPageId());
+            }
+            se.unpin(firstNode.getPageId());
+
+            leafLevel = false;
+            count = nodes;
+            levelKeys = nodeKeys;
+            levelPageIds = nodePageIds;
+            lower = nodeLower;
+            upper = nodeUpper;
+            height++;
+        } while (count > 1);
+
+        descriptor.writeRootPageId(levelPageIds[0]);
+        descriptor.writeTreeHeight(height);
+        se.close();
+    }
+
+    /**
+     * Sorts entries {@code from} (inclusive) to {@code to} (exclusive) of
+     * {@code order} by the center on {@code axis}, then tiles each slab on
+     * the next axis (Sort-Tile-Recursive).
+     */
+    private void tile(int[] order, int from, int to, int axis, double[][] lower, double[][] upper, int capacity) {
+        int dims = lower.length;
+        this.sortByCenter(order, from, to - 1, lower[axis], upper[axis]);
+        if (axis == dims - 1) {
+            return;
+        }
+        int pages = (to - from + capacity - 1) / capacity;
+        int slabs = (int) Math.ceil(Math.pow(pages, 1.0 / (dims - axis)));
+        int sizeOfSlab = capacity * ((pages + slabs - 1) / slabs);
+        for (int start = from; start < to; start += sizeOfSlab) {
+            this.tile(order, start, Math.min(to, start + sizeOfSlab), axis + 1, lower, upper, capacity);
+        }
+    }
+
+    private void sortByCenter(int[] order, int left, int right, double[] lower, double[] upper) {
+        while (right - left > 16) {
+            int mid = order[(left + right) >>> 1];
+            double pivot = lower[mid] + upper[mid];
+            int i = left, j = right;
+            while (i <= j) {
+                while (lower[order[i]] + upper[order[i]] < pivot) {
+                    i++;
+                }
+                while (lower[order[j]] + upper[order[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int aux = order[i];
+                    order[i++] = order[j];
+                    order[j--] = aux;
+                }
+            }
+            // recursion on the smaller side
+            if (j - left < right - i) {
+                this.sortByCenter(order, left, j, lower, upper);
+                left = i;
+            } else {
+                this.sortByCenter(order, i, right, lower, upper);
+                right = j;
+            }
+        }
+        for (int i = left + 1; i <= right; i++) {
+            int e = order[i];
+            double center = lower[e] + upper[e];
+            int j = i - 1;
+            while (j >= left && lower[order[j]] + upper[order[j]] > center) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = e;
+        }
+    }
+
+    /**
+     * Sorts {@code order} by the Hilbert value of the centers, quantized over
+     * the bounds of all the entries.
+     */
+    private void sortByHilbert(int[] order, double[][] lower, double[][] upper) {
+        int dims = lower.length;
+        int count = order.length;
+        double[] minPoint = new double[dims];
+        double[] maxPoint = new double[dims];
+        Arrays.fill(minPoint, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxPoint, Double.NEGATIVE_INFINITY);
+        for (int d = 0; d < dims; d++) {
+            for (int i = 0; i < count; i++) {
+                minPoint[d] = Math.min(minPoint[d], lower[d][i] + upper[d][i]);
+                maxPoint[d] = Math.max(maxPoint[d], lower[d][i] + upper[d][i]);
+            }
+        }
+        // centers are kept doubled, as in sortByCenter
+        HilbertCurve curve = new HilbertCurve(minPoint, maxPoint);
+        long[] values = new long[count];
+        double[] center = new double[dims];
+        for (int i = 0; i < count; i++) {
+            for (int d = 0; d < dims; d++) {
+                center[d] = lower[d][i] + upper[d][i];
+            }
+            values[i] = curve.index(center);
+        }
+        this.sortByValue(order, 0, count - 1, values);
+    }
+
+    private void sortByValue(int[] order, int left, int right, long[] values) {
+        while (right - left > 16) {
+            long pivot = values[order[(left + right) >>> 1]];
+            int i = left, j = right;
+            while (i <= j) {
+                while (values[order[i]] < pivot) {
+                    i++;
+                }
+                while (values[order[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int aux = order[i];
+                    order[i++] = order[j];
+                    order[j--] = aux;
+                }
+            }
+            // recursion on the smaller side
+            if (j - left < right - i) {
+                this.sortByValue(order, left, j, values);
+                left = i;
+            } else {
+                this.sortByValue(order, i, right, values);
+                right = j;
+            }
+        }
+        for (int i = left + 1; i <= right; i++) {
+            int e = order[i];
+            long value = values[e];
+            int j = i - 1;
+            while (j >= left && values[order[j]] > value) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = e;
+        }
+    }
+
     @Override
     public Uuid find(R key) {
         long time = System.nanoTime();
@@ -220,6 +619,100 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
         return uuidFinded;
     }
 
+    /**
+     * Window query. The index entries that do not overlap the window are
+     * pruned, and the Uuids of the leaf keys that overlap it are streamed to
+     * the consumer, so only O(log n + k) pages are read. Each page is
+     * unpinned as soon as it is processed.
+     *
+     * @param window The query window.
+     * @param consumer Receives the Uuid of each key that overlaps the window.
+     */
+    public void search(R window, Consumer<Uuid> consumer) {
+        long time = System.nanoTime();
+        Session se = this.getWorkspace().openSession();
+        long diskAccess = se.getBlockAccess();
+        long verifications = this.geometry.getCalculatedOverlap();
+        long pageIdDescriptor = se.findPageIdDescriptor(this.getClassUuid());
+        RTreeDescriptor descriptor = new RTreeDescriptor(se.load(pageIdDescriptor));
+        Stack<Long> qualifies = new Stack<>();
+        if (descriptor.readRootPageId() != 0) {
+            qualifies.push(descriptor.readRootPageId());
+        }
+        // keys are read into a single cursor, without reflection
+        R cursor = null;
+
+        while (!qualifies.isEmpty()) {
+            long pageId = qualifies.pop();
+            Node node = se.load(pageId);
+
+            if (RTreeIndex.matchNodeType(node)) {
+                RTreeIndex<R> index = new RTreeIndex<>(node, this.getObjectClass());
+                int total = index.readNumberOfKeys();
+                // children pushed in reverse, to be visited in order
+                for (int i = total - 1; i >= 0; i--) {
+                    cursor = index.readKey(i, cursor);
+                    if (geometry.isOverlap(cursor, window)) {
+                        qualifies.push(index.readSubPageId(i));
+                    }
+                }
+            } else {
+                RTreeLeaf<R> leaf = new RTreeLeaf<>(node, this.getObjectClass());
+                int total = leaf.readNumberOfKeys();
+                for (int i = 0; i < total; i++) {
+                    cursor = leaf.readKey(i, cursor);
+                    if (geometry.isOverlap(cursor, window)) {
+                        consumer.accept(leaf.readEntityUuid(i));
+                    }
+                }
+            }
+            se.unpin(pageId);
+        }
+        se.close();
+        //statistic for search
+        diskAccess = se.getBlockAccess() - diskAccess;
+        averageForSearch.incrementDiskAccess(diskAccess);
+        verifications = this.geometry.getCalculatedOverlap() - verifications;
+        averageForSearch.incrementVerification(verifications);
+        time = System.nanoTime() - time;
+        averageForSearch.incrementTime(time);
+        averageForSearch.incrementMeasurement();
+    }
+
+    /**
+     * Iterator variant of {@link #search(Rectangle, Consumer)}. The tree is
+     * traversed lazily: a page is read only when the keys already found are
+     * consumed, and it is unpinned as soon as it is processed. The tree
+     * should not be changed while the iterator is in use.
+     *
+     * @param window The query window.
+     * @return The Uuids of the keys that overlap the window.
+     */
+    public Iterator<Uuid> search(R window) {
+        return new WindowIterator(window);
+    }
+
+    /**
+     * Incremental nearest neighbor search (best-first, Hjaltason and Samet).
+     * A priority queue holds the keys and the index entries ordered by their
+     * distance to the query. The index entries are ranked by MINDIST, which
+     * bounds from below the distance to any key of their subtrees, so the
+     * keys come out in ascending distance and a page is read only when its
+     * entry reaches the head of the queue. Each key returned carries its
+     * distance in {@link Rectangle#setPreservedDistance(double)}.
+     * <p>
+     * The {@code distanceTo} of the keys should not be smaller than the
+     * distance between the rectangles. The disk accesses are accumulated in
+     * {@link #getAverageForNearest()}. The tree should not be changed while
+     * the iterator is in use.
+     *
+     * @param query The query.
+     * @return The keys of the tree, nearest first.
+     */
+    public Iterator<R> nearest(R query) {
+        return new NearestIterator(query);
+    }
+
     @Override
     public long getRootPageId() {
         Session se = this.getWorkspace().openSession();
@@ -248,6 +741,26 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
         return averageForFind;
     }
 
+    /**
+     *
+     * @return
+     */
+    public PerformanceMeasurement getAverageForSearch() {
+        return averageForSearch;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public PerformanceMeasurement getAverageForNearest() {
+        return averageForNearest;
+    }
+
+    public InsertionMode getInsertionMode() {
+        return insertionMode;
+    }
+
     public int height() {
         int height = 0;
 
@@ -425,6 +938,16 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
         //cleanning newIndex and inserting vecKey[idx2]
         newIndex.clear();
         newIndex.addKey(vecKey[idx2], vecSub[idx2]);
+        if (fullIndex.isQuantized()) {
+            // keys quantized once, over the box of all keys, instead of at
+            // each enlargement of the groups
+            R mbr = vecKey[0];
+            for (i = 1; i < total; i++) {
+                mbr = geometry.union(mbr, vecKey[i]);
+            }
+            fullIndex.enlargeReference(mbr);
+            newIndex.enlargeReference(mbr);
+        }
         //promoted MBR
         objPromote = new RTreePromotion(vecKey[idx1], fullIndex.getPageId(), vecKey[idx2], newIndex.getPageId());
         // Distributing keys
@@ -503,6 +1026,407 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
         return objPromote;
     }
 
+    /**
+     * Insertion of an entry into a node of the given level (zero for the
+     * leaves), with the algorithms of the insertion mode. In R* mode,
+     * overflows are treated once per level with a forced reinsert and
+     * otherwise with a split, up to the root.
+     *
+     * @param uuid The Uuid of a leaf entry.
+     * @param subPageId The sub page of an index entry.
+     * @param level The level of the node that receives the entry.
+     * @param reinserted The levels where a forced reinsert already happened
+     * in this insertion.
+     */
+    private void insert(Session se, RTreeDescriptor descriptor, R key, Uuid uuid, long subPageId, int level, boolean[] reinserted) {
+        int height = descriptor.readTreeHeight();
+        int depth = height - 1 - level;
+        long[] path = new long[depth + 1];
+        Node node = se.load(descriptor.readRootPageId());
+
+        // Descend to the level, enlarging the chosen entries
+        for (int i = 0; i < depth; i++) {
+            path[i] = node.getPageId();
+            RTreeIndex<R> index = new RTreeIndex<>(node, this.getObjectClass());
+            int qualify = (this.insertionMode == InsertionMode.RSTAR)
+                    ? this.chooseSubtree(index, key, i == height - 2)
+                    : index.indexOfInsertion(key, this.geometry);
+            node = se.load(index.readSubPageId(qualify));
+        }
+        path[depth] = node.getPageId();
+
+        boolean added = (level == 0)
+                ? new RTreeLeaf<>(node, this.getObjectClass()).addKey(key, uuid)
+                : new RTreeIndex<>(node, this.getObjectClass()).addKey(key, subPageId);
+
+        while (!added) {
+            level = height - 1 - depth;
+            RTreeLeaf<R> leaf = (level == 0) ? new RTreeLeaf<>(node, this.getObjectClass()) : null;
+            RTreeIndex<R> index = (level == 0) ? null : new RTreeIndex<>(node, this.getObjectClass());
+            RTreeNode<R> full = (level == 0) ? leaf : index;
+            Node created;
+            R firstKey, secondKey;
+
+            if (this.insertionMode == InsertionMode.QUADRATIC) {
+                created = se.create();
+                RTreePromotion objPromote = (level == 0)
+                        ? this.splitLeaf(se, leaf, new RTreeLeaf<>(created, this.getObjectClass()), key, uuid)
+                        : this.splitIndex(se, index, new RTreeIndex<>(created, this.getObjectClass(), this.quantized), key, subPageId);
+                firstKey = objPromote.getFirstKey();
+                secondKey = objPromote.getSecondKey();
+            } else {
+                // Copying keys and entries
+                int total = full.readNumberOfKeys() + 1;
+                R[] vecKey = newKeyArray(total);
+                Uuid[] vecUuid = new Uuid[total];
+                long[] vecSub = new long[total];
+                for (int i = 0; i < total - 1; i++) {
+                    vecKey[i] = full.buildKey(i);
+                    if (level == 0) {
+                        vecUuid[i] = leaf.readEntityUuid(i);
+                    } else {
+                        vecSub[i] = index.readSubPageId(i);
+                    }
+                }
+                vecKey[total - 1] = key;
+                vecUuid[total - 1] = uuid;
+                vecSub[total - 1] = subPageId;
+
+                if (depth > 0 && level < reinserted.length && !reinserted[level]) {
+                    // Forced reinsert: the entries farthest from the center leave
+                    reinserted[level] = true;
+                    int[] order = this.sortByDistanceToCenter(vecKey);
+                    int kept = total - Math.max(1, (int) (total * reinsertFraction));
+                    this.fill(full, vecKey, vecUuid, vecSub, order, 0, kept);
+                    for (int d = depth; d > 0; d--) {
+                        this.adjustParent(se, path[d - 1], path[d]);
+                    }
+                    // close reinsert: the nearest of the removed entries first
+                    for (int i = kept; i < total; i++) {
+                        int e = order[i];
+                        this.insert(se, descriptor, vecKey[e], vecUuid[e], vecSub[e], level, reinserted);
+                    }
+                    return;
+                }
+
+                // Split
+                int[] order = new int[total];
+                int cut = this.splitRStar(vecKey, order);
+                created = se.create();
+                RTreeNode<R> newNode = (level == 0)
+                        ? new RTreeLeaf<>(created, this.getObjectClass())
+                        : new RTreeIndex<>(created, this.getObjectClass(), this.quantized);
+                this.fill(full, vecKey, vecUuid, vecSub, order, 0, cut);
+                this.fill(newNode, vecKey, vecUuid, vecSub, order, cut, total);
+                firstKey = this.boundingKey(full);
+                secondKey = this.boundingKey(newNode);
+
+                // Circularly link
+                created.writeNextPageId(node.readNextPageId());
+                node.writeNextPageId(created.getPageId());
+                created.writePreviousPageId(node.getPageId());
+                long nextPageId = created.readNextPageId();
+                if (nextPageId != node.getPageId()) {
+                    se.load(nextPageId).writePreviousPageId(created.getPageId());
+                } else {
+                    node.writePreviousPageId(created.getPageId());
+                }
+            }
+
+            if (depth == 0) {
+                // Promote
+                RTreeIndex<R> newRoot = new RTreeIndex<>(se.create(), this.getObjectClass(), this.quantized);
+                newRoot.addKey(firstKey, node.getPageId());
+                newRoot.addKey(secondKey, created.getPageId());
+                // Circularly link
+                newRoot.writePreviousPageId(newRoot.getPageId());
+                newRoot.writeNextPageId(newRoot.getPageId());
+                descriptor.writeRootPageId(newRoot.getPageId());
+                descriptor.incTreeHeight();
+                return;
+            }
+
+            depth--;
+            RTreeIndex<R> parent = new RTreeIndex<>(se.load(path[depth]), this.getObjectClass());
+            parent.replace(parent.indexOfSubPageId(node.getPageId()), firstKey);
+            node = parent;
+            key = secondKey;
+            uuid = null;
+            subPageId = created.getPageId();
+            added = parent.addKey(key, subPageId);
+        }
+    }
+
+    /**
+     * Creates an array of keys. The array is a {@code Rectangle[]}, which is
+     * enough because it never leaves the tree.
+     */
+    @SuppressWarnings("unchecked")
+    private R[] newKeyArray(int length) {
+        return (R[]) new Rectangle<?>[length];
+    }
+
+    /**
+     * R* choose-subtree. When the children are leaves, the entry with the
+     * least overlap enlargement is chosen among the entries with the least
+     * area enlargement. Otherwise the entry with the least area enlargement
+     * is chosen. Ties are resolved by the least area. The chosen entry is
+     * enlarged to hold the key.
+     *
+     * @return The position of the chosen entry.
+     */
+    private int chooseSubtree(RTreeIndex<R> index, R key, boolean leafChildren) {
+        int total = index.readNumberOfKeys();
+        R[] vecKey = newKeyArray(total);
+        R[] vecUnion = newKeyArray(total);
+        double[] occupancy = new double[total];
+        double[] enlargement = new double[total];
+        int[] order = new int[total];
+        for (int i = 0; i < total; i++) {
+            vecKey[i] = index.buildKey(i);
+            vecUnion[i] = this.geometry.union(vecKey[i], key);
+            occupancy[i] = this.geometry.occupancy(vecKey[i]);
+            enlargement[i] = this.geometry.occupancy(vecUnion[i]) - occupancy[i];
+            order[i] = i;
+        }
+        this.sortByCenter(order, 0, total - 1, enlargement, enlargement);
+
+        int idx = order[0];
+        if (leafChildren) {
+            double minOverlap = Double.MAX_VALUE;
+            for (int c = 0; c < Math.min(total, overlapCandidates); c++) {
+                int i = order[c];
+                double overlap = 0;
+                for (int j = 0; j < total; j++) {
+                    if (j != i) {
+                        overlap += this.geometry.overlap(vecUnion[i], vecKey[j]) - this.geometry.overlap(vecKey[i], vecKey[j]);
+                    }
+                }
+                if (overlap < minOverlap || (overlap == minOverlap
+                        && (enlargement[i] < enlargement[idx] || (enlargement[i] == enlargement[idx] && occupancy[i] < occupancy[idx])))) {
+                    minOverlap = overlap;
+                    idx = i;
+                }
+            }
+        } else {
+            for (int c = 1; c < total && enlargement[order[c]] == enlargement[idx]; c++) {
+                if (occupancy[order[c]] < occupancy[idx]) {
+                    idx = order[c];
+                }
+            }
+        }
+
+        // If MBR was enlarged:
+        if (enlargement[idx] != 0) {
+            index.replace(idx, vecUnion[idx]);
+        }
+        return idx;
+    }
+
+    /**
+     * R* split. The axis with the least sum of margins over all the
+     * distributions (entries sorted by lower and by upper bound) is chosen.
+     * On that axis, the distribution with the least overlap is chosen, and
+     * ties are resolved by the least area.
+     *
+     * @param vecKey The keys to be split.
+     * @param order Receives the positions of the keys, the first group
+     * before the returned cut.
+     * @return The number of keys of the first group.
+     */
+    private int splitRStar(R[] vecKey, int[] order) {
+        int total = vecKey.length;
+        int dims = vecKey[0].numberOfDimensions();
+        int min = Math.max(1, (int) (total * minimumFill));
+        double[][] lower = new double[dims][total];
+        double[][] upper = new double[dims][total];
+        for (int i = 0; i < total; i++) {
+            for (int d = 0; d < dims; d++) {
+                lower[d][i] = vecKey[i].getOrigin(d);
+                upper[d][i] = vecKey[i].getOrigin(d) + vecKey[i].getExtension(d);
+            }
+        }
+
+        // Choose split axis
+        int[][] sorted = new int[2][total];
+        int bestAxis = 0;
+        double bestMargin = Double.MAX_VALUE;
+        for (int axis = 0; axis < dims; axis++) {
+            double margin = 0;
+            for (int s = 0; s < 2; s++) {
+                double[][] costs = this.distributions(sorted[s], s == 0 ? lower[axis] : upper[axis], lower, upper, min);
+                for (double m : costs[0]) {
+                    margin += m;
+                }
+            }
+            if (margin < bestMargin) {
+                bestMargin = margin;
+                bestAxis = axis;
+            }
+        }
+
+        // Choose split index
+        double bestOverlap = Double.MAX_VALUE;
+        double bestArea = Double.MAX_VALUE;
+        int cut = min;
+        for (int s = 0; s < 2; s++) {
+            double[][] costs = this.distributions(sorted[s], s == 0 ? lower[bestAxis] : upper[bestAxis], lower, upper, min);
+            for (int k = 0; k < costs[1].length; k++) {
+                if (costs[1][k] < bestOverlap || (costs[1][k] == bestOverlap && costs[2][k] < bestArea)) {
+                    bestOverlap = costs[1][k];
+                    bestArea = costs[2][k];
+                    cut = min + k;
+                    System.arraycopy(sorted[s], 0, order, 0, total);
+                }
+            }
+        }
+        return cut;
+    }
+
+    /**
+     * Sorts {@code order} by {@code bounds} and computes the margin, overlap
+     * and area of each distribution of the sorted entries in two groups of
+     * at least {@code min} entries. The bounding boxes of the prefixes and
+     * suffixes are computed once, so each distribution costs O(dims).
+     *
+     * @return The margins, overlaps and areas, indexed by the size of the
+     * first group minus {@code min}.
+     */
+    private double[][] distributions(int[] order, double[] bounds, double[][] lower, double[][] upper, int min) {
+        int total = order.length;
+        int dims = lower.length;
+        for (int i = 0; i < total; i++) {
+            order[i] = i;
+        }
+        // the center of [b, b] is b
+        this.sortByCenter(order, 0, total - 1, bounds, bounds);
+
+        double[][] prefixMin = new double[dims][total];
+        double[][] prefixMax = new double[dims][total];
+        double[][] suffixMin = new double[dims][total];
+        double[][] suffixMax = new double[dims][total];
+        for (int d = 0; d < dims; d++) {
+            prefixMin[d][0] = lower[d][order[0]];
+            prefixMax[d][0] = upper[d][order[0]];
+            for (int i = 1; i < total; i++) {
+                prefixMin[d][i] = Math.min(prefixMin[d][i - 1], lower[d][order[i]]);
+                prefixMax[d][i] = Math.max(prefixMax[d][i - 1], upper[d][order[i]]);
+            }
+            suffixMin[d][total - 1] = lower[d][order[total - 1]];
+            suffixMax[d][total - 1] = upper[d][order[total - 1]];
+            for (int i = total - 2; i >= 0; i--) {
+                suffixMin[d][i] = Math.min(suffixMin[d][i + 1], lower[d][order[i]]);
+                suffixMax[d][i] = Math.max(suffixMax[d][i + 1], upper[d][order[i]]);
+            }
+        }
+
+        int count = total - 2 * min + 1;
+        double[][] costs = new double[3][count];
+        for (int k = 0; k < count; k++) {
+            int last = min + k - 1; // last entry of the first group
+            double margin = 0, overlap = 1, area1 = 1, area2 = 1;
+            for (int d = 0; d < dims; d++) {
+                double ext1 = prefixMax[d][last] - prefixMin[d][last];
+                double ext2 = suffixMax[d][last + 1] - suffixMin[d][last + 1];
+                margin += ext1 + ext2;
+                area1 *= ext1;
+                area2 *= ext2;
+                overlap *= Math.max(0, Math.min(prefixMax[d][last], suffixMax[d][last + 1]) - Math.max(prefixMin[d][last], suffixMin[d][last + 1]));
+            }
+            costs[0][k] = margin;
+            costs[1][k] = overlap;
+            costs[2][k] = area1 + area2;
+        }
+        return costs;
+    }
+
+    /**
+     * @return The positions of the keys sorted by the distance between
+     * their centers and the center of their bounding box.
+     */
+    private int[] sortByDistanceToCenter(R[] vecKey) {
+        int total = vecKey.length;
+        int dims = vecKey[0].numberOfDimensions();
+        double[] minPoint = new double[dims];
+        double[] maxPoint = new double[dims];
+        Arrays.fill(minPoint, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxPoint, Double.NEGATIVE_INFINITY);
+        for (R key : vecKey) {
+            for (int d = 0; d < dims; d++) {
+                minPoint[d] = Math.min(minPoint[d], key.getOrigin(d));
+                maxPoint[d] = Math.max(maxPoint[d], key.getOrigin(d) + key.getExtension(d));
+            }
+        }
+        // squared distances between doubled centers keep the order
+        double[] distance = new double[total];
+        int[] order = new int[total];
+        for (int i = 0; i < total; i++) {
+            for (int d = 0; d < dims; d++) {
+                double delta = 2 * vecKey[i].getOrigin(d) + vecKey[i].getExtension(d) - (minPoint[d] + maxPoint[d]);
+                distance[i] += delta * delta;
+            }
+            order[i] = i;
+        }
+        this.sortByCenter(order, 0, total - 1, distance, distance);
+        return order;
+    }
+
+    /**
+     * Clears the node and adds the entries {@code order[from]} (inclusive)
+     * to {@code order[to]} (exclusive).
+     */
+    private void fill(RTreeNode<R> node, R[] vecKey, Uuid[] vecUuid, long[] vecSub, int[] order, int from, int to) {
+        node.clear();
+        if (node.isQuantized()) {
+            // keys quantized once, over the box of the group
+            R mbr = vecKey[order[from]];
+            for (int i = from + 1; i < to; i++) {
+                mbr = this.geometry.union(mbr, vecKey[order[i]]);
+            }
+            node.enlargeReference(mbr);
+        }
+        for (int i = from; i < to; i++) {
+            int e = order[i];
+            boolean added = (node instanceof RTreeLeaf)
+                    ? ((RTreeLeaf<R>) node).addKey(vecKey[e], vecUuid[e])
+                    : ((RTreeIndex<R>) node).addKey(vecKey[e], vecSub[e]);
+            if (!added) {
+                throw new RuntimeException("add fail");
+            }
+        }
+    }
+
+    /**
+     * Replaces the entry of the child in the parent by the bounding box of
+     * the child.
+     */
+    private void adjustParent(Session se, long parentPageId, long childPageId) {
+        RTreeIndex<R> parent = new RTreeIndex<>(se.load(parentPageId), this.getObjectClass());
+        RTreeNode<R> child = new RTreeNode<>(se.load(childPageId), this.getObjectClass());
+        parent.replace(parent.indexOfSubPageId(childPageId), this.boundingKey(child));
+    }
+
+    /**
+     * @return The bounding box of the keys of the node.
+     */
+    private R boundingKey(RTreeNode<R> node) {
+        int total = node.readNumberOfKeys();
+        R key = node.buildKey(0);
+        int dims = key.numberOfDimensions();
+        double[] minPoint = new double[dims];
+        double[] maxPoint = new double[dims];
+        Arrays.fill(minPoint, Double.POSITIVE_INFINITY);
+        Arrays.fill(maxPoint, Double.NEGATIVE_INFINITY);
+        for (int i = 0; i < total; i++) {
+            key = (i == 0) ? key : node.buildKey(i);
+            for (int d = 0; d < dims; d++) {
+                minPoint[d] = Math.min(minPoint[d], key.getOrigin(d));
+                maxPoint[d] = Math.max(maxPoint[d], key.getOrigin(d) + key.getExtension(d));
+            }
+        }
+        return this.geometry.rectangle(minPoint, maxPoint);
+    }
+
     class RTreePromotion {
 
         private R firstKey;
@@ -640,14 +1564,329 @@ public abstract class RTree<R extends Rectangle<R> & Entity<? super R>> extends
     }
 
     /**
-     * Remove key that has the same uuid.
+     * Remove key that has the same uuid and coordinates (Guttman's delete).
+     * The leaf that holds the key is found and the key is removed. Then the
+     * tree is condensed along the path: underfull nodes are taken off the
+     * tree and their entries are reinserted at their levels, and the MBRs of
+     * the path are shrunk to the keys they still hold. A root with a single
+     * child is replaced by the child.
+     * <p>
+     * The workspaces do not reuse pages, so the pages taken off the tree are
+     * only cleared and unlinked.
      *
      * @param key
-     * @return
+     * @return {@code true} if the key was found and removed.
      */
     @Override
     public boolean remove(R key) {
-        return false;
+        Session se = this.getWorkspace().openSession();
+        long pageIdDescriptor = se.findPageIdDescriptor(this.getClassUuid());
+        Node nodeDescriptor = se.load(pageIdDescriptor);
+        RTreeDescriptor descriptor = new RTreeDescriptor(nodeDescriptor);
+        int height = descriptor.readTreeHeight();
+        long[] path = new long[height];
+        int idx = (descriptor.readRootPageId() == 0) ? -1 : this.findLeaf(se, descriptor.readRootPageId(), key, path, 0);
+        if (idx == -1) {
+            se.close();
+            return false;
+        }
+
+        RTreeNode<R> node = new RTreeLeaf<>(se.load(path[height - 1]), this.getObjectClass());
+        node.removeKey(idx);
+
+        // Condense tree
+        int sizeOfArray = nodeDescriptor.getArray().length;
+        int minimumLeaf = Math.max(1, (int) (this.capacity(true, key.sizeOfKey(), sizeOfArray) * minimumFill));
+        int minimumIndex = Math.max(1, (int) (this.capacity(false, key.sizeOfKey(), sizeOfArray) * minimumFill));
+        LinkedList<RTreeOrphan> orphans = new LinkedList<>();
+        for (int depth = height - 1; depth > 0; depth--) {
+            RTreeIndex<R> parent = new RTreeIndex<>(se.load(path[depth - 1]), this.getObjectClass());
+            int entry = parent.indexOfSubPageId(node.getPageId());
+            int level = height - 1 - depth;
+            int total = node.readNumberOfKeys();
+
+            // the last entry of the root is kept
+            if (total < (level == 0 ? minimumLeaf : minimumIndex) && (depth > 1 || parent.readNumberOfKeys() > 1)) {
+                for (int i = 0; i < total; i++) {
+                    if (level == 0) {
+                        orphans.add(new RTreeOrphan(node.buildKey(i), ((RTreeLeaf<R>) node).readEntityUuid(i), 0, level));
+                    } else {
+                        orphans.add(new RTreeOrphan(node.buildKey(i), null, ((RTreeIndex<R>) node).readSubPageId(i), level));
+                    }
+                }
+                parent.removeKey(entry);
+                // Circularly unlink
+                long previousPageId = node.readPreviousPageId();
+                long nextPageId = node.readNextPageId();
+                se.load(previousPageId).writeNextPageId(nextPageId);
+                se.load(nextPageId).writePreviousPageId(previousPageId);
+                node.clear();
+            } else if (total > 0) {
+                parent.replace(entry, this.boundingKey(node));
+            }
+            node = parent;
+        }
+
+        // Reinserting the entries of the removed nodes, upper levels first
+        orphans.sort((orphan1, orphan2) -> orphan2.level - orphan1.level);
+        for (RTreeOrphan orphan : orphans) {
+            this.insert(se, descriptor, orphan.key, orphan.uuid, orphan.subPageId, orphan.level, new boolean[descriptor.readTreeHeight()]);
+        }
+
+        // Shrinking the root
+        Node root = se.load(descriptor.readRootPageId());
+        while (RTreeIndex.matchNodeType(root) && new RTreeIndex<>(root, this.getObjectClass()).readNumberOfKeys() == 1) {
+            RTreeIndex<R> index = new RTreeIndex<>(root, this.getObjectClass());
+            long subPageId = index.readSubPageId(0);
+            index.clear();
+            descriptor.writeRootPageId(subPageId);
+            descriptor.writeTreeHeight(descriptor.readTreeHeight() - 1);
+            root = se.load(subPageId);
+        }
+        if (!RTreeIndex.matchNodeType(root) && new RTreeLeaf<>(root, this.getObjectClass()).readNumberOfKeys() == 0) {
+            // Tree is empty
+            descriptor.writeRootPageId(0);
+            descriptor.writeTreeHeight(0);
+        }
+        se.close();
+        return true;
+    }
+
+    /**
+     * Depth-first search of the leaf that holds the key, following every
+     * entry that overlaps it.
+     *
+     * @param path Receives the page ids from the root to the leaf.
+     * @return The position of the key in the leaf, or -1 if not found.
+     */
+    private int findLeaf(Session se, long pageId, R key, long[] path, int depth) {
+        path[depth] = pageId;
+        Node node = se.load(pageId);
+        if (RTreeIndex.matchNodeType(node)) {
+            RTreeIndex<R> index = new RTreeIndex<>(node, this.getObjectClass());
+            int total = index.readNumberOfKeys();
+            for (int i = 0; i < total; i++) {
+                if (this.geometry.isOverlap(index.buildKey(i), key)) {
+                    int idx = this.findLeaf(se, index.readSubPageId(i), key, path, depth + 1);
+                    if (idx != -1) {
+                        return idx;
+                    }
+                }
+            }
+            return -1;
+        }
+        RTreeLeaf<R> leaf = new RTreeLeaf<>(node, this.getObjectClass());
+        int total = leaf.readNumberOfKeys();
+        for (int i = 0; i < total; i++) {
+            if (leaf.readEntityUuid(i).equals(key.getUuid()) && leaf.buildKey(i).distanceTo(key) == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return The number of keys that fit in a leaf (or in an index),
+     * computed from the sizes of the keys and entries the first time.
+     */
+    private int capacity(boolean leaf, int sizeOfKey, int sizeOfArray) {
+        int capacity = leaf ? this.leafCapacity : this.indexCapacity;
+        if (capacity == 0) {
+            Node node = new Node(0, new byte[sizeOfArray]);
+            if (leaf) {
+                capacity = new RTreeLeaf<>(node, this.getObjectClass()).capacity(sizeOfKey);
+                this.leafCapacity = capacity;
+            } else {
+                capacity = new RTreeIndex<>(node, this.getObjectClass(), this.quantized).capacity(sizeOfKey);
+                this.indexCapacity = capacity;
+            }
+        }
+        return capacity;
+    }
+
+    /**
+     * Lazy depth-first traversal of {@link #search(Rectangle)}.
+     */
+    class WindowIterator implements Iterator<Uuid> {
+
+        private final R window;
+        private final Session se;
+        private final Stack<Long> qualifies = new Stack<>();
+        private final LinkedList<Uuid> found = new LinkedList<>();
+        private boolean closed = false;
+        private R cursor = null;
+
+        public WindowIterator(R window) {
+            this.window = window;
+            this.se = getWorkspace().openSession();
+            long pageIdDescriptor = se.findPageIdDescriptor(getClassUuid());
+            RTreeDescriptor descriptor = new RTreeDescriptor(se.load(pageIdDescriptor));
+            if (descriptor.readRootPageId() != 0) {
+                qualifies.push(descriptor.readRootPageId());
+            }
+            se.unpin(pageIdDescriptor);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (found.isEmpty() && !qualifies.isEmpty()) {
+                long pageId = qualifies.pop();
+                Node node = se.load(pageId);
+
+                if (RTreeIndex.matchNodeType(node)) {
+                    RTreeIndex<R> index = new RTreeIndex<>(node, getObjectClass());
+                    for (int i = index.readNumberOfKeys() - 1; i >= 0; i--) {
+                        cursor = index.readKey(i, cursor);
+                        if (geometry.isOverlap(cursor, window)) {
+                            qualifies.push(index.readSubPageId(i));
+                        }
+                    }
+                } else {
+                    RTreeLeaf<R> leaf = new RTreeLeaf<>(node, getObjectClass());
+                    int total = leaf.readNumberOfKeys();
+                    for (int i = 0; i < total; i++) {
+                        cursor = leaf.readKey(i, cursor);
+                        if (geometry.isOverlap(cursor, window)) {
+                            found.add(leaf.readEntityUuid(i));
+                        }
+                    }
+                }
+                se.unpin(pageId);
+            }
+            if (found.isEmpty() && !closed) {
+                se.close();
+                closed = true;
+            }
+            return !found.isEmpty();
+        }
+
+        @Override
+        public Uuid next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return found.removeFirst();
+        }
+    }
+
+    /**
+     * Best-first traversal of {@link #nearest(Rectangle)}.
+     */
+    class NearestIterator implements Iterator<R> {
+
+        private final R query;
+        private final Session se;
+        private final PriorityQueue<RTreeCandidate> queue = new PriorityQueue<>();
+        private boolean closed = false;
+
+        public NearestIterator(R query) {
+            this.query = query;
+            this.se = getWorkspace().openSession();
+            long pageIdDescriptor = se.findPageIdDescriptor(getClassUuid());
+            RTreeDescriptor descriptor = new RTreeDescriptor(se.load(pageIdDescriptor));
+            if (descriptor.readRootPageId() != 0) {
+                queue.add(new RTreeCandidate(0, descriptor.readRootPageId(), null));
+            }
+            se.unpin(pageIdDescriptor);
+            averageForNearest.incrementMeasurement();
+        }
+
+        @Override
+        public boolean hasNext() {
+            long time = System.nanoTime();
+            long diskAccess = se.getBlockAccess();
+            long verifications = 0;
+
+            // Expanding nodes until a key reaches the head of the queue
+            while (!queue.isEmpty() && queue.peek().key == null) {
+                long pageId = queue.poll().pageId;
+                Node node = se.load(pageId);
+
+                if (RTreeIndex.matchNodeType(node)) {
+                    RTreeIndex<R> index = new RTreeIndex<>(node, getObjectClass());
+                    int total = index.readNumberOfKeys();
+                    for (int i = 0; i < total; i++) {
+                        double distance = geometry.minDistance(query, index.buildKey(i));
+                        queue.add(new RTreeCandidate(distance, index.readSubPageId(i), null));
+                    }
+                    verifications += total;
+                } else {
+                    RTreeLeaf<R> leaf = new RTreeLeaf<>(node, getObjectClass());
+                    int total = leaf.readNumberOfKeys();
+                    for (int i = 0; i < total; i++) {
+                        R key = leaf.buildKey(i);
+                        queue.add(new RTreeCandidate(query.distanceTo(key), 0, key));
+                    }
+                    verifications += total;
+                }
+                se.unpin(pageId);
+            }
+            if (queue.isEmpty() && !closed) {
+                se.close();
+                closed = true;
+            }
+
+            //statistic for nearest
+            averageForNearest.incrementDiskAccess(se.getBlockAccess() - diskAccess);
+            averageForNearest.incrementVerification(verifications);
+            averageForNearest.incrementTime(System.nanoTime() - time);
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public R next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            RTreeCandidate candidate = queue.poll();
+            candidate.key.setPreservedDistance(candidate.distance);
+            return candidate.key;
+        }
+    }
+
+    /**
+     * Key or index entry in the queue of {@link NearestIterator}. At the
+     * same distance, keys come before index entries.
+     */
+    class RTreeCandidate implements Comparable<RTreeCandidate> {
+
+        private final double distance;
+        private final long pageId;
+        private final R key;
+
+        public RTreeCandidate(double distance, long pageId, R key) {
+            this.distance = distance;
+            this.pageId = pageId;
+            this.key = key;
+        }
+
+        @Override
+        public int compareTo(RTreeCandidate candidate) {
+            int cmp = Double.compare(this.distance, candidate.distance);
+            if (cmp == 0) {
+                cmp = Boolean.compare(this.key == null, candidate.key == null);
+            }
+            return cmp;
+        }
+    }
+
+    /**
+     * Entry of a node taken off the tree by {@link #remove(Rectangle)}, to
+     * be reinserted at its level.
+     */
+    class RTreeOrphan {
+
+        private final R key;
+        private final Uuid uuid;
+        private final long subPageId;
+        private final int level;
+
+        public RTreeOrphan(R key, Uuid uuid, long subPageId, int level) {
+            this.key = key;
+            this.uuid = uuid;
+            this.subPageId = subPageId;
+            this.level = level;
+        }
     }
 
 }
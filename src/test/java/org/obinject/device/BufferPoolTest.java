@@ -0,0 +1,296 @@
+/*
+Copyright (C) 2013     Enzo Seraphim
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+or visit <http://www.gnu.org/licenses/>
+*/
+
+package org.obinject.device;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.obinject.block.Node;
+
+/**
+ * Pin, eviction, overcommit and write-back of the {@link BufferPool}, on a
+ * {@link MappedFile} whose disk writes can be held.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ */
+public class BufferPoolTest {
+
+    private static final int sizeOfArray = 1024;
+    private static final int pages = 8;
+    @TempDir
+    Path folder;
+    private HeldFile workspace;
+    private BufferPool pool;
+
+    // holds writePage while the gate is closed
+    private static class HeldFile extends MappedFile {
+
+        private volatile CountDownLatch gate;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private int writes = 0;
+
+        HeldFile(String fileName, int sizeArray) {
+            super(fileName, sizeArray);
+        }
+
+        @Override
+        public boolean writePage(Node node) {
+            CountDownLatch held = gate;
+            if (held != null) {
+                entered.countDown();
+                try {
+                    held.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            synchronized (this) {
+                writes++;
+            }
+            return super.writePage(node);
+        }
+
+        synchronized int getWrites() {
+            return writes;
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        workspace = new HeldFile(folder.resolve("pool.dat").toString(), sizeOfArray);
+        for (int i = 1; i <= pages; i++) {
+            long id = workspace.incrementPageId();
+            byte[] array = new byte[sizeOfArray];
+            array[10] = (byte) id;
+            workspace.writePage(new Node(id, array));
+        }
+        pool = new BufferPool(workspace, 2L * sizeOfArray);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        workspace.close();
+    }
+
+    private static void modify(Node node, int pos, byte value) {
+        node.getArray()[pos] = value;
+        node.getArray()[0] = 1; // modified flag
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        Node first = pool.pin(1);
+        assertEquals(1, first.getArray()[10]);
+        pool.unpin(1, false);
+        assertSame(first, pool.pin(1));
+        pool.unpin(1, false);
+        assertEquals(1, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getEvictions());
+    }
+
+    @Test
+    public void testEvictionKeepsBudget() {
+        for (int round = 0; round < 3; round++) {
+            for (long id = 1; id <= pages; id++) {
+                assertEquals(id, pool.pin(id).getArray()[10]);
+                pool.unpin(id, false);
+                assertTrue(pool.getResidentPages() <= 2);
+            }
+        }
+        assertTrue(pool.getEvictions() > 0);
+    }
+
+    @Test
+    public void testDirtyPageWrittenOnEviction() {
+        modify(pool.pin(1), 20, (byte) 42);
+        pool.unpin(1, false);
+        assertEquals(0, workspace.loadPage(1).getArray()[20]);
+        for (long id = 2; id <= pages; id++) {
+            pool.pin(id);
+            pool.unpin(id, false);
+        }
+        assertEquals(42, workspace.loadPage(1).getArray()[20]);
+        Node reloaded = pool.pin(1);
+        assertEquals(42, reloaded.getArray()[20]);
+        assertFalse(reloaded.readModified());
+        pool.unpin(1, false);
+    }
+
+    @Test
+    public void testUnpinWithFlush() {
+        modify(pool.pin(3), 20, (byte) 9);
+        pool.unpin(3, true);
+        assertEquals(9, workspace.loadPage(3).getArray()[20]);
+    }
+
+    @Test
+    public void testOvercommitAndGiveBack() {
+        Node[] pinned = new Node[5];
+        for (int i = 0; i < pinned.length; i++) {
+            pinned[i] = pool.pin(i + 1);
+        }
+        // every pinned page stays resident beyond the budget
+        assertEquals(5, pool.getResidentPages());
+        for (int i = 0; i < pinned.length; i++) {
+            assertEquals(i + 1, pinned[i].getArray()[10]);
+            pool.unpin(i + 1, false);
+        }
+        assertTrue(pool.getResidentPages() <= 2);
+    }
+
+    @Test
+    public void testPinCount() {
+        Node page = pool.pin(1);
+        assertSame(page, pool.pin(1));
+        pool.unpin(1, false);
+        // still pinned once: other pages cannot evict it
+        for (long id = 2; id <= pages; id++) {
+            pool.pin(id);
+            pool.unpin(id, false);
+        }
+        assertSame(page, pool.pin(1));
+        pool.unpin(1, false);
+        pool.unpin(1, false);
+        assertThrows(IllegalStateException.class, () -> pool.unpin(1, false));
+    }
+
+    @Test
+    public void testUnpinNotPinned() {
+        assertThrows(IllegalStateException.class, () -> pool.unpin(5, false));
+        pool.pin(5);
+        pool.unpin(5, false);
+        assertThrows(IllegalStateException.class, () -> pool.unpin(5, true));
+    }
+
+    @Test
+    public void testFlush() {
+        Node page = pool.pin(5);
+        modify(page, 30, (byte) 7);
+        pool.flush();
+        assertEquals(7, workspace.loadPage(5).getArray()[30]);
+        assertFalse(page.readModified());
+        int writes = workspace.getWrites();
+        pool.flush();
+        assertEquals(writes, workspace.getWrites());
+        pool.unpin(5, false);
+    }
+
+    @Test
+    public void testWriteBackOutsideMonitor() throws Exception {
+        modify(pool.pin(1), 20, (byte) 42);
+        pool.unpin(1, false);
+        pool.pin(2);
+        pool.unpin(2, false);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            workspace.gate = new CountDownLatch(1);
+            // the miss evicts the dirty page 1 and blocks in its write
+            Future<Node> miss = executor.submit(() -> pool.pin(3));
+            assertTrue(workspace.entered.await(5, TimeUnit.SECONDS));
+            // a hit and the counters do not wait for the disk
+            Node hit = executor.submit(() -> pool.pin(2)).get(5, TimeUnit.SECONDS);
+            assertEquals(2, hit.getArray()[10]);
+            assertTrue(pool.getResidentPages() >= 2);
+            workspace.gate.countDown();
+            assertEquals(3, miss.get(5, TimeUnit.SECONDS).getArray()[10]);
+            workspace.gate = null;
+            pool.unpin(2, false);
+            pool.unpin(3, false);
+            assertEquals(42, workspace.loadPage(1).getArray()[20]);
+        } finally {
+            if (workspace.gate != null) {
+                workspace.gate.countDown();
+            }
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentPins() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] tasks = new Future<?>[4];
+            for (int t = 0; t < tasks.length; t++) {
+                final long seed = t;
+                tasks[t] = executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 2000; i++) {
+                        long id = 1 + random.nextInt(pages);
+                        Node page = pool.pin(id);
+                        assertNotNull(page);
+                        assertEquals(id, page.getArray()[10]);
+                        pool.unpin(id, random.nextBoolean());
+                    }
+                });
+            }
+            for (Future<?> task : tasks) {
+                task.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(pool.getResidentPages() <= 2);
+    }
+
+    @Test
+    public void testLongIntMap() {
+        LongIntMap map = new LongIntMap(2);
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(4);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(3000) * 7919L - 100000;
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                reference.remove(key);
+            } else {
+                int value = random.nextInt(1000);
+                map.put(key, value);
+                reference.put(key, value);
+            }
+        }
+        assertEquals(reference.size(), map.size());
+        for (long key = -100000; key < 3000 * 7919L; key += 7919) {
+            assertEquals((int) reference.getOrDefault(key, LongIntMap.EMPTY), map.get(key));
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(LongIntMap.EMPTY, map.get(-100000));
+    }
+}
@@ -0,0 +1,200 @@
+/*
+Copyright (C) 2013     Enzo Seraphim
+
+This program is free software; you can redistribute it and/or modify
+it under the terms of the GNU Lesser General Public License as published by
+the Free Software Foundation; either version 2 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public License
+along with this program; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+or visit <http://www.gnu.org/licenses/>
+*/
+
+package org.obinject.device;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.obinject.block.HeaderNode;
+import org.obinject.block.Node;
+
+/**
+ * Checksummed pages of {@link File} and {@link MappedFile}: damaged pages
+ * and headers are rejected, plain files stay readable.
+ *
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ * @author Luiz Olmes Carvalho <olmes@icmc.usp.br>
+ * @author Thatyana de Faria Piola Seraphim <thatyana@unifei.edu.br>
+ */
+public class PageChecksumTest {
+
+    private static final int sizeOfArray = 1024;
+    private static final int sizeOfPage = sizeOfArray + PageChecksum.sizeOfTrailer;
+    private static final int pages = 10;
+    @TempDir
+    Path folder;
+    private byte[][] arrays;
+
+    @BeforeEach
+    public void setUp() {
+        Random random = new Random(5);
+        arrays = new byte[pages + 1][];
+        for (int id = 1; id <= pages; id++) {
+            arrays[id] = new byte[sizeOfArray];
+            random.nextBytes(arrays[id]);
+        }
+    }
+
+    private String write(String name, boolean mapped) {
+        String fileName = folder.resolve(name).toString();
+        AbstractWorkspace workspace = mapped ? new MappedFile(fileName, sizeOfArray) : new File(fileName, sizeOfArray);
+        for (int id = 1; id <= pages; id++) {
+            assertEquals(id, workspace.incrementPageId());
+            workspace.writePage(new Node(id, arrays[id].clone()));
+        }
+        if (mapped) {
+            ((MappedFile) workspace).close();
+        }
+        return fileName;
+    }
+
+    private static void flip(String fileName, long pos) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(fileName, "rw")) {
+            raf.seek(pos);
+            int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 1);
+        }
+    }
+
+    private static void assertPages(AbstractWorkspace workspace, byte[][] arrays) {
+        assertEquals(sizeOfArray, workspace.sizeOfArray());
+        for (int id = 1; id < arrays.length; id++) {
+            assertArrayEquals(arrays[id], workspace.loadPage(id).getArray());
+        }
+    }
+
+    @Test
+    public void testChecksummedFormat() {
+        String fileName = write("file.dat", false);
+        assertEquals((long) (pages + 1) * sizeOfPage, new java.io.File(fileName).length());
+        assertEquals(HeaderNode.checksummedFormat, new HeaderNode(new File(fileName).loadPage(0)).readFormat());
+    }
+
+    @Test
+    public void testFileRejectsCorruptedPage() throws IOException {
+        String fileName = write("file.dat", false);
+        flip(fileName, 7L * sizeOfPage + 100);
+        File file = new File(fileName);
+        assertThrows(UncheckedIOException.class, () -> file.loadPage(7));
+        assertArrayEquals(arrays[8], file.loadPage(8).getArray());
+    }
+
+    @Test
+    public void testMappedFileRejectsCorruptedPage() throws IOException {
+        String fileName = write("mapped.dat", true);
+        flip(fileName, 5L * sizeOfPage + 200);
+        MappedFile file = new MappedFile(fileName);
+        try {
+            assertThrows(UncheckedIOException.class, () -> file.loadPage(5));
+            assertArrayEquals(arrays[6], file.loadPage(6).getArray());
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void testCorruptedTrailer() throws IOException {
+        String fileName = write("file.dat", false);
+        flip(fileName, 4L * sizeOfPage + sizeOfArray);
+        assertThrows(UncheckedIOException.class, () -> new File(fileName).loadPage(4));
+    }
+
+    @Test
+    public void testTornPage() throws IOException {
+        String fileName = write("file.dat", false);
+        try (RandomAccessFile raf = new RandomAccessFile(fileName, "rw")) {
+            raf.setLength((long) pages * sizeOfPage + 500);
+        }
+        assertThrows(UncheckedIOException.class, () -> new File(fileName).loadPage(pages));
+        MappedFile mapped = new MappedFile(fileName);
+        try {
+            assertThrows(UncheckedIOException.class, () -> mapped.loadPage(pages));
+            // past the end of the file the pages are empty
+            assertArrayEquals(new byte[sizeOfArray], mapped.loadPage(pages + 10).getArray());
+        } finally {
+            mapped.close();
+        }
+    }
+
+    @Test
+    public void testDamagedHeader() throws IOException {
+        String fileName = write("file.dat", false);
+        // body of the header page, format field and node type
+        for (long pos : new long[]{100, 7, 2}) {
+            String damaged = folder.resolve("damaged" + pos + ".dat").toString();
+            Files.copy(Path.of(fileName), Path.of(damaged));
+            flip(damaged, pos);
+            assertThrows(UncheckedIOException.class, () -> new File(damaged));
+            assertThrows(UncheckedIOException.class, () -> new MappedFile(damaged));
+        }
+    }
+
+    @Test
+    public void testPlainFile() throws IOException {
+        byte[] raw = Files.readAllBytes(Path.of(write("file.dat", false)));
+        // a file of the plain format: no trailers and no format in the header
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int id = 0; id <= pages; id++) {
+            out.write(raw, id * sizeOfPage, sizeOfArray);
+        }
+        byte[] plain = out.toByteArray();
+        Arrays.fill(plain, 5, 13, (byte) 0);
+        String fileName = folder.resolve("plain.dat").toString();
+        Files.write(Path.of(fileName), plain);
+
+        File file = new File(fileName);
+        assertPages(file, arrays);
+        MappedFile mapped = new MappedFile(fileName);
+        try {
+            assertPages(mapped, arrays);
+        } finally {
+            mapped.close();
+        }
+        // new pages are appended without trailers
+        long id = file.incrementPageId();
+        file.writePage(new Node(id, arrays[1].clone()));
+        assertEquals((id + 1) * sizeOfArray, new java.io.File(fileName).length());
+        assertArrayEquals(arrays[1], new File(fileName).loadPage(id).getArray());
+    }
+
+    @Test
+    public void testFileAndMappedFileShareFormat() {
+        MappedFile mapped = new MappedFile(write("file.dat", false));
+        try {
+            assertPages(mapped, arrays);
+        } finally {
+            mapped.close();
+        }
+        assertPages(new File(write("mapped.dat", true)), arrays);
+    }
+}
@@ -0,0 +1,265 @@
+package org.obinject.joinqueries;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.obinject.device.File;
+import org.obinject.meta.Uuid;
+import org.obinject.sbbd2013.geonet.RectLatLongCoordGeonet;
+import org.obinject.storage.EuclideanGeometry;
+import org.obinject.storage.RTree;
+
+/**
+ * Compara o resultado das junções com o de uma junção de laço aninhado sobre os mesmos
+ * retângulos. As árvores são construídas por inserção (quadrática e R*) e por carga em
+ * lote (STR e Hilbert), com índices exatos e quantizados.
+ *
+ * @author Luiz Emanoel Batista Moreira <emanoel@unifei.edu.br>
+ * @author Joao Tonet
+ * @author Joao Victor
+ * @author Luiz Olmes Carvalho <olmes@unifei.edu.br>
+ * @author Enzo Seraphim <seraphim@unifei.edu.br>
+ */
+public class JoinQueriesTest
+{
+    private static final int tamanhoPagina = 1024;
+
+    @TempDir
+    static Path pasta;
+    private static int arquivos = 0;
+
+    private static List<RectLatLongCoordGeonet> dados1;
+    private static List<RectLatLongCoordGeonet> dados2;
+    private static Set<String> esperado;
+
+    @BeforeAll
+    static void gerarDados()
+    {
+        dados1 = gerar(1, 1500);
+        dados2 = gerar(2, 1500);
+        esperado = lacoAninhado(dados1, dados2, 0);
+    }
+
+    static List<RectLatLongCoordGeonet> gerar(long semente, int total)
+    {
+        Random random = new Random(semente);
+        List<RectLatLongCoordGeonet> dados = new ArrayList<>();
+        for(int i = 0; i < total; i++)
+        {
+            RectLatLongCoordGeonet key = new RectLatLongCoordGeonet();
+            key.setOrigin(0, random.nextDouble() * 1000 - 500);
+            key.setOrigin(1, random.nextDouble() * 1000 - 500);
+            key.setExtension(0, random.nextDouble() * 15);
+            key.setExtension(1, random.nextDouble() * 15);
+            dados.add(key);
+        }
+        return dados;
+    }
+
+    /*
+     * Distância euclidiana entre os dois retângulos, zero se eles se interceptam.
+     */
+    static double distancia(RectLatLongCoordGeonet a, RectLatLongCoordGeonet b)
+    {
+        double soma = 0;
+        for(int d = 0; d < 2; d++)
+        {
+            double vao = Math.max(b.getOrigin(d) - (a.getOrigin(d) + a.getExtension(d)), a.getOrigin(d) - (b.getOrigin(d) + b.getExtension(d)));
+            if(vao > 0)
+                soma += vao * vao;
+        }
+        return Math.sqrt(soma);
+    }
+
+    /*
+     * Junção de laço aninhado: pares (Uuid da entrada1, Uuid da entrada2) a no máximo epsilon.
+     */
+    static Set<String> lacoAninhado(List<RectLatLongCoordGeonet> entrada1, List<RectLatLongCoordGeonet> entrada2, double epsilon)
+    {
+        Set<String> pares = new HashSet<>();
+        for(RectLatLongCoordGeonet a : entrada1)
+            for(RectLatLongCoordGeonet b : entrada2)
+                if(distancia(a, b) <= epsilon)
+                    pares.add(a.getUuid() + "|" + b.getUuid());
+        return pares;
+    }
+
+    /*
+     * Pares do resultado, verificando que nenhum par é reportado duas vezes.
+     */
+    static Set<String> pares(List<Pair<Uuid, Uuid>> resultado)
+    {
+        Set<String> pares = new HashSet<>();
+        for(Pair<Uuid, Uuid> par : resultado)
+            pares.add(par.getFirst() + "|" + par.getSecond());
+        assertEquals(resultado.size(), pares.size(), "duplicated pairs");
+        return pares;
+    }
+
+    static RTree<RectLatLongCoordGeonet> construir(List<RectLatLongCoordGeonet> dados, String construcao, boolean quantizado)
+    {
+        File arquivo = new File(pasta.resolve("rtree" + (arquivos++) + ".dat").toString(), tamanhoPagina);
+        RTree.InsertionMode modo = construcao.equals("RSTAR") ? RTree.InsertionMode.RSTAR : RTree.InsertionMode.QUADRATIC;
+        RTree<RectLatLongCoordGeonet> rtree = new RTree<RectLatLongCoordGeonet>(arquivo, modo, quantizado){};
+        if(construcao.equals("STR"))
+            rtree.bulkLoad(dados.iterator());
+        else if(construcao.equals("HILBERT"))
+            rtree.bulkLoadHilbert(dados.iterator());
+        else
+            for(RectLatLongCoordGeonet key : dados)
+                rtree.add(key);
+        return rtree;
+    }
+
+    @ParameterizedTest
+    @CsvSource({"QUADRATIC, false", "RSTAR, false", "STR, false", "HILBERT, false", "QUADRATIC, true", "STR, true"})
+    void joinsSequenciais(String construcao, boolean quantizado)
+    {
+        RTree<RectLatLongCoordGeonet> rtree1 = construir(dados1, construcao, quantizado);
+        RTree<RectLatLongCoordGeonet> rtree2 = construir(dados2, construcao, quantizado);
+        JoinQueries<RectLatLongCoordGeonet> joinQuery = new JoinQueries<>(rtree1, rtree2);
+
+        assertEquals(esperado, pares(joinQuery.basicJoin()), "basicJoin");
+        assertEquals(esperado, pares(joinQuery.basicJoinRestringindoEspacoBusca()), "basicJoinRestringindoEspacoBusca");
+        assertEquals(esperado, pares(joinQuery.joinPlaneSweep()), "joinPlaneSweep");
+        assertEquals(esperado, pares(joinQuery.joinPlaneSweepFixacao()), "joinPlaneSweepFixacao");
+        assertEquals(esperado, pares(joinQuery.joinZorder()), "joinZorder");
+        assertEquals(esperado, pares(joinQuery.joinHilbert()), "joinHilbert");
+        for(JoinQueries.OrdemPares ordem : JoinQueries.OrdemPares.values())
+            assertEquals(esperado, pares(joinQuery.joinBfrj(ordem)), "joinBfrj " + ordem);
+        assertEquals(esperado, pares(joinQuery.joinDistancia(0)), "joinDistancia(0)");
+        assertEquals(lacoAninhado(dados1, dados2, 5), pares(joinQuery.joinDistancia(5)), "joinDistancia(5)");
+    }
+
+    @ParameterizedTest
+    @CsvSource({"QUADRATIC, false", "HILBERT, true"})
+    void joinsParalelos(String construcao, boolean quantizado)
+    {
+        RTree<RectLatLongCoordGeonet> rtree1 = construir(dados1, construcao, quantizado);
+        RTree<RectLatLongCoordGeonet> rtree2 = construir(dados2, construcao, quantizado);
+        try(ParallelJoinQueries<RectLatLongCoordGeonet> joinQuery = new ParallelJoinQueries<>(rtree1, rtree2, 4))
+        {
+            assertEquals(esperado, pares(joinQuery.basicJoin()), "basicJoin");
+            assertEquals(esperado, pares(joinQuery.basicJoinRestringindoEspacoBusca()), "basicJoinRestringindoEspacoBusca");
+            assertEquals(esperado, pares(joinQuery.joinPlaneSweep()), "joinPlaneSweep");
+            assertEquals(esperado, pares(joinQuery.joinPlaneSweepFixacao()), "joinPlaneSweepFixacao");
+            assertEquals(esperado, pares(joinQuery.joinZorder()), "joinZorder");
+            assertEquals(esperado, pares(joinQuery.joinHilbert()), "joinHilbert");
+        }
+    }
+
+    @Test
+    void joinParaleloAposInsercao()
+    {
+        List<RectLatLongCoordGeonet> poucos = gerar(3, 20);
+        RTree<RectLatLongCoordGeonet> rtree1 = construir(poucos, "QUADRATIC", false);
+        RTree<RectLatLongCoordGeonet> rtree2 = construir(dados2, "QUADRATIC", false);
+        try(ParallelJoinQueries<RectLatLongCoordGeonet> joinQuery = new ParallelJoinQueries<>(rtree1, rtree2, 4))
+        {
+            assertEquals(lacoAninhado(poucos, dados2, 0), pares(joinQuery.joinPlaneSweep()));
+            // A raiz da rtree1 muda com as inserções
+            for(RectLatLongCoordGeonet key : dados1)
+                rtree1.add(key);
+            List<RectLatLongCoordGeonet> todos = new ArrayList<>(poucos);
+            todos.addAll(dados1);
+            assertEquals(lacoAninhado(todos, dados2, 0), pares(joinQuery.joinPlaneSweep()));
+        }
+    }
+
+    @Test
+    void alturasDiferentes()
+    {
+        List<RectLatLongCoordGeonet> poucos = gerar(4, 60);
+        RTree<RectLatLongCoordGeonet> baixa = construir(poucos, "QUADRATIC", false);
+        RTree<RectLatLongCoordGeonet> alta = construir(dados2, "QUADRATIC", false);
+        Set<String> esperadoBaixaAlta = lacoAninhado(poucos, dados2, 0);
+        JoinQueries<RectLatLongCoordGeonet> joinQuery = new JoinQueries<>(baixa, alta);
+        assertEquals(esperadoBaixaAlta, pares(joinQuery.basicJoinRestringindoEspacoBusca()));
+        assertEquals(esperadoBaixaAlta, pares(joinQuery.joinPlaneSweepFixacao()));
+        assertEquals(esperadoBaixaAlta, pares(joinQuery.joinZorder()));
+        assertEquals(lacoAninhado(dados2, poucos, 0), pares(new JoinQueries<>(alta, baixa).joinPlaneSweep()));
+    }
+
+    @Test
+    void selfJoin()
+    {
+        RTree<RectLatLongCoordGeonet> rtree = construir(dados1, "QUADRATIC", false);
+        Set<String> esperadoSelf = new HashSet<>();
+        for(String par : lacoAninhado(dados1, dados1, 0))
+        {
+            String[] uuids = par.split("\\|");
+            if(!uuids[0].equals(uuids[1]))
+                esperadoSelf.add(uuids[0].compareTo(uuids[1]) < 0 ? par : uuids[1] + "|" + uuids[0]);
+        }
+        List<Pair<Uuid, Uuid>> resultado = new JoinQueries<>(rtree).selfJoin();
+        Set<String> obtido = new HashSet<>();
+        for(Pair<Uuid, Uuid> par : resultado)
+        {
+            String a = par.getFirst().toString(), b = par.getSecond().toString();
+            obtido.add(a.compareTo(b) < 0 ? a + "|" + b : b + "|" + a);
+        }
+        assertEquals(esperadoSelf.size(), resultado.size(), "each unordered pair once");
+        assertEquals(esperadoSelf, obtido);
+    }
+
+    @Test
+    void pbsm() throws Exception
+    {
+        RTree<RectLatLongCoordGeonet> rtree2 = construir(dados2, "QUADRATIC", false);
+        EuclideanGeometry<RectLatLongCoordGeonet> geometria = new EuclideanGeometry<>(RectLatLongCoordGeonet.class);
+        for(int memoria : new int[]{100000, 700, 97})
+        {
+            PbsmJoin<RectLatLongCoordGeonet> pbsm = new PbsmJoin<>(geometria, memoria);
+            assertEquals(esperado, pares(pbsm.joinPbsm(dados1.iterator(), dados2.iterator())), "joinPbsm " + memoria);
+            assertEquals(esperado, pares(pbsm.joinIndexado(dados1.iterator(), rtree2)), "joinIndexado " + memoria);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({"QUADRATIC, false", "STR, true"})
+    void knn(String construcao, boolean quantizado)
+    {
+        RTree<RectLatLongCoordGeonet> rtree1 = construir(dados1, construcao, quantizado);
+        RTree<RectLatLongCoordGeonet> rtree2 = construir(dados2, construcao, quantizado);
+        Map<String, RectLatLongCoordGeonet> chaves = new HashMap<>();
+        for(RectLatLongCoordGeonet key : dados1)
+            chaves.put(key.getUuid().toString(), key);
+        for(RectLatLongCoordGeonet key : dados2)
+            chaves.put(key.getUuid().toString(), key);
+
+        KnnJoinQueries<RectLatLongCoordGeonet> joinQuery = new KnnJoinQueries<>(rtree1, rtree2);
+        for(int k : new int[]{1, 3, 10})
+        {
+            Map<String, List<Double>> obtido = new HashMap<>();
+            for(Pair<Uuid, Uuid> par : joinQuery.joinKnn(k))
+                obtido.computeIfAbsent(par.getFirst().toString(), u -> new ArrayList<>()).add(distancia(chaves.get(par.getFirst().toString()), chaves.get(par.getSecond().toString())));
+
+            // Cada consulta recebe as k menores distâncias do laço aninhado, em ordem
+            double[] distancias = new double[dados2.size()];
+            for(RectLatLongCoordGeonet a : dados1)
+            {
+                for(int i = 0; i < dados2.size(); i++)
+                    distancias[i] = distancia(a, dados2.get(i));
+                Arrays.sort(distancias);
+                List<Double> vizinhos = obtido.get(a.getUuid().toString());
+                assertEquals(k, vizinhos.size(), "k=" + k);
+                for(int i = 0; i < k; i++)
+                    assertEquals(distancias[i], vizinhos.get(i), 1e-12, "k=" + k);
+            }
+        }
+    }
+}